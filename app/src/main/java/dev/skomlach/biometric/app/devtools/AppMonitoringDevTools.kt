@@ -28,6 +28,7 @@ import android.os.StrictMode.VmPolicy
 import android.util.Log
 import androidx.core.content.ContextCompat
 import com.github.anrwatchdog.ANRWatchDog
+import dev.skomlach.common.misc.ExecutorHelper
 import java.io.File
 import java.lang.reflect.Modifier
 import java.net.URL
@@ -39,7 +40,10 @@ class AppMonitoringDevTools(val app: Application) {
     private val vmPolicy = StrictMode.getVmPolicy()
     private var anrWatchDog: ANRWatchDog? = null
     private var enable: Boolean = false
-    private var fileObserver: FileObserver? = null
+    private var largeFileIndex: LargeFileIndex? = null
+
+    //FileObserver is not recursive - one observer per directory
+    private val directoryObservers = HashMap<String, FileObserver>()
 
     private val FILE_SIZE_LIMIT = 524288
 
@@ -72,43 +76,55 @@ class AppMonitoringDevTools(val app: Application) {
                     FileObserver.DELETE_SELF or
                     FileObserver.MOVE_SELF
 
-            fileObserver = object : FileObserver(path, allExceptAccessFlags) {
-                override fun onEvent(event: Int, p: String?) {
-                    scanRecursivly(path, File(path))
-                }
-            }
-        } catch (e: Throwable) {
-            Log.e("AppMonitoringDevTools", e.message, e)
-        }
-    }
+            largeFileIndex = LargeFileIndex(
+                File(path),
+                FILE_SIZE_LIMIT.toLong(),
+                object : LargeFileIndex.Scheduler {
+                    override fun postDelayed(task: Runnable, delay: Long) {
+                        ExecutorHelper.startOnBackground(task, delay)
+                    }
 
+                    override fun removeCallbacks(task: Runnable) {
+                        ExecutorHelper.removeCallbacks(task)
+                    }
+                },
+                object : LargeFileIndex.Listener {
+                    override fun onLargeFile(file: File, size: Long) {
+                        var name = file.absolutePath
+                        if (name.startsWith(path)) {
+                            name = name.substring(path.length, name.length)
+                        }
+                        Log.e(
+                            "AppMonitoringDevTools",
+                            "Found large file $name with size ${getReadableFileSize(size)}"
+                        )
+                    }
 
-    private fun scanRecursivly(path: String, fileOrDirectory: File?) {
-        try {
-            if (fileOrDirectory?.isDirectory == true) {
-                val files = fileOrDirectory.listFiles()
-                if (files != null && files.isNotEmpty()) {
-                    for (child in files) {
-                        scanRecursivly(path, child)
+                    override fun onDirectoryAdded(dir: File) {
+                        synchronized(directoryObservers) {
+                            val observer = object : FileObserver(dir.absolutePath, allExceptAccessFlags) {
+                                override fun onEvent(event: Int, p: String?) {
+                                    largeFileIndex?.onEvent(dir, p)
+                                }
+                            }
+                            directoryObservers.put(dir.absolutePath, observer)?.stopWatching()
+                            if (enable)
+                                observer.startWatching()
+                        }
                     }
-                }
-            } else {
-                if (fileOrDirectory?.length() ?: return >= FILE_SIZE_LIMIT) {//SK: everything that larger than N mb - need to check
-                    var file = fileOrDirectory.absolutePath
-                    if (file.startsWith(path)) {
-                        file = file.substring(path.length, file.length)
+
+                    override fun onDirectoryRemoved(dir: File) {
+                        synchronized(directoryObservers) {
+                            directoryObservers.remove(dir.absolutePath)?.stopWatching()
+                        }
                     }
-                    Log.e(
-                        "AppMonitoringDevTools",
-                        "Found large file $file with size ${getReadableFileSize(fileOrDirectory.length())}"
-                    )
-                }
-            }
+                })
         } catch (e: Throwable) {
-            e.printStackTrace()
+            Log.e("AppMonitoringDevTools", e.message, e)
         }
     }
 
+
     fun enableMonitoringTools(enable: Boolean) {
 
         this.enable = enable
@@ -144,7 +160,14 @@ class AppMonitoringDevTools(val app: Application) {
             }
 
             anrWatchDog?.start()
-            fileObserver?.startWatching()
+            largeFileIndex?.let { index ->
+                if (index.isSeeded) {
+                    synchronized(directoryObservers) {
+                        directoryObservers.values.forEach { it.startWatching() }
+                    }
+                } else
+                    ExecutorHelper.startOnBackground { index.seed() }
+            }
         } else {
             try {
                 anrWatchDog?.interrupt()
@@ -152,7 +175,9 @@ class AppMonitoringDevTools(val app: Application) {
             } catch (ignore: InterruptedException) {
 
             }
-            fileObserver?.stopWatching()
+            synchronized(directoryObservers) {
+                directoryObservers.values.forEach { it.stopWatching() }
+            }
         }
 
         if (enable) {
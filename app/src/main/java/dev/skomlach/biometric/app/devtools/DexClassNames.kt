@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.app.devtools
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Reads the names of the classes defined in the dex files straight from the string/type-id
+ * tables, without loading the class definitions.
+ *
+ * Works with the plain dex files and with the containers that embed them as is (odex/oat/vdex).
+ */
+object DexClassNames {
+    private const val HEADER_SIZE = 0x70
+    private const val ENDIAN_CONSTANT = 0x12345678
+    private const val CLASS_DEF_SIZE = 32
+
+    /**
+     * @return class descriptors (e.g. "Landroid/hardware/fingerprint/FingerprintManager;")
+     * accepted by [filter], in the order they are defined
+     */
+    fun read(source: ByteBuffer, filter: (String) -> Boolean): List<String> {
+        val buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+        val result = ArrayList<String>()
+        val limit = buffer.limit()
+        var pos = 0
+        while (pos + HEADER_SIZE <= limit) {
+            if (isDexHeader(buffer, pos)) {
+                val fileSize = buffer.getInt(pos + 0x20)
+                if (fileSize >= HEADER_SIZE && fileSize <= limit - pos) {
+                    readDex(buffer, pos, fileSize, filter, result)
+                    pos = (pos + fileSize + 3) and 3.inv()
+                    continue
+                }
+            }
+            //dex files are 4-byte aligned inside of the containers
+            pos += 4
+        }
+        return result
+    }
+
+    private fun isDexHeader(buffer: ByteBuffer, pos: Int): Boolean {
+        return buffer.get(pos) == 'd'.code.toByte() &&
+                buffer.get(pos + 1) == 'e'.code.toByte() &&
+                buffer.get(pos + 2) == 'x'.code.toByte() &&
+                buffer.get(pos + 3) == '\n'.code.toByte() &&
+                buffer.get(pos + 7) == 0.toByte() &&
+                buffer.getInt(pos + 0x24) == HEADER_SIZE &&
+                buffer.getInt(pos + 0x28) == ENDIAN_CONSTANT
+    }
+
+    private fun readDex(
+        buffer: ByteBuffer,
+        base: Int,
+        fileSize: Int,
+        filter: (String) -> Boolean,
+        result: MutableList<String>
+    ) {
+        val stringIdsSize = buffer.getInt(base + 0x38)
+        val stringIdsOff = buffer.getInt(base + 0x3C)
+        val typeIdsSize = buffer.getInt(base + 0x40)
+        val typeIdsOff = buffer.getInt(base + 0x44)
+        val classDefsSize = buffer.getInt(base + 0x60)
+        val classDefsOff = buffer.getInt(base + 0x64)
+        if (!isInBounds(stringIdsOff, stringIdsSize, 4, fileSize) ||
+            !isInBounds(typeIdsOff, typeIdsSize, 4, fileSize) ||
+            !isInBounds(classDefsOff, classDefsSize, CLASS_DEF_SIZE, fileSize)
+        )
+            return
+        for (i in 0 until classDefsSize) {
+            val classIdx = buffer.getInt(base + classDefsOff + i * CLASS_DEF_SIZE)
+            if (classIdx < 0 || classIdx >= typeIdsSize)
+                continue
+            val descriptorIdx = buffer.getInt(base + typeIdsOff + classIdx * 4)
+            if (descriptorIdx < 0 || descriptorIdx >= stringIdsSize)
+                continue
+            val stringOff = buffer.getInt(base + stringIdsOff + descriptorIdx * 4)
+            if (stringOff <= 0 || stringOff >= fileSize)
+                continue
+            val descriptor = readMutf8(buffer, base + stringOff, base + fileSize)
+            if (filter.invoke(descriptor))
+                result.add(descriptor)
+        }
+    }
+
+    private fun isInBounds(offset: Int, count: Int, itemSize: Int, fileSize: Int): Boolean {
+        return count == 0 || (offset > 0 && count > 0 && offset.toLong() + count.toLong() * itemSize <= fileSize)
+    }
+
+    //string_data_item: uleb128 utf16_size + MUTF-8 bytes + 0
+    private fun readMutf8(buffer: ByteBuffer, offset: Int, end: Int): String {
+        var pos = offset
+        var utf16Size = 0
+        var shift = 0
+        while (pos < end) {
+            val b = buffer.get(pos++).toInt()
+            utf16Size = utf16Size or ((b and 0x7F) shl shift)
+            if (b and 0x80 == 0)
+                break
+            shift += 7
+        }
+        val sb = StringBuilder(utf16Size.coerceIn(0, 1024))
+        while (pos < end) {
+            val a = buffer.get(pos++).toInt() and 0xFF
+            if (a == 0)
+                break
+            if (a < 0x80) {
+                sb.append(a.toChar())
+            } else if (a and 0xE0 == 0xC0 && pos < end) {
+                val b = buffer.get(pos++).toInt() and 0x3F
+                sb.append((((a and 0x1F) shl 6) or b).toChar())
+            } else if (a and 0xF0 == 0xE0 && pos + 1 < end) {
+                val b = buffer.get(pos++).toInt() and 0x3F
+                val c = buffer.get(pos++).toInt() and 0x3F
+                sb.append((((a and 0x0F) shl 12) or (b shl 6) or c).toChar())
+            } else {
+                sb.append('?')
+            }
+        }
+        return sb.toString()
+    }
+}
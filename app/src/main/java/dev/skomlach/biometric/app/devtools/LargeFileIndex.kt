@@ -0,0 +1,150 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.app.devtools
+
+import java.io.File
+
+/**
+ * Incremental index of the file sizes under [root].
+ *
+ * The tree is walked only once ([seed]); afterwards only the paths reported through [onEvent]
+ * are re-checked, in one batch per [debounceMillis]. [Listener.onLargeFile] fires only when
+ * the file crosses [sizeLimit] from below.
+ *
+ * Has no Android dependencies; the debounce timing is provided by [Scheduler].
+ */
+class LargeFileIndex(
+    private val root: File,
+    private val sizeLimit: Long,
+    private val scheduler: Scheduler,
+    private val listener: Listener,
+    private val debounceMillis: Long = 500L
+) {
+    interface Scheduler {
+        fun postDelayed(task: Runnable, delay: Long)
+        fun removeCallbacks(task: Runnable)
+    }
+
+    interface Listener {
+        fun onLargeFile(file: File, size: Long)
+        fun onDirectoryAdded(dir: File)
+        fun onDirectoryRemoved(dir: File)
+    }
+
+    //absolute path -> size
+    private val sizes = HashMap<String, Long>()
+    private val directories = HashSet<String>()
+    private val pendingPaths = LinkedHashSet<String>()
+    private val flushTask = Runnable { flush() }
+
+    var isSeeded = false
+        private set
+
+    fun seed() {
+        synchronized(this) {
+            if (isSeeded)
+                return
+            isSeeded = true
+            index(root)
+        }
+    }
+
+    /**
+     * @param dir - directory watched by the observer that received the event
+     * @param name - name of the changed entry, `null` if the event is about [dir] itself
+     */
+    fun onEvent(dir: File, name: String?) {
+        val path = if (name.isNullOrEmpty()) dir.absolutePath else File(dir, name).absolutePath
+        synchronized(this) {
+            //flush already scheduled for this batch
+            if (!pendingPaths.add(path) || pendingPaths.size > 1)
+                return
+        }
+        scheduler.postDelayed(flushTask, debounceMillis)
+    }
+
+    fun flush() {
+        scheduler.removeCallbacks(flushTask)
+        synchronized(this) {
+            val paths = ArrayList(pendingPaths)
+            pendingPaths.clear()
+            for (path in paths) {
+                update(File(path))
+            }
+        }
+    }
+
+    fun getSize(file: File): Long? {
+        synchronized(this) {
+            return sizes[file.absolutePath]
+        }
+    }
+
+    private fun update(file: File) {
+        val path = file.absolutePath
+        when {
+            file.isDirectory -> {
+                if (!directories.contains(path))
+                    index(file)
+            }
+            file.isFile -> {
+                updateSize(file, file.length())
+            }
+            else -> {
+                sizes.remove(path)
+                if (directories.remove(path)) {
+                    //drop the whole subtree
+                    val prefix = path + File.separator
+                    sizes.keys.removeAll { it.startsWith(prefix) }
+                    val removed = directories.filter { it.startsWith(prefix) }
+                    directories.removeAll(removed.toSet())
+                    for (dir in removed)
+                        listener.onDirectoryRemoved(File(dir))
+                    listener.onDirectoryRemoved(file)
+                }
+            }
+        }
+    }
+
+    private fun index(fileOrDirectory: File) {
+        try {
+            if (fileOrDirectory.isDirectory) {
+                if (directories.add(fileOrDirectory.absolutePath))
+                    listener.onDirectoryAdded(fileOrDirectory)
+                val files = fileOrDirectory.listFiles()
+                if (files != null && files.isNotEmpty()) {
+                    for (child in files) {
+                        index(child)
+                    }
+                }
+            } else if (fileOrDirectory.isFile) {
+                updateSize(fileOrDirectory, fileOrDirectory.length())
+            }
+        } catch (e: Throwable) {
+            e.printStackTrace()
+        }
+    }
+
+    private fun updateSize(file: File, size: Long) {
+        val previous = sizes.put(file.absolutePath, size) ?: -1L
+        if (previous < sizeLimit && size >= sizeLimit)
+            listener.onLargeFile(file, size)
+    }
+}
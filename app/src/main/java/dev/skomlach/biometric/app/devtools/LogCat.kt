@@ -22,23 +22,38 @@ package dev.skomlach.biometric.app.devtools
 import android.os.AsyncTask
 import android.os.Handler
 import android.os.Looper
+import android.view.Choreographer
 import java.io.BufferedReader
 import java.io.InputStreamReader
 import java.util.concurrent.atomic.AtomicBoolean
 
 object LogCat {
+    private const val CAPACITY = 5000
     private val started = AtomicBoolean(false)
     private var handler: Handler = Handler(Looper.getMainLooper())
-    private val cache: MutableList<String> = ArrayList()
+    private val cache = LogRingBuffer(CAPACITY)
+
+    //Lines waiting for the next frame
+    private val pending = ArrayList<String>()
+    private var isFrameScheduled = false
+    private val frameCallback = Choreographer.FrameCallback { deliverPending() }
+
+    @Volatile
     private var log2ViewCallback: Log2ViewCallback? = null
-    private var FILTER = ""
     fun setFilter(filter: String) {
-        FILTER = filter
+        cache.filter = filter
     }
 
     fun setLog2ViewCallback(log2ViewCallback: Log2ViewCallback?) {
-        LogCat.log2ViewCallback = log2ViewCallback
-        log2ViewCallback?.log(log)
+        val snapshot = synchronized(pending) {
+            //pending lines are already in the snapshot
+            pending.clear()
+            LogCat.log2ViewCallback = log2ViewCallback
+            if (log2ViewCallback == null) null else cache.snapshot()
+        }
+        snapshot?.let {
+            log2ViewCallback?.log(it)
+        }
     }
 
     fun start() {
@@ -55,12 +70,15 @@ object LogCat {
                 while (started.get()) {
                     if (stream.readLine()?.also { log = it } != null) {
                         val temp = truncate(log)
-                        cache.add(temp)
-                        if (log2ViewCallback != null && (FILTER.isEmpty() || temp.contains(
-                                FILTER
-                            ))
-                        ) {
-                            handler.post { log2ViewCallback?.log(temp) }
+                        //same lock as the snapshot in setLog2ViewCallback, so the line ends up
+                        //either in the snapshot or in pending, never in both
+                        val schedule = synchronized(pending) {
+                            cache.add(temp) && log2ViewCallback != null && enqueue(temp)
+                        }
+                        if (schedule) {
+                            handler.post {
+                                Choreographer.getInstance().postFrameCallback(frameCallback)
+                            }
                         }
                     }
                 }
@@ -70,22 +88,37 @@ object LogCat {
         }
     }
 
-    private val log: String
-        get() {
-            val stringBuilder = StringBuilder()
-            for (i in cache.indices) {
-                if (FILTER.isNullOrEmpty() || cache[i].contains(FILTER)) {
-                    stringBuilder.append(cache[i])
-                    if (i < cache.size - 1) {
-                        stringBuilder.append("\n")
-                    }
-                }
+    //Must be called under the pending lock; returns true when the frame callback has to be posted
+    private fun enqueue(line: String): Boolean {
+        pending.add(line)
+        if (isFrameScheduled)
+            return false
+        isFrameScheduled = true
+        return true
+    }
+
+    private fun deliverPending() {
+        val batch = synchronized(pending) {
+            isFrameScheduled = false
+            if (pending.isEmpty())
+                return
+            pending.joinToString("\n").also {
+                pending.clear()
             }
-            return stringBuilder.toString()
         }
+        log2ViewCallback?.log(batch)
+    }
 
+    //Strips the "date time pid tid" prefix; same as replaceFirst("([\\d-\\s:.]*)", "") without the regex
     private fun truncate(log: String): String {
-        return log.replaceFirst("([\\d-\\s:.]*)".toRegex(), "")
+        var i = 0
+        while (i < log.length) {
+            val c = log[i]
+            if (!(c.isDigit() || c.isWhitespace() || c == '-' || c == ':' || c == '.'))
+                break
+            i++
+        }
+        return if (i == 0) log else log.substring(i)
     }
 
     fun stop() {
@@ -96,4 +129,4 @@ object LogCat {
         fun log(log: String)
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.app.devtools
+
+/**
+ * Fixed-capacity store of the log lines; the oldest lines are dropped first.
+ *
+ * Lines matching the current filter are indexed on insertion, so the filtered
+ * snapshot costs O(matched lines) and the index is rebuilt only when the filter changes.
+ */
+class LogRingBuffer(private val capacity: Int) {
+    private val lines = arrayOfNulls<String>(capacity)
+
+    //sequence number of the next line
+    private var nextSeq = 0L
+
+    //sequence numbers of the lines that match the filter, oldest first
+    private val matches = ArrayDeque<Long>()
+
+    var filter: String = ""
+        set(value) {
+            synchronized(this) {
+                if (field == value)
+                    return
+                field = value
+                matches.clear()
+                for (seq in firstSeq() until nextSeq) {
+                    if (isMatch(lines[(seq % capacity).toInt()]))
+                        matches.addLast(seq)
+                }
+            }
+        }
+
+    /**
+     * @return true if the line matches the current filter
+     */
+    fun add(line: String): Boolean {
+        synchronized(this) {
+            val seq = nextSeq++
+            lines[(seq % capacity).toInt()] = line
+            val first = firstSeq()
+            while (matches.isNotEmpty() && matches.first() < first) {
+                matches.removeFirst()
+            }
+            return isMatch(line).also {
+                if (it)
+                    matches.addLast(seq)
+            }
+        }
+    }
+
+    fun snapshot(): String {
+        synchronized(this) {
+            val stringBuilder = StringBuilder()
+            for (seq in matches) {
+                if (stringBuilder.isNotEmpty())
+                    stringBuilder.append("\n")
+                stringBuilder.append(lines[(seq % capacity).toInt()])
+            }
+            return stringBuilder.toString()
+        }
+    }
+
+    private fun firstSeq(): Long = (nextSeq - capacity).coerceAtLeast(0)
+
+    private fun isMatch(line: String?): Boolean {
+        return line != null && (filter.isEmpty() || line.contains(filter))
+    }
+}
@@ -18,21 +18,35 @@
  */
 package dev.skomlach.biometric.app.devtools
 
+import android.content.SharedPreferences
 import androidx.annotation.WorkerThread
 import dev.skomlach.biometric.app.BuildConfig
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
-import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.e
 import dev.skomlach.common.contextprovider.AndroidContext
-import dev.skomlach.common.network.NetworkApi
-import org.jf.dexlib2.DexFileFactory
-import org.jf.dexlib2.Opcodes
+import dev.skomlach.common.storage.SharedPreferenceProvider.getPreferences
 import java.io.*
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
 import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
 import java.util.zip.ZipEntry
 import java.util.zip.ZipFile
-import java.util.zip.ZipInputStream
 
 class Scan4Apis {
+    companion object {
+        //path -> "size:mtime" + found types; lets the re-scan skip unchanged archives
+        private const val CACHE_NAME = "Scan4Apis_Cache"
+
+        private const val EOCD_SIGNATURE = 0x06054b50
+        private const val EOCD_SIZE = 22
+        private const val CEN_SIGNATURE = 0x02014b50
+        private const val CEN_SIZE = 46
+        private const val LOC_SIGNATURE = 0x04034b50
+        private const val LOC_SIZE = 30
+    }
+
     @WorkerThread
     fun getList(): String? {
         try {
@@ -41,154 +55,134 @@ class Scan4Apis {
             if (file.exists())
                 file.delete()
 
-            val cache = File(context.cacheDir, UUID.randomUUID().toString())
-            val fileWriter = FileWriter(file)
-            val writer = StringWriter()
-            cache.mkdirs()
-            try {
-                val paths = HashSet<String>()
-                val bootPath = splitString(System.getProperty("java.boot.class.path"), ":/")
-
-                paths.addAll(bootPath.toList())
-
-                val javaPath = splitString(System.getProperty("java.library.path"), ":/")
-                paths.addAll(javaPath.toList())
-                val javaHomePath = splitString(System.getProperty("java.home"), ":/")
-                paths.addAll(javaHomePath.toList())
-                val userDir = splitString(System.getProperty("user.dir"), ":/")
-                paths.addAll(userDir.toList())
-
-                val path = HashSet<File>()
-                for (p in paths) {
-                    path.add(File(p))
-                }
-
-                val roots = File.listRoots()
-                for (r in roots) {
-                    path.add(r)
-                }
-
-                val jars = HashSet<String>()
-                for (r in path) {
-                    if (r.isDirectory) {
-                        BiometricLoggerImpl.d("Scan4Apis.check path $r")
-                        scanRecursivly(r, jars)
-                    } else
-                        if (r.isFile)
-                            jars.add(r.absolutePath)
-                }
-                val stringBuilder = StringBuilder("\n\n")
-                for (s in jars) {
-                    val dexInternalStoragePath = File(
-                        cache,
-                        File(s).name
-                    )
+            val archives = findArchives()
+            val cache = getPreferences(CACHE_NAME)
+            val pool = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors().coerceIn(1, 4)
+            )
+            val results = try {
+                archives.map { archive ->
+                    pool.submit(Callable {
+                        Pair(archive, scanArchive(archive, cache))
+                    })
+                }.mapNotNull {
                     try {
-                        if (dexInternalStoragePath.exists()) dexInternalStoragePath.delete()
-                        try {
-                            FileInputStream(s).use { bis ->
-                                FileOutputStream(dexInternalStoragePath).use { dexWriter ->
-                                    NetworkApi.fastCopy(bis, dexWriter)
-                                    dexWriter.flush()
-                                }
-                            }
-                        } catch (e: IOException) {
-                            throw RuntimeException(e)
-                        }
-                        val dexes: MutableList<File> = ArrayList()
-                        if (isZipFileWithDex(dexInternalStoragePath)) {
-                            dexes.addAll(extractedDex(dexInternalStoragePath, cache))
-                        } else if (!isZipFile(dexInternalStoragePath)) {
-                            dexes.add(dexInternalStoragePath)
-                        }
-                        var counter = 0
-                        val sb = StringBuilder()
-                        for (f in dexes) {
-                            val dexBackedDexFile =
-                                DexFileFactory.loadDexFile(f, Opcodes.getDefault())
-                            for (d in dexBackedDexFile.classes) {
-                                val type = d.type
-                                val typeCopy = type.lowercase(Locale.ROOT)
-                                if (typeCopy.contains("/fingerprint") || typeCopy.contains("/biometric") ||
-                                    typeCopy.contains("/face") || typeCopy.contains("/iris")
-                                /*|| typeCopy.contains("/voice") || typeCopy.contains("/heart")*/
-                                ) {
-                                    if (!typeCopy.contains("/facebook") && !typeCopy.contains("androidx/") && !typeCopy.contains(
-                                            "/support/"
-                                        )
-                                    ) {
-                                        try{
-                                            val clzName = type.substring(1, type.length - 1).replace("/", ".")
-                                            Class.forName(clzName)
-                                            sb.append(type).append("\n")
-                                            if (counter == 0) {
-                                                writer.write("\n-------------------------\n")
-                                                writer.write(s)
-                                                writer.write("\n")
-                                            }
-                                            writer.write(type + "\n")
-                                            counter++
-                                        } catch (ignore : Throwable){
-
-                                        }
-
-                                    }
-                                }
-                            }
-                            System.gc()
-                            f.delete()
-                        }
-                        if (counter > 0) {
-                            stringBuilder.append("\n-------------------------\n")
-                            stringBuilder.append(s)
-                            stringBuilder.append("\n")
-                            stringBuilder.append(sb.toString())
-                            stringBuilder.append("\n")
-                            writer.write("\n")
-                        }
+                        it.get()
                     } catch (e: Throwable) {
                         e.printStackTrace()
-                    } finally {
-                        dexInternalStoragePath.delete()
+                        null
                     }
                 }
-                return stringBuilder.toString()
             } finally {
-                deleteRecursive(cache)
-                fileWriter.write(writer.toString())
-                fileWriter.close()
+                pool.shutdown()
+            }
+
+            //drop the archives that gone
+            val paths = archives.map { it.absolutePath }.toSet()
+            val editor = cache.edit()
+            for (key in cache.all.keys) {
+                if (!paths.contains(key))
+                    editor.remove(key)
             }
+            editor.apply()
+
+            val stringBuilder = StringBuilder("\n\n")
+            for ((archive, types) in results) {
+                if (types.isEmpty())
+                    continue
+                stringBuilder.append("\n-------------------------\n")
+                stringBuilder.append(archive.absolutePath)
+                stringBuilder.append("\n")
+                for (type in types) {
+                    stringBuilder.append(type).append("\n")
+                }
+                stringBuilder.append("\n")
+            }
+            FileWriter(file).use {
+                it.write(stringBuilder.toString())
+            }
+            return stringBuilder.toString()
         } catch (e: Throwable) {
             e.printStackTrace()
         }
         return null
     }
 
-    private fun isZipFile(fileZip: File): Boolean {
-        try {
-            val zis = ZipInputStream(FileInputStream(fileZip))
-            val zipEntry = zis.nextEntry
-            val isZip = zipEntry != null
-            if (isZip) {
-                zis.closeEntry()
-            }
-            zis.close()
-            return isZip
-        } catch (ignore: Throwable) {
+    private fun findArchives(): List<File> {
+        val paths = HashSet<String>()
+        val bootPath = splitString(System.getProperty("java.boot.class.path"), ":/")
+
+        paths.addAll(bootPath.toList())
+
+        val javaPath = splitString(System.getProperty("java.library.path"), ":/")
+        paths.addAll(javaPath.toList())
+        val javaHomePath = splitString(System.getProperty("java.home"), ":/")
+        paths.addAll(javaHomePath.toList())
+        val userDir = splitString(System.getProperty("user.dir"), ":/")
+        paths.addAll(userDir.toList())
+
+        val path = HashSet<File>()
+        for (p in paths) {
+            path.add(File(p))
         }
-        return false
+
+        val roots = File.listRoots()
+        for (r in roots) {
+            path.add(r)
+        }
+
+        val jars = HashSet<String>()
+        for (r in path) {
+            if (r.isDirectory) {
+                BiometricLoggerImpl.d("Scan4Apis.check path $r")
+                scanRecursivly(r, jars)
+            } else
+                if (r.isFile)
+                    jars.add(r.absolutePath)
+        }
+        return jars.sorted().map { File(it) }
     }
 
-    private fun isZipFileWithDex(fileZip: File): Boolean {
-        try {
-            val zipFile = ZipFile(fileZip)
+    private fun scanArchive(archive: File, cache: SharedPreferences): List<String> {
+        val stamp = "${archive.length()}:${archive.lastModified()}"
+        cache.getString(archive.absolutePath, null)?.let {
+            val lines = it.split("\n")
+            if (lines.first() == stamp)
+                return lines.drop(1).filter { line -> line.isNotEmpty() }
+        }
+        val types = try {
+            readCandidates(archive).distinct().filter { isLoadable(it) }
+        } catch (e: Throwable) {
+            e.printStackTrace()
+            emptyList()
+        }
+        cache.edit().putString(archive.absolutePath, (listOf(stamp) + types).joinToString("\n"))
+            .apply()
+        return types
+    }
+
+    private fun readCandidates(archive: File): List<String> {
+        val result = ArrayList<String>()
+        if (isZipFile(archive)) {
+            //STORED dex files (the usual case for the modern APKs) are read in place from the
+            //mapped archive; only the compressed ones have to be inflated into the heap
+            val stored = RandomAccessFile(archive, "r").use { raf ->
+                val size = raf.channel.size()
+                if (size in 1..Int.MAX_VALUE)
+                    findStoredDexEntries(raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, size))
+                else
+                    emptyMap()
+            }
+            val zipFile = ZipFile(archive)
             try {
                 val entries = zipFile.entries()
-                // iterate through all the entries
                 while (entries.hasMoreElements()) {
-                    // get the zip entry
-                    val name = entries.nextElement()
-                    if (name.name.lowercase(Locale.ROOT).endsWith(".dex")) return true
+                    val entry = entries.nextElement()
+                    if (entry.isDirectory || !entry.name.lowercase(Locale.ROOT).endsWith(".dex"))
+                        continue
+                    val data = stored[entry.name] ?: ByteBuffer.wrap(
+                        zipFile.getInputStream(entry).use { it.readBytes() })
+                    result.addAll(DexClassNames.read(data, ::isCandidate))
                 }
             } finally {
                 try {
@@ -196,48 +190,98 @@ class Scan4Apis {
                 } catch (ignore: IOException) {
                 }
             }
+        } else {
+            //plain dex or a container with the embedded dex files (odex/oat)
+            RandomAccessFile(archive, "r").use { raf ->
+                val size = raf.channel.size()
+                if (size in 1..Int.MAX_VALUE) {
+                    val buffer = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                    result.addAll(DexClassNames.read(buffer, ::isCandidate))
+                }
+            }
+        }
+        return result
+    }
+
+    //Walks the central directory; ZIP64 and malformed entries are skipped and left to ZipFile
+    private fun findStoredDexEntries(source: ByteBuffer): Map<String, ByteBuffer> {
+        val buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+        val result = HashMap<String, ByteBuffer>()
+        val size = buffer.limit()
+        var eocd = size - EOCD_SIZE
+        val stop = maxOf(0, eocd - 0xFFFF)
+        while (eocd >= stop && buffer.getInt(eocd) != EOCD_SIGNATURE)
+            eocd--
+        if (eocd < stop)
+            return result
+        val count = buffer.getShort(eocd + 10).toInt() and 0xFFFF
+        var pos = buffer.getInt(eocd + 16).toLong() and 0xFFFFFFFFL
+        for (i in 0 until count) {
+            if (pos + CEN_SIZE > size || buffer.getInt(pos.toInt()) != CEN_SIGNATURE)
+                break
+            val cen = pos.toInt()
+            val method = buffer.getShort(cen + 10).toInt() and 0xFFFF
+            val compressedSize = buffer.getInt(cen + 20).toLong() and 0xFFFFFFFFL
+            val nameLength = buffer.getShort(cen + 28).toInt() and 0xFFFF
+            val extraLength = buffer.getShort(cen + 30).toInt() and 0xFFFF
+            val commentLength = buffer.getShort(cen + 32).toInt() and 0xFFFF
+            val localOffset = buffer.getInt(cen + 42).toLong() and 0xFFFFFFFFL
+            pos += CEN_SIZE + nameLength + extraLength + commentLength
+            if (method != ZipEntry.STORED || pos > size)
+                continue
+            val name = Charsets.UTF_8.decode(slice(buffer, cen + CEN_SIZE, nameLength)).toString()
+            if (!name.lowercase(Locale.ROOT).endsWith(".dex"))
+                continue
+            if (localOffset + LOC_SIZE > size || buffer.getInt(localOffset.toInt()) != LOC_SIGNATURE)
+                continue
+            val loc = localOffset.toInt()
+            val dataOffset = localOffset + LOC_SIZE +
+                    (buffer.getShort(loc + 26).toInt() and 0xFFFF) +
+                    (buffer.getShort(loc + 28).toInt() and 0xFFFF)
+            if (dataOffset + compressedSize <= size)
+                result[name] = slice(buffer, dataOffset.toInt(), compressedSize.toInt())
+        }
+        return result
+    }
+
+    private fun slice(buffer: ByteBuffer, offset: Int, length: Int): ByteBuffer {
+        val copy = buffer.duplicate()
+        copy.position(offset)
+        copy.limit(offset + length)
+        return copy.slice()
+    }
+
+    private fun isCandidate(type: String): Boolean {
+        val typeCopy = type.lowercase(Locale.ROOT)
+        return (typeCopy.contains("/fingerprint") || typeCopy.contains("/biometric") ||
+                typeCopy.contains("/face") || typeCopy.contains("/iris")
+                /*|| typeCopy.contains("/voice") || typeCopy.contains("/heart")*/
+                ) && !typeCopy.contains("/facebook") && !typeCopy.contains("androidx/") && !typeCopy.contains(
+            "/support/"
+        )
+    }
+
+    //Only classes visible for the app are interesting; not initialized to keep the check cheap
+    private fun isLoadable(type: String): Boolean {
+        return try {
+            val clzName = type.substring(1, type.length - 1).replace("/", ".")
+            Class.forName(clzName, false, javaClass.classLoader)
+            true
         } catch (ignore: Throwable) {
+            false
         }
-        return false
     }
 
-    @Throws(Exception::class)
-    private fun extractedDex(fileZip: File, destDir: File): List<File> {
-        val files: MutableList<File> = ArrayList()
-        var zipFile: ZipFile? = null
+    private fun isZipFile(file: File): Boolean {
         try {
-            zipFile = ZipFile(fileZip)
-            val entries = zipFile.entries()
-            if (!destDir.exists()) {
-                destDir.mkdirs()
-            }
-            val zipEntries: MutableList<ZipEntry> = ArrayList()
-
-            // iterate through all the entries
-            while (entries.hasMoreElements()) {
-                // get the zip entry
-                val name = entries.nextElement()
-                if (name.name.lowercase(Locale.ROOT).endsWith(".dex")) zipEntries.add(name)
-            }
-            zipEntries.sortWith(Comparator { o1, o2 -> o1.name.compareTo(o2.name) })
-            for (zipEntry in zipEntries) {
-                if (!zipEntry.isDirectory) {
-                    val file = File(destDir, fileZip.name + "_" + zipEntry.name.replace("/", "-"))
-                    if (file.exists()) file.delete()
-                    val fos = FileOutputStream(file)
-                    NetworkApi.fastCopy(zipFile.getInputStream(zipEntry), fos)
-                    fos.flush()
-                    files.add(file)
-                }
-            }
-            zipFile.close()
-        } finally {
-            try {
-                zipFile?.close()
-            } catch (ignore: IOException) {
+            FileInputStream(file).use {
+                val header = ByteArray(4)
+                return it.read(header) == 4 && header[0] == 'P'.code.toByte() && header[1] == 'K'.code.toByte() &&
+                        header[2] == 3.toByte() && header[3] == 4.toByte()
             }
+        } catch (ignore: Throwable) {
         }
-        return files
+        return false
     }
 
     private fun scanRecursivly(fileOrDirectory: File?, filesOut: HashSet<String>) {
@@ -271,106 +315,6 @@ class Scan4Apis {
         }
     }
 
-    private fun deleteRecursive(fileOrDirectory: File?) {
-        if (fileOrDirectory == null || !fileOrDirectory.exists()) return
-        if (fileOrDirectory.isDirectory) {
-            val files = fileOrDirectory.listFiles()
-            if (files != null && files.isNotEmpty()) {
-                for (child in files) {
-                    deleteRecursive(child)
-                }
-            }
-        }
-        safeDelete(fileOrDirectory)
-    }
-
-    private fun safeDelete(fileOrDirectory: File?): Boolean {
-        try {
-            if (fileOrDirectory == null || !fileOrDirectory.exists()) {
-                return true
-            }
-            try {
-                if (fileOrDirectory.isFile) {
-                    val size = fileOrDirectory.length()
-                    if (size > 0) {
-                        //When you delete a file using file.delete(), only the reference to the file is removed from the filesystem table.
-                        // The file still exists on disk until other data overwrites it, leaving it vulnerable to recover
-                        val data = ByteArray(
-                            Math.min((2 * 1024 * 1024).toLong(), size).toInt()
-                        )
-                        Arrays.fill(data, 0x00.toByte())
-                        val fileOutputStream: OutputStream =
-                            FileOutputStream(fileOrDirectory, false)
-                        val bufferedOutputStream = BufferedOutputStream(fileOutputStream, data.size)
-                        var total = 0
-                        while (total < size) {
-                            bufferedOutputStream.write(data)
-                            total += data.size
-                        }
-                        bufferedOutputStream.flush()
-                        bufferedOutputStream.close()
-                        fileOutputStream.close()
-                    }
-                }
-            } catch (e: Throwable) {
-                e(e)
-            }
-            if (fileOrDirectory.delete()) {
-                return true
-            }
-        } catch (e: Throwable) {
-            e(e)
-        }
-
-        //fallback
-        try {
-            val p = Runtime.getRuntime().exec(findPathForBinary("sh") + " -")
-            val os = DataOutputStream(p.outputStream)
-            try {
-                if (fileOrDirectory?.isDirectory == true) os.writeBytes(
-                    """
-    rm -f ${fileOrDirectory.absolutePath}
-    
-    """.trimIndent()
-                ) //remove file
-                else os.writeBytes(
-                    """
-    rm -f -d ${fileOrDirectory?.absolutePath}
-    
-    """.trimIndent()
-                ) //remove empty dir
-            } catch (ignored: Exception) {
-            }
-            os.writeBytes("exit\n")
-            os.close()
-            p.destroy()
-            return fileOrDirectory?.exists() == false
-        } catch (e: Throwable) {
-            e(e)
-        }
-        return false
-    }
-
-    private fun findPathForBinary(binaryName: String): String? {
-        val places = arrayOf(
-            "/sbin/",
-            "/system/bin/",
-            "/system/xbin/",
-            "/data/local/xbin/",
-            "/data/local/bin/",
-            "/system/sd/xbin/",
-            "/system/bin/failsafe/",
-            "/data/local/"
-        )
-        for (where in places) {
-            val target = File(where + binaryName)
-            if (target.exists() && !target.isDirectory && target.canExecute()) {
-                return where + binaryName
-            }
-        }
-        return null
-    }
-
     private fun splitString(str: String?, delimiter: String?): Array<String> {
         if (str.isNullOrEmpty()) {
             return arrayOf()
@@ -390,4 +334,4 @@ class Scan4Apis {
         return list.toTypedArray()
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.app.devtools
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class LargeFileIndexTest {
+    private companion object {
+        const val LIMIT = 100L
+    }
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    //Runs the posted task only when the test says so
+    private class ManualScheduler : LargeFileIndex.Scheduler {
+        val tasks = ArrayList<Runnable>()
+        var posts = 0
+
+        override fun postDelayed(task: Runnable, delay: Long) {
+            posts++
+            tasks.add(task)
+        }
+
+        override fun removeCallbacks(task: Runnable) {
+            tasks.remove(task)
+        }
+
+        fun runAll() {
+            ArrayList(tasks).forEach { it.run() }
+        }
+    }
+
+    private class RecordingListener : LargeFileIndex.Listener {
+        val largeFiles = ArrayList<String>()
+        val added = ArrayList<String>()
+        val removed = ArrayList<String>()
+
+        override fun onLargeFile(file: File, size: Long) {
+            largeFiles.add(file.name)
+        }
+
+        override fun onDirectoryAdded(dir: File) {
+            added.add(dir.name)
+        }
+
+        override fun onDirectoryRemoved(dir: File) {
+            removed.add(dir.name)
+        }
+    }
+
+    private val scheduler = ManualScheduler()
+    private val listener = RecordingListener()
+
+    private fun newIndex() = LargeFileIndex(folder.root, LIMIT, scheduler, listener)
+
+    private fun write(file: File, size: Int): File {
+        file.parentFile?.mkdirs()
+        file.writeBytes(ByteArray(size))
+        return file
+    }
+
+    @Test
+    fun seedWalksTheTreeOnce() {
+        val small = write(File(folder.root, "a/small.log"), 10)
+        val large = write(File(folder.root, "a/b/large.log"), 200)
+        val index = newIndex()
+
+        index.seed()
+        index.seed()
+
+        assertEquals(10L, index.getSize(small))
+        assertEquals(200L, index.getSize(large))
+        assertEquals(listOf(folder.root.name, "a", "b"), listener.added)
+        assertEquals(listOf("large.log"), listener.largeFiles)
+    }
+
+    @Test
+    fun eventsOfOneBatchAreFlushedOnce() {
+        val first = write(File(folder.root, "first.log"), 1)
+        val second = write(File(folder.root, "second.log"), 1)
+        val index = newIndex()
+        index.seed()
+
+        write(first, 20)
+        write(second, 30)
+        index.onEvent(folder.root, first.name)
+        index.onEvent(folder.root, second.name)
+        index.onEvent(folder.root, first.name)
+        assertEquals(1, scheduler.posts)
+        assertEquals(1L, index.getSize(first))
+
+        scheduler.runAll()
+        assertEquals(20L, index.getSize(first))
+        assertEquals(30L, index.getSize(second))
+        assertTrue(scheduler.tasks.isEmpty())
+
+        //next batch is scheduled again
+        index.onEvent(folder.root, first.name)
+        assertEquals(2, scheduler.posts)
+    }
+
+    @Test
+    fun largeFileIsReportedOnlyWhenCrossingTheLimit() {
+        val file = write(File(folder.root, "grow.log"), 10)
+        val index = newIndex()
+        index.seed()
+
+        for (size in listOf(150, 200, 50, 120)) {
+            write(file, size)
+            index.onEvent(folder.root, file.name)
+            index.flush()
+        }
+
+        //10 -> 150 and 50 -> 120 cross the limit, 150 -> 200 stays above it
+        assertEquals(listOf("grow.log", "grow.log"), listener.largeFiles)
+    }
+
+    @Test
+    fun removedDirectoryDropsItsSubtree() {
+        val dir = File(folder.root, "cache")
+        val nested = write(File(dir, "nested/data.bin"), 10)
+        val top = write(File(dir, "top.bin"), 10)
+        val kept = write(File(folder.root, "kept.bin"), 10)
+        val index = newIndex()
+        index.seed()
+
+        assertTrue(dir.deleteRecursively())
+        index.onEvent(folder.root, dir.name)
+        index.flush()
+
+        assertNull(index.getSize(nested))
+        assertNull(index.getSize(top))
+        assertEquals(10L, index.getSize(kept))
+        assertEquals(setOf("cache", "nested"), listener.removed.toSet())
+        assertEquals(2, listener.removed.size)
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.benchmark
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Minimal JMH-like harness: warmup iterations are discarded, each measured iteration runs the
+ * operation [BenchmarkConfig.opsPerIteration] times and reports ns/op.
+ */
+class BenchmarkConfig(
+    val warmupIterations: Int = 5,
+    val measureIterations: Int = 10,
+    val opsPerIteration: Int = 1000
+)
+
+class BenchmarkResult(
+    val name: String,
+    val mode: String,
+    val iterations: Int,
+    val opsPerIteration: Int,
+    val meanNanosPerOp: Double,
+    val minNanosPerOp: Double,
+    val maxNanosPerOp: Double,
+    val stdDevNanosPerOp: Double
+) {
+    override fun toString(): String {
+        return "BenchmarkResult(name=$name, mode=$mode, mean=${meanNanosPerOp}ns/op, min=${minNanosPerOp}ns/op, max=${maxNanosPerOp}ns/op, stdDev=${stdDevNanosPerOp})"
+    }
+}
+
+//Prevents the JIT from dropping the measured code as dead
+object Blackhole {
+    @Volatile
+    private var sink = 0
+
+    fun consume(value: Any?) {
+        sink = sink xor (value?.hashCode() ?: 0)
+    }
+}
+
+object BenchmarkHarness {
+    const val MODE_AVERAGE_TIME = "avgt"
+    const val MODE_SINGLE_SHOT = "ss"
+    private const val IDLE_PERIOD_MILLIS = 10L
+
+    fun measure(
+        name: String,
+        config: BenchmarkConfig = BenchmarkConfig(),
+        operation: () -> Any?
+    ): BenchmarkResult {
+        for (i in 0 until config.warmupIterations) {
+            runIteration(config.opsPerIteration, operation)
+        }
+        val samples = DoubleArray(config.measureIterations) {
+            runIteration(config.opsPerIteration, operation).toDouble() / config.opsPerIteration
+        }
+        return toResult(name, MODE_AVERAGE_TIME, config.opsPerIteration, samples)
+    }
+
+    /**
+     * For operations that may be executed only once per process (cold start).
+     */
+    fun singleShot(name: String, operation: () -> Any?): BenchmarkResult {
+        val start = System.nanoTime()
+        Blackhole.consume(operation.invoke())
+        return toResult(name, MODE_SINGLE_SHOT, 1, doubleArrayOf((System.nanoTime() - start).toDouble()))
+    }
+
+    /**
+     * For asynchronous operations; [operation] must invoke the passed callback once finished.
+     *
+     * @param idle called while waiting; lets the caller drain the main looper when the
+     * benchmark itself runs on it (Robolectric)
+     */
+    fun singleShotAsync(
+        name: String,
+        timeoutMillis: Long,
+        idle: () -> Unit = {},
+        operation: (onFinished: () -> Unit) -> Unit
+    ): BenchmarkResult? {
+        val latch = CountDownLatch(1)
+        val start = System.nanoTime()
+        val end = AtomicLong(0)
+        operation.invoke {
+            end.set(System.nanoTime())
+            latch.countDown()
+        }
+        val deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)
+        while (!latch.await(IDLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (System.nanoTime() > deadline)
+                return null
+            idle.invoke()
+        }
+        return toResult(name, MODE_SINGLE_SHOT, 1, doubleArrayOf((end.get() - start).toDouble()))
+    }
+
+    private fun runIteration(ops: Int, operation: () -> Any?): Long {
+        val start = System.nanoTime()
+        for (i in 0 until ops) {
+            Blackhole.consume(operation.invoke())
+        }
+        return System.nanoTime() - start
+    }
+
+    private fun toResult(
+        name: String,
+        mode: String,
+        opsPerIteration: Int,
+        samples: DoubleArray
+    ): BenchmarkResult {
+        val mean = samples.average()
+        val variance = samples.sumOf { (it - mean) * (it - mean) } / samples.size
+        return BenchmarkResult(
+            name,
+            mode,
+            samples.size,
+            opsPerIteration,
+            mean,
+            samples.minOrNull() ?: 0.0,
+            samples.maxOrNull() ?: 0.0,
+            Math.sqrt(variance)
+        )
+    }
+}
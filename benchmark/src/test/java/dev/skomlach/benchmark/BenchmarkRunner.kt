@@ -0,0 +1,65 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.benchmark
+
+import android.content.Context
+import android.os.Build
+import com.google.gson.GsonBuilder
+import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
+import java.io.File
+
+/**
+ * Runs all suites and stores the results as JSON, so two runs (e.g. two library versions)
+ * can be compared with any diff tool.
+ *
+ * Started by [LibraryBenchmarksTest] on the JVM (Robolectric).
+ */
+object BenchmarkRunner {
+    class Report(
+        val model: String,
+        val sdkInt: Int,
+        val timestamp: Long,
+        val results: List<BenchmarkResult>
+    )
+
+    /**
+     * @param idle drains the main looper while an asynchronous suite is awaited
+     */
+    fun run(
+        context: Context,
+        output: File,
+        config: BenchmarkConfig = BenchmarkConfig(),
+        idle: () -> Unit = {}
+    ): Report {
+        val results = ArrayList<BenchmarkResult>()
+        results.addAll(LibraryBenchmarks.init(idle))
+        results.addAll(LibraryBenchmarks.statusQueries(config))
+        results.addAll(LibraryBenchmarks.cryptography(config))
+        results.addAll(LibraryBenchmarks.deviceInfo(config))
+        results.addAll(LibraryBenchmarks.localization(context, config))
+        val report = Report(Build.MODEL ?: "", Build.VERSION.SDK_INT, System.currentTimeMillis(), results)
+        output.parentFile?.mkdirs()
+        output.writeText(GsonBuilder().setPrettyPrinting().create().toJson(report))
+        for (result in results) {
+            BiometricLoggerImpl.d("BenchmarkRunner $result")
+        }
+        return report
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.benchmark
+
+import android.content.Context
+import dev.skomlach.biometric.compat.AuthenticationResult
+import dev.skomlach.biometric.compat.BiometricApi
+import dev.skomlach.biometric.compat.BiometricAuthRequest
+import dev.skomlach.biometric.compat.BiometricCryptoObject
+import dev.skomlach.biometric.compat.BiometricManagerCompat
+import dev.skomlach.biometric.compat.BiometricPromptCompat
+import dev.skomlach.biometric.compat.BiometricType
+import dev.skomlach.biometric.compat.crypto.CryptographyManager
+import dev.skomlach.biometric.compat.crypto.CryptographyManagerInterfaceLegacyImpl
+import dev.skomlach.common.device.DeviceInfoManager
+import dev.skomlach.common.misc.ExecutorHelper
+import dev.skomlach.common.translate.LocalizationHelper
+import javax.crypto.Cipher
+
+object LibraryBenchmarks {
+    private const val INIT_TIMEOUT = 30_000L
+    private const val KEY_NAME = "LibraryBenchmarks"
+
+    fun init(idle: () -> Unit): List<BenchmarkResult> {
+        val result = BenchmarkHarness.singleShotAsync(
+            "BiometricPromptCompat.init",
+            INIT_TIMEOUT,
+            idle
+        ) { onFinished ->
+            ExecutorHelper.post {
+                BiometricPromptCompat.init { onFinished.invoke() }
+            }
+        }
+        return listOfNotNull(result)
+    }
+
+    fun statusQueries(config: BenchmarkConfig): List<BenchmarkResult> {
+        val requests = listOf(
+            BiometricAuthRequest(BiometricApi.AUTO, BiometricType.BIOMETRIC_ANY),
+            BiometricAuthRequest(BiometricApi.BIOMETRIC_API, BiometricType.BIOMETRIC_ANY),
+            BiometricAuthRequest(BiometricApi.LEGACY_API, BiometricType.BIOMETRIC_FACE)
+        )
+        val list = ArrayList<BenchmarkResult>()
+        for (request in requests) {
+            val suffix = "[${request.api}/${request.type}]"
+            list.add(BenchmarkHarness.measure("BiometricManagerCompat.isHardwareDetected$suffix", config) {
+                BiometricManagerCompat.isHardwareDetected(request)
+            })
+            list.add(BenchmarkHarness.measure("BiometricManagerCompat.hasEnrolled$suffix", config) {
+                BiometricManagerCompat.hasEnrolled(request)
+            })
+            list.add(BenchmarkHarness.measure("BiometricManagerCompat.isBiometricReadyForUsage$suffix", config) {
+                BiometricManagerCompat.isBiometricReadyForUsage(request)
+            })
+        }
+        return list
+    }
+
+    /**
+     * AndroidKeyStore is not available on the JVM, so the library's software-backed key storage
+     * (the same one used on devices without the Keystore) is measured instead.
+     */
+    fun cryptography(config: BenchmarkConfig): List<BenchmarkResult> {
+        val manager = CryptographyManagerInterfaceLegacyImpl()
+        //RSA/PKCS1 with 2048 bit key: up to 245 bytes per block
+        val plaintext = ByteArray(128) { it.toByte() }
+        //RSA operations are much slower than the status queries
+        val cryptoConfig = BenchmarkConfig(
+            config.warmupIterations,
+            config.measureIterations,
+            (config.opsPerIteration / 10).coerceAtLeast(1)
+        )
+        manager.deleteKey(KEY_NAME)
+        val encryption = {
+            confirmed(manager.getInitializedCipherForEncryption(KEY_NAME, false))
+        }
+        val decryption = {
+            confirmed(manager.getInitializedCipherForDecryption(KEY_NAME, false, null))
+        }
+        val list = ArrayList<BenchmarkResult>()
+        list.add(BenchmarkHarness.singleShot("CryptographyManagerInterface.keyGeneration[cold]") {
+            manager.getInitializedCipherForEncryption(KEY_NAME, false)
+        })
+        list.add(BenchmarkHarness.measure("CryptographyManagerInterface.getInitializedCipherForEncryption", cryptoConfig) {
+            manager.getInitializedCipherForEncryption(KEY_NAME, false)
+        })
+        list.add(BenchmarkHarness.measure("CryptographyManager.encryptData", cryptoConfig) {
+            CryptographyManager.encryptData(plaintext, encryption.invoke())
+        })
+        CryptographyManager.encryptData(plaintext, encryption.invoke())?.data?.let { ciphertext ->
+            list.add(BenchmarkHarness.measure("CryptographyManager.decryptData", cryptoConfig) {
+                CryptographyManager.decryptData(ciphertext, decryption.invoke())
+            })
+        }
+        manager.deleteKey(KEY_NAME)
+        return list
+    }
+
+    private fun confirmed(cipher: Cipher): Set<AuthenticationResult> {
+        return setOf(
+            AuthenticationResult(
+                BiometricType.BIOMETRIC_FINGERPRINT,
+                BiometricCryptoObject(cipher = cipher)
+            )
+        )
+    }
+
+    fun deviceInfo(config: BenchmarkConfig): List<BenchmarkResult> {
+        return listOf(
+            BenchmarkHarness.singleShot("DeviceInfoManager.getAnyDeviceInfo[cold]") {
+                DeviceInfoManager.getAnyDeviceInfo()
+            },
+            BenchmarkHarness.measure("DeviceInfoManager.getAnyDeviceInfo", config) {
+                DeviceInfoManager.getAnyDeviceInfo()
+            }
+        )
+    }
+
+    fun localization(context: Context, config: BenchmarkConfig): List<BenchmarkResult> {
+        return listOf(
+            BenchmarkHarness.measure("LocalizationHelper.getLocalizedString(resId)", config) {
+                LocalizationHelper.getLocalizedString(context, android.R.string.ok)
+            },
+            BenchmarkHarness.measure("LocalizationHelper.getLocalizedString(String)", config) {
+                LocalizationHelper.getLocalizedString("Biometric authentication")
+            }
+        )
+    }
+}
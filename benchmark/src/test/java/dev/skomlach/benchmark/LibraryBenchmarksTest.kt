@@ -0,0 +1,54 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.benchmark
+
+import android.os.Build
+import android.os.Looper
+import androidx.test.core.app.ApplicationProvider
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.io.File
+
+/**
+ * JVM entry point of the benchmarks: ./gradlew :benchmark:testDebugUnitTest
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [Build.VERSION_CODES.TIRAMISU])
+class LibraryBenchmarksTest {
+
+    @Test
+    fun runAll() {
+        val output = File(
+            System.getProperty("benchmark.output") ?: "build/outputs/benchmark/results.json"
+        )
+        val report = BenchmarkRunner.run(
+            ApplicationProvider.getApplicationContext(),
+            output
+        ) {
+            shadowOf(Looper.getMainLooper()).idle()
+        }
+        assertTrue(report.results.isNotEmpty())
+        assertTrue(output.exists())
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package androidx.biometric
+
+import android.annotation.SuppressLint
+import androidx.fragment.app.FragmentManager
+import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
+import java.lang.reflect.Method
+
+/**
+ * Accessors for the androidx.biometric internals used by the prompt implementations.
+ *
+ * Members are resolved once, on the first use; if the library version does not match,
+ * the incompatibility is logged once and the accessor turns into a no-op.
+ */
+@SuppressLint("RestrictedApi")
+object BiometricInternals {
+    //Same as BiometricPrompt.BIOMETRIC_FRAGMENT_TAG
+    private const val BIOMETRIC_FRAGMENT_TAG = "androidx.biometric.BiometricFragment"
+
+    //BiometricPrompt.findOrAddBiometricFragment(FragmentManager); matched by signature, name may be obfuscated
+    private val fragmentFactory: Method? by lazy {
+        try {
+            BiometricPrompt::class.java.declaredMethods.firstOrNull {
+                it.parameterTypes.size == 1 && it.parameterTypes[0] == FragmentManager::class.java && it.returnType == BiometricFragment::class.java
+            }?.apply {
+                isAccessible = true
+            }
+        } catch (e: Throwable) {
+            BiometricLoggerImpl.e(e)
+            null
+        }.also {
+            if (it == null)
+                BiometricLoggerImpl.e("BiometricInternals: BiometricFragment factory not found")
+        }
+    }
+
+    @Volatile
+    private var isCancellationSupported = true
+
+    fun findBiometricFragment(fragmentManager: FragmentManager): BiometricFragment? {
+        try {
+            (fragmentManager.findFragmentByTag(BIOMETRIC_FRAGMENT_TAG) as? BiometricFragment)?.let {
+                return it
+            }
+            return fragmentFactory?.invoke(null, fragmentManager) as BiometricFragment?
+        } catch (e: Throwable) {
+            BiometricLoggerImpl.e(e)
+        }
+        return null
+    }
+
+    /**
+     * @return `false` if the fragment can not be canceled this way
+     */
+    fun forceCancel(biometricFragment: BiometricFragment?): Boolean {
+        if (biometricFragment == null || !isCancellationSupported)
+            return false
+        try {
+            biometricFragment.cancelAuthentication(BiometricFragment.CANCELED_FROM_CLIENT)
+            return true
+        } catch (e: LinkageError) {
+            isCancellationSupported = false
+            BiometricLoggerImpl.e(e, "BiometricInternals: BiometricFragment cancellation not supported")
+        } catch (ignore: Throwable) {
+        }
+        return false
+    }
+}
@@ -19,14 +19,8 @@
 
 package androidx.biometric
 
-import android.annotation.SuppressLint
-
 object CancellationHelper {
-    @SuppressLint("RestrictedApi")
-    fun forceCancel(biometricFragment: BiometricFragment?) {
-        try {
-            biometricFragment?.cancelAuthentication(BiometricFragment.CANCELED_FROM_CLIENT)
-        } catch (ignore: Throwable) {
-        }
+    fun forceCancel(biometricFragment: BiometricFragment?): Boolean {
+        return BiometricInternals.forceCancel(biometricFragment)
     }
 }
\ No newline at end of file
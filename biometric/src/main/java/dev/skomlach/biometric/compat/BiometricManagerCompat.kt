@@ -25,7 +25,9 @@ import android.provider.Settings
 import dev.skomlach.biometric.compat.custom.CustomBiometricProvider
 import dev.skomlach.biometric.compat.engine.BiometricAuthentication
 import dev.skomlach.biometric.compat.engine.BiometricMethod
+import dev.skomlach.biometric.compat.engine.internal.BiometricModuleStateCache
 import dev.skomlach.biometric.compat.utils.BiometricErrorLockoutPermanentFix
+import dev.skomlach.biometric.compat.utils.CameraAvailabilityTracker
 import dev.skomlach.biometric.compat.utils.DevicesWithKnownBugs
 import dev.skomlach.biometric.compat.utils.HardwareAccessImpl
 import dev.skomlach.biometric.compat.utils.SensorPrivacyCheck
@@ -37,6 +39,21 @@ object BiometricManagerCompat {
     private val preferences =
         SharedPreferenceProvider.getPreferences("BiometricCompat_ManagerCompat")
 
+    init {
+        CameraAvailabilityTracker.addListener(object :
+            CameraAvailabilityTracker.CameraStateListener {
+            override fun onCameraStateChanged() {
+                //Camera-based modules may report other hardware state while the camera is busy/blocked
+                for (method in BiometricMethod.values()) {
+                    if (method.biometricType == BiometricType.BIOMETRIC_FACE ||
+                        method.biometricType == BiometricType.BIOMETRIC_IRIS
+                    )
+                        BiometricModuleStateCache.invalidate(method.id)
+                }
+            }
+        })
+    }
+
     @JvmStatic
     fun registerCustomBiometric(
         id: Int,
@@ -38,6 +38,7 @@ import dev.skomlach.biometric.compat.engine.BiometricAuthentication
 import dev.skomlach.biometric.compat.engine.BiometricInitListener
 import dev.skomlach.biometric.compat.engine.BiometricMethod
 import dev.skomlach.biometric.compat.engine.core.interfaces.BiometricModule
+import dev.skomlach.biometric.compat.impl.AuthResultAggregator
 import dev.skomlach.biometric.compat.impl.BiometricPromptApi28Impl
 import dev.skomlach.biometric.compat.impl.BiometricPromptGenericImpl
 import dev.skomlach.biometric.compat.impl.BiometricPromptSilentImpl
@@ -45,6 +46,11 @@ import dev.skomlach.biometric.compat.impl.IBiometricPromptImpl
 import dev.skomlach.biometric.compat.utils.*
 import dev.skomlach.biometric.compat.utils.activityView.ActivityViewWatcher
 import dev.skomlach.biometric.compat.utils.appstate.AppBackgroundDetector
+import dev.skomlach.biometric.compat.utils.logging.AuthOutcome
+import dev.skomlach.biometric.compat.utils.logging.AuthPhase
+import dev.skomlach.biometric.compat.utils.logging.AuthTimeline
+import dev.skomlach.biometric.compat.utils.logging.AuthTimelineListener
+import dev.skomlach.biometric.compat.utils.logging.AuthTimelineTracer
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
 import dev.skomlach.biometric.compat.utils.notification.BiometricNotificationManager
 import dev.skomlach.biometric.compat.utils.themes.DarkLightThemes
@@ -147,6 +153,11 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
             BiometricLoggerImpl.externalLogger = externalLogger1
         }
 
+        @JvmStatic
+        fun authTimelineListener(listener: AuthTimelineListener?) {
+            AuthTimelineTracer.listener = listener
+        }
+
         private val pendingTasks: MutableList<Runnable?> =
             Collections.synchronizedList(ArrayList<Runnable?>())
         private var isBiometricInit = AtomicBoolean(false)
@@ -189,6 +200,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                         })
                     }
                     DeviceUnlockedReceiver.registerDeviceUnlockListener()
+                    CameraAvailabilityTracker.start()
                 }
             }
         }
@@ -212,6 +224,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                         task?.let { ExecutorHelper.post(it) }
                     }
                     pendingTasks.clear()
+                    BiometricTitle.warmUp(AndroidContext.appContext)
                 }
             })
         }
@@ -260,6 +273,8 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
         }
     }
     private var startTs = 0L
+    private var timeline: AuthTimeline? = null
+    private var dialogShowSpan: AuthTimeline.Span? = null
     fun authenticate(callbackOuter: AuthenticationCallback) {
         startTs = System.currentTimeMillis()
         if (authFlowInProgress.get()) {
@@ -267,10 +282,11 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
             return
         }
         authFlowInProgress.set(true)
+        timeline = AuthTimelineTracer.startSession()
         if (isActivityFinished(builder.getContext())) {
             BiometricLoggerImpl.e("Unable to start BiometricPromptCompat.authenticate() cause of Activity destroyed")
             callbackOuter.onCanceled()
-            authFlowInProgress.set(false)
+            finishAuthFlow(AuthOutcome.CANCELED)
             return
         }
         if (!API_ENABLED) {
@@ -278,7 +294,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                 AuthenticationFailureReason.NO_HARDWARE,
                 null
             )
-            authFlowInProgress.set(false)
+            finishAuthFlow(AuthOutcome.FAILED)
             return
         }
         BiometricLoggerImpl.d("BiometricPromptCompat.authenticate()")
@@ -288,13 +304,23 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                 AuthenticationFailureReason.HARDWARE_UNAVAILABLE,
                 null
             )
-            authFlowInProgress.set(false)
+            finishAuthFlow(AuthOutcome.FAILED)
             return
         }
         val startTime = System.currentTimeMillis()
         var timeout = false
+        val readinessSpan = timeline?.begin(AuthPhase.READINESS_WAIT)
+        val truncationSpan = timeline?.begin(AuthPhase.TRUNCATION_CHECK)
         ExecutorHelper.startOnBackground {
-            while (!builder.isTruncateChecked() || !isInitialized) {
+            while (true) {
+                val isReady = isInitialized
+                val isTruncateChecked = builder.isTruncateChecked()
+                if (isReady)
+                    readinessSpan?.end()
+                if (isTruncateChecked)
+                    truncationSpan?.end()
+                if (isReady && isTruncateChecked)
+                    break
                 timeout = System.currentTimeMillis() - startTime >= TimeUnit.SECONDS.toMillis(5)
                 if (timeout) {
                     break
@@ -307,7 +333,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
             ExecutorHelper.post {
                 if (timeout) {
                     callbackOuter.onFailed(AuthenticationFailureReason.NOT_INITIALIZED_ERROR, null)
-                    authFlowInProgress.set(false)
+                    finishAuthFlow(AuthOutcome.FAILED)
                 } else
                     startAuth(callbackOuter)
             }
@@ -344,9 +370,13 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
         if (isActivityFinished(builder.getContext())) {
             BiometricLoggerImpl.e("Unable to start BiometricPromptCompat.authenticate() cause of Activity destroyed")
             callbackOuter.onCanceled()
-            authFlowInProgress.set(false)
+            finishAuthFlow(AuthOutcome.CANCELED)
             return
         }
+        //Resolve the impl here, so the selection is not done implicitly by the background checks
+        AuthTimelineTracer.trace(AuthPhase.IMPL_SELECTION) {
+            impl
+        }
         BiometricLoggerImpl.d("BiometricPromptCompat. start PermissionsFragment.askForPermissions")
         val result = AtomicReference<AuthenticationFailureReason?>(null)
         checkHardwareAsync {
@@ -365,7 +395,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                         AuthenticationFailureReason.MISSING_PERMISSIONS_ERROR,
                         null
                     )
-                    authFlowInProgress.set(false)
+                    finishAuthFlow(AuthOutcome.FAILED)
                 } else {
                     BiometricLoggerImpl.d("BiometricPromptCompat.startAuth")
                     val activityViewWatcher = try {
@@ -412,6 +442,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                                     }
 
                                     BiometricLoggerImpl.d("BiometricPromptCompat.AuthenticationCallback.onSucceeded2 = $confirmed")
+                                    AuthTimelineTracer.finish(timeline, AuthOutcome.SUCCEEDED)
                                     callbackOuter.onSucceeded(confirmed.toSet())
                                 } finally {
                                     onUIClosed()
@@ -422,6 +453,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                         override fun onCanceled() {
                             if (isOpened.get()) {
                                 BiometricLoggerImpl.d("BiometricPromptCompat.AuthenticationCallback.onCanceled")
+                                AuthTimelineTracer.finish(timeline, AuthOutcome.CANCELED)
                                 try {
                                     callbackOuter.onCanceled()
                                 } finally {
@@ -436,6 +468,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                         ) {
                             if (isOpened.get()) {
                                 BiometricLoggerImpl.d("BiometricPromptCompat.AuthenticationCallback.onFailed=$reason")
+                                AuthTimelineTracer.finish(timeline, AuthOutcome.FAILED)
                                 try {
                                     callbackOuter.onFailed(reason, dialogDescription)
                                 } finally {
@@ -447,6 +480,8 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                         override fun onUIOpened() {
                             if (!isOpened.get()) {
                                 isOpened.set(true)
+                                dialogShowSpan?.end()
+                                timeline?.markUiOpened()
                                 BiometricLoggerImpl.d("BiometricPromptCompat.AuthenticationCallback.onUIOpened")
                                 val s =
                                     "BiometricOpeningTime: ${System.currentTimeMillis() - startTs} ms"
@@ -498,7 +533,8 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                                     ExecutorHelper.postDelayed(closeAll, delay)
                                 }
                                 appBackgroundDetector.detachListeners()
-                                authFlowInProgress.set(false)
+                                //no-op if the result has already finished the timeline
+                                finishAuthFlow(AuthOutcome.CANCELED)
                                 callbackOuter.onUIClosed()
                             }
                         }
@@ -515,7 +551,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
                                 result.get(),
                                 null
                             )
-                            authFlowInProgress.set(false)
+                            finishAuthFlow(AuthOutcome.FAILED)
                             return@startOnBackground
                         } else
                             ExecutorHelper.post {
@@ -592,7 +628,7 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
         if (isActivityFinished(builder.getContext())) {
             BiometricLoggerImpl.e("Unable to start BiometricPromptCompat.authenticate() cause of Activity destroyed")
             callback.onCanceled()
-            authFlowInProgress.set(false)
+            finishAuthFlow(AuthOutcome.CANCELED)
             return
         }
         try {
@@ -601,14 +637,21 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
             callback.updateTimestamp()
             val s = "BiometricOpeningTime: ${System.currentTimeMillis() - startTs} ms"
             BiometricLoggerImpl.e("BiometricPromptCompat $s")
+            dialogShowSpan = timeline?.begin(AuthPhase.DIALOG_SHOW)
             impl.authenticate(callback)
         } catch (ignore: IllegalStateException) {
             appBackgroundDetector.detachListeners()
             callback.onFailed(AuthenticationFailureReason.INTERNAL_ERROR, null)
-            authFlowInProgress.set(false)
+            finishAuthFlow(AuthOutcome.FAILED)
         }
     }
 
+    //Every exit of the flow goes through here, so the timeline is never left open
+    private fun finishAuthFlow(outcome: AuthOutcome) {
+        AuthTimelineTracer.finish(timeline, outcome)
+        authFlowInProgress.set(false)
+    }
+
     fun cancelAuthentication() {
         if (!API_ENABLED || !authFlowInProgress.get()) {
             return
@@ -778,6 +821,8 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
 
         private var autoVerifyCryptoAfterSuccess = false
 
+        private var secondaryTimeoutMillis = AuthResultAggregator.DEFAULT_SECONDARY_TIMEOUT
+
         init {
             getContext().let { context ->
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -902,6 +947,19 @@ class BiometricPromptCompat private constructor(private val builder: Builder) {
             return multiWindowSupport
         }
 
+        fun getSecondaryTimeout(): Long {
+            return secondaryTimeoutMillis
+        }
+
+        /**
+         * How long the secondary sensors may run after they were started, when the system
+         * prompt deals with the primary one
+         */
+        fun setSecondaryTimeout(timeoutMillis: Long): Builder {
+            this.secondaryTimeoutMillis = timeoutMillis
+            return this
+        }
+
         fun setCryptographyPurpose(
             biometricCryptographyPurpose: BiometricCryptographyPurpose
         ): Builder {
@@ -34,6 +34,7 @@ import dev.skomlach.biometric.compat.custom.CustomBiometricProvider
 import dev.skomlach.biometric.compat.engine.core.Core
 import dev.skomlach.biometric.compat.engine.core.interfaces.AuthenticationListener
 import dev.skomlach.biometric.compat.engine.core.interfaces.BiometricModule
+import dev.skomlach.biometric.compat.engine.internal.AbstractBiometricModule
 import dev.skomlach.biometric.compat.engine.internal.CustomBiometricModule
 import dev.skomlach.biometric.compat.engine.internal.DummyBiometricModule
 import dev.skomlach.biometric.compat.engine.internal.face.android.AndroidFaceUnlockModule
@@ -159,6 +160,7 @@ object BiometricAuthentication {
             val counter = AtomicInteger(list.size)
             val initListener: BiometricInitListener = object : BiometricInitListener {
                 override fun initFinished(method: BiometricMethod, module: BiometricModule?) {
+                    (module as? AbstractBiometricModule)?.enableStateCache()
                     val moduleReady =
                         module != null && module.isManagerAccessible && module.isHardwarePresent
                     val remains = counter.decrementAndGet()
@@ -28,24 +28,38 @@ import dev.skomlach.biometric.compat.crypto.BiometricCryptoObjectHelper
 import dev.skomlach.biometric.compat.engine.core.interfaces.AuthenticationListener
 import dev.skomlach.biometric.compat.engine.core.interfaces.BiometricModule
 import dev.skomlach.biometric.compat.engine.core.interfaces.RestartPredicate
+import dev.skomlach.biometric.compat.engine.internal.BiometricModuleStateCache
 import dev.skomlach.biometric.compat.engine.internal.DummyBiometricModule
+import dev.skomlach.biometric.compat.utils.logging.AuthPhase
+import dev.skomlach.biometric.compat.utils.logging.AuthTimelineTracer
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
-import java.util.*
-import kotlin.collections.set
+import dev.skomlach.common.misc.ExecutorHelper
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicReference
 
 
 object Core {
 
-    private val cancellationSignals =
-        Collections.synchronizedMap(HashMap<BiometricModule, CancellationSignal>())
-    private val reprintModuleHashMap = Collections.synchronizedMap(HashMap<Int, BiometricModule>())
-    fun cleanModules() {
-        try {
+    private val cancellationSignals = ConcurrentHashMap<BiometricModule, CancellationSignal>()
 
-            reprintModuleHashMap.clear()
-        } catch (e: Throwable) {
-            BiometricLoggerImpl.e(e)
+    //Restarts are posted to the callbacks looper, where the modules receive the sensor events
+    val restartScheduler = RestartScheduler(object : RestartScheduler.Scheduler {
+        override fun postDelayed(task: Runnable, delay: Long) {
+            ExecutorHelper.callbackHandler.postDelayed(task, delay)
+        }
+
+        override fun removeCallbacks(task: Runnable) {
+            ExecutorHelper.callbackHandler.removeCallbacks(task)
         }
+    })
+
+    //Immutable snapshot, replaced on (rare) registration; readers never lock
+    private val reprintModules = AtomicReference<Map<Int, BiometricModule>>(emptyMap())
+    private val reprintModuleHashMap: Map<Int, BiometricModule>
+        get() = reprintModules.get()
+
+    fun cleanModules() {
+        reprintModules.set(emptyMap())
     }
 
 
@@ -55,7 +69,15 @@ object Core {
                 return
             }
             if (module.isHardwarePresent) {
-                reprintModuleHashMap[module.tag()] = module
+                while (true) {
+                    val current = reprintModules.get()
+                    if (current.containsKey(module.tag()))
+                        return
+                    val updated = LinkedHashMap(current)
+                    updated[module.tag()] = module
+                    if (reprintModules.compareAndSet(current, updated))
+                        return
+                }
             }
         } catch (e: Throwable) {
             BiometricLoggerImpl.e(e)
@@ -125,42 +147,26 @@ object Core {
         restartPredicate: RestartPredicate? = RestartPredicatesImpl.defaultPredicate()
     ) {
         var m: BiometricModule? = null
+        restartScheduler.startSession()
         try {
-
+            //Prepare all crypto objects first, so the sensors are started back-to-back;
+            //a module whose crypto object can't be created fails alone, the rest are still started
+            val cryptoObjects = LinkedHashMap<BiometricModule, BiometricCryptoObject?>()
             for (module in reprintModuleHashMap.values) {
                 m = module
-
-                var biometricCryptoObject: BiometricCryptoObject? = null
-                purpose?.let {
-                        try {
-                            biometricCryptoObject =
-                                BiometricCryptoObjectHelper.getBiometricCryptoObject(
-                                    "BiometricModule${module.tag()}",
-                                    purpose,
-                                    m.isUserAuthCanByUsedWithCrypto
-                                )
-                        } catch (e: BiometricCryptoException) {
-                            if (purpose.purpose == BiometricCryptographyPurpose.ENCRYPT) {
-                                BiometricCryptoObjectHelper.deleteCrypto("BiometricModule${module.tag()}")
-                                biometricCryptoObject =
-                                    BiometricCryptoObjectHelper.getBiometricCryptoObject(
-                                        "BiometricModule${module.tag()}",
-                                        purpose,
-                                        m.isUserAuthCanByUsedWithCrypto
-                                    )
-                            } else throw e
-                        }
-                    }
-
-
-                authenticate(biometricCryptoObject, module, listener, restartPredicate)
+                try {
+                    cryptoObjects[module] = purpose?.let { prepareCryptoObject(module, it) }
+                } catch (e: BiometricCryptoException) {
+                    BiometricLoggerImpl.e(e)
+                    listener?.onFailure(AuthenticationFailureReason.CRYPTO_ERROR, module.tag())
+                }
+            }
+            for ((module, biometricCryptoObject) in cryptoObjects) {
+                m = module
+                AuthTimelineTracer.trace(AuthPhase.MODULE_DISPATCH, traceId(module)) {
+                    authenticate(biometricCryptoObject, module, listener, restartPredicate)
+                }
             }
-        } catch (e: BiometricCryptoException) {
-            BiometricLoggerImpl.e(e)
-            listener?.onFailure(
-                AuthenticationFailureReason.CRYPTO_ERROR,
-                m?.tag() ?: DummyBiometricModule(null).tag()
-            )
         } catch (e: Throwable) {
             BiometricLoggerImpl.e(e)
             listener?.onFailure(
@@ -171,6 +177,37 @@ object Core {
     }
 
 
+    //Same detail for all phases of the module, so its spans can be joined
+    private fun traceId(module: BiometricModule): String {
+        return "${module.javaClass.simpleName}#${module.tag()}"
+    }
+
+    @Throws(BiometricCryptoException::class)
+    private fun prepareCryptoObject(
+        module: BiometricModule,
+        purpose: BiometricCryptographyPurpose
+    ): BiometricCryptoObject? {
+        val name = "BiometricModule${module.tag()}"
+        return AuthTimelineTracer.trace(AuthPhase.CRYPTO_OBJECT_CREATION, traceId(module)) {
+            try {
+                BiometricCryptoObjectHelper.getBiometricCryptoObject(
+                    name,
+                    purpose,
+                    module.isUserAuthCanByUsedWithCrypto
+                )
+            } catch (e: BiometricCryptoException) {
+                if (purpose.purpose == BiometricCryptographyPurpose.ENCRYPT) {
+                    BiometricCryptoObjectHelper.deleteCrypto(name)
+                    BiometricCryptoObjectHelper.getBiometricCryptoObject(
+                        name,
+                        purpose,
+                        module.isUserAuthCanByUsedWithCrypto
+                    )
+                } else throw e
+            }
+        }
+    }
+
     fun authenticate(
         biometricCryptoObject: BiometricCryptoObject?,
         module: BiometricModule,
@@ -182,13 +219,20 @@ object Core {
             if (!module.isHardwarePresent || !module.hasEnrolled || module.isLockOut) throw RuntimeException(
                 "Module " + module.javaClass.simpleName + " not ready"
             )
+            //the previous request and its pending restart (if any) must be stopped before the new one
             cancelAuthentication(module)
             val cancellationSignal = CancellationSignal()
-            cancellationSignals[module] = cancellationSignal
+            //a request that raced in after the cancel is replaced atomically
+            cancellationSignals.put(module, cancellationSignal)?.let {
+                if (!it.isCanceled)
+                    it.cancel()
+            }
             module.authenticate(
                 biometricCryptoObject,
                 cancellationSignal,
-                listener,
+                BiometricModuleStateCache.wrap(listener?.let {
+                    RestartTrackingListener(MainThreadAuthenticationListener(it))
+                }),
                 restartPredicate
             )
         } catch (e: Throwable) {
@@ -207,11 +251,11 @@ object Core {
 
     fun cancelAuthentication(module: BiometricModule) {
         try {
-            val signal = cancellationSignals[module]
+            restartScheduler.cancel(module.tag())
+            val signal = cancellationSignals.remove(module)
             if (signal != null && !signal.isCanceled) {
                 signal.cancel()
             }
-            cancellationSignals.remove(module)
         } catch (e: Throwable) {
             BiometricLoggerImpl.e(e)
         }
@@ -233,4 +277,18 @@ object Core {
     ) {
         authenticate(biometricCryptoObject, listener, RestartPredicatesImpl.neverRestart())
     }
+
+    //Feeds the module results into the restart backoff/circuit state
+    private class RestartTrackingListener(private val delegate: AuthenticationListener) :
+        AuthenticationListener by delegate {
+        override fun onSuccess(moduleTag: Int, biometricCryptoObject: BiometricCryptoObject?) {
+            restartScheduler.onSuccess(moduleTag)
+            delegate.onSuccess(moduleTag, biometricCryptoObject)
+        }
+
+        override fun onFailure(failureReason: AuthenticationFailureReason?, moduleTag: Int) {
+            restartScheduler.onFailure(moduleTag, failureReason)
+            delegate.onFailure(failureReason, moduleTag)
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.engine.core
+
+import dev.skomlach.biometric.compat.AuthenticationFailureReason
+import dev.skomlach.biometric.compat.BiometricCryptoObject
+import dev.skomlach.biometric.compat.engine.core.interfaces.AuthenticationListener
+import dev.skomlach.common.misc.ExecutorHelper
+
+/**
+ * Delivers the module events to the [delegate] on the main thread.
+ *
+ * Modules receive the sensor callbacks on ExecutorHelper.callbackHandler and do their bookkeeping
+ * there; all events go through the single main Handler queue, so their order is preserved.
+ */
+class MainThreadAuthenticationListener(private val delegate: AuthenticationListener) :
+    AuthenticationListener {
+    override fun onHelp(msg: CharSequence?) {
+        ExecutorHelper.handler.post { delegate.onHelp(msg) }
+    }
+
+    override fun onSuccess(moduleTag: Int, biometricCryptoObject: BiometricCryptoObject?) {
+        ExecutorHelper.handler.post { delegate.onSuccess(moduleTag, biometricCryptoObject) }
+    }
+
+    override fun onFailure(failureReason: AuthenticationFailureReason?, moduleTag: Int) {
+        ExecutorHelper.handler.post { delegate.onFailure(failureReason, moduleTag) }
+    }
+
+    override fun onCanceled(moduleTag: Int) {
+        ExecutorHelper.handler.post { delegate.onCanceled(moduleTag) }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.engine.core
+
+import dev.skomlach.biometric.compat.AuthenticationFailureReason
+import java.util.Random
+
+/**
+ * Decides when (and whether) a module may be restarted after a failure.
+ *
+ * - restarts are delayed with jittered exponential backoff, so a flaky HAL that fails right away
+ * is not hammered with Binder calls in a tight loop;
+ * - the number of restarts per authentication session is limited by [Config.sessionRestartBudget];
+ * - after [Config.hardwareErrorThreshold] hardware errors in a row the module's circuit is open
+ * and its restarts are refused for [Config.circuitOpenMillis].
+ *
+ * Has no Android dependencies; time is read from [clock] and the delayed restarts are posted
+ * to [scheduler], so the restart storms can be replayed on a virtual clock.
+ */
+class RestartScheduler(
+    private val scheduler: Scheduler,
+    val config: Config = Config(),
+    private val clock: () -> Long = { System.currentTimeMillis() },
+    private val random: Random = Random()
+) {
+    class Config(
+        val initialDelayMillis: Long = 250L,
+        val multiplier: Double = 2.0,
+        val maxDelayMillis: Long = 4000L,
+        //0 - no jitter, 1 - delay is picked from [0, backoff]
+        val jitter: Double = 0.5,
+        val sessionRestartBudget: Int = 8,
+        val hardwareErrorThreshold: Int = 3,
+        val circuitOpenMillis: Long = 30_000L
+    )
+
+    interface Scheduler {
+        fun postDelayed(task: Runnable, delay: Long)
+        fun removeCallbacks(task: Runnable)
+    }
+
+    private class ModuleState {
+        var attempts = 0
+        var hardwareErrors = 0
+        var circuitOpenUntil = 0L
+        var pendingRestart: Runnable? = null
+    }
+
+    private val modules = HashMap<Int, ModuleState>()
+
+    var sessionRestarts = 0
+        private set
+
+    fun startSession() {
+        val pending = ArrayList<Runnable>()
+        synchronized(this) {
+            sessionRestarts = 0
+            for (state in modules.values) {
+                state.attempts = 0
+                state.pendingRestart?.let { pending.add(it) }
+                state.pendingRestart = null
+            }
+        }
+        for (task in pending)
+            scheduler.removeCallbacks(task)
+    }
+
+    /**
+     * Reserves the restart for the module.
+     *
+     * @return `false` if the session budget is spent or the module's circuit is open
+     */
+    fun tryAcquire(moduleTag: Int): Boolean {
+        synchronized(this) {
+            if (isCircuitOpenLocked(moduleTag) || sessionRestarts >= config.sessionRestartBudget)
+                return false
+            sessionRestarts++
+            stateOf(moduleTag).attempts++
+            return true
+        }
+    }
+
+    /**
+     * Posts the restart reserved by [tryAcquire]; the previous pending restart of the module (if
+     * any) is dropped.
+     *
+     * @return delay of the restart
+     */
+    fun schedule(moduleTag: Int, restart: Runnable): Long {
+        val delay: Long
+        val previous: Runnable?
+        val task = object : Runnable {
+            override fun run() {
+                synchronized(this@RestartScheduler) {
+                    val state = modules[moduleTag]
+                    if (state?.pendingRestart !== this)
+                        return
+                    state.pendingRestart = null
+                }
+                restart.run()
+            }
+        }
+        synchronized(this) {
+            val state = stateOf(moduleTag)
+            delay = nextDelay(state.attempts)
+            previous = state.pendingRestart
+            state.pendingRestart = task
+        }
+        previous?.let { scheduler.removeCallbacks(it) }
+        scheduler.postDelayed(task, delay)
+        return delay
+    }
+
+    fun cancel(moduleTag: Int) {
+        val pending = synchronized(this) {
+            modules[moduleTag]?.let {
+                val task = it.pendingRestart
+                it.pendingRestart = null
+                task
+            }
+        } ?: return
+        scheduler.removeCallbacks(pending)
+    }
+
+    fun onSuccess(moduleTag: Int) {
+        synchronized(this) {
+            modules[moduleTag]?.let {
+                it.attempts = 0
+                it.hardwareErrors = 0
+                it.circuitOpenUntil = 0L
+            }
+        }
+    }
+
+    fun onFailure(moduleTag: Int, reason: AuthenticationFailureReason?) {
+        synchronized(this) {
+            when (reason) {
+                AuthenticationFailureReason.HARDWARE_UNAVAILABLE,
+                AuthenticationFailureReason.SENSOR_FAILED -> {
+                    val state = stateOf(moduleTag)
+                    if (++state.hardwareErrors >= config.hardwareErrorThreshold) {
+                        state.hardwareErrors = 0
+                        state.circuitOpenUntil = clock.invoke() + config.circuitOpenMillis
+                    }
+                }
+                //sensor is working, it just did not match
+                AuthenticationFailureReason.AUTHENTICATION_FAILED -> {
+                    modules[moduleTag]?.hardwareErrors = 0
+                }
+                else -> {}
+            }
+        }
+    }
+
+    fun isCircuitOpen(moduleTag: Int): Boolean {
+        synchronized(this) {
+            return isCircuitOpenLocked(moduleTag)
+        }
+    }
+
+    /**
+     * @param attempt 1-based number of the restart
+     */
+    fun nextDelay(attempt: Int): Long {
+        var backoff = config.initialDelayMillis.toDouble()
+        for (i in 1 until attempt) {
+            backoff *= config.multiplier
+            if (backoff >= config.maxDelayMillis)
+                break
+        }
+        backoff = backoff.coerceAtMost(config.maxDelayMillis.toDouble())
+        val jitter = config.jitter.coerceIn(0.0, 1.0)
+        return (backoff * (1.0 - jitter * random.nextDouble())).toLong()
+    }
+
+    private fun isCircuitOpenLocked(moduleTag: Int): Boolean {
+        val state = modules[moduleTag] ?: return false
+        return state.circuitOpenUntil > clock.invoke()
+    }
+
+    private fun stateOf(moduleTag: Int): ModuleState {
+        return modules[moduleTag] ?: ModuleState().also { modules[moduleTag] = it }
+    }
+}
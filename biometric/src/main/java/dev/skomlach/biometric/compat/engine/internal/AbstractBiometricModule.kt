@@ -22,10 +22,15 @@ package dev.skomlach.biometric.compat.engine.internal
 import android.os.Build
 import android.os.Bundle
 import android.os.UserHandle
+import androidx.core.os.CancellationSignal
 import dev.skomlach.biometric.compat.AuthenticationFailureReason
 import dev.skomlach.biometric.compat.engine.BiometricMethod
+import dev.skomlach.biometric.compat.engine.core.Core
 import dev.skomlach.biometric.compat.engine.core.interfaces.BiometricModule
+import dev.skomlach.biometric.compat.engine.core.interfaces.RestartPredicate
 import dev.skomlach.biometric.compat.utils.BiometricLockoutFix
+import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.d
+import dev.skomlach.biometric.compat.utils.logging.VendorCallMetrics
 import dev.skomlach.common.contextprovider.AndroidContext
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicLong
@@ -44,6 +49,31 @@ abstract class AbstractBiometricModule(val biometricMethod: BiometricMethod) : B
     override val isUserAuthCanByUsedWithCrypto: Boolean
         get() = true
     protected val authCallTimestamp = AtomicLong(0)
+
+    //Live state of the vendor manager; read through BiometricModuleStateCache once the module is initialized
+    protected abstract val isHardwarePresentUncached: Boolean
+    protected abstract val hasEnrolledUncached: Boolean
+
+    @Volatile
+    private var isStateCacheEnabled = false
+
+    final override val isHardwarePresent: Boolean
+        get() = if (isStateCacheEnabled)
+            BiometricModuleStateCache.get(tag, BiometricModuleStateCache.HARDWARE_PRESENT) {
+                isHardwarePresentUncached
+            }
+        else isHardwarePresentUncached
+
+    final override val hasEnrolled: Boolean
+        get() = if (isStateCacheEnabled)
+            BiometricModuleStateCache.get(tag, BiometricModuleStateCache.ENROLLED) {
+                hasEnrolledUncached
+            }
+        else hasEnrolledUncached
+
+    fun enableStateCache() {
+        isStateCacheEnabled = true
+    }
     fun getUserId(): Int {
         return try {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
@@ -61,6 +91,11 @@ abstract class AbstractBiometricModule(val biometricMethod: BiometricMethod) : B
         }
     }
 
+    //Wraps the vendor manager call, so its latency can be attributed to the module
+    protected inline fun <T> vendorCall(method: String, block: () -> T): T {
+        return VendorCallMetrics.measure(name, method, block)
+    }
+
     override fun tag(): Int {
         return tag
     }
@@ -70,10 +105,13 @@ abstract class AbstractBiometricModule(val biometricMethod: BiometricMethod) : B
             return BiometricLockoutFix.isLockOut(biometricMethod.biometricType)
         }
 
+    /**
+     * @return `true` if the module should be restarted with [restartAfterBackoff]
+     */
     fun restartCauseTimeout(reason: AuthenticationFailureReason?): Boolean {
         if (reason == AuthenticationFailureReason.TIMEOUT) {
             val current = System.currentTimeMillis()
-            return if (firstTimeout == null) {
+            val safeTimeout = if (firstTimeout == null) {
                 firstTimeout = current
                 true
             } else {
@@ -84,9 +122,38 @@ abstract class AbstractBiometricModule(val biometricMethod: BiometricMethod) : B
                 }
                 safeTimeout
             }
+            return safeTimeout && Core.restartScheduler.tryAcquire(tag)
         }
 
         firstTimeout = null
         return false
     }
+
+    /**
+     * Soft failure allowed by [restartPredicate]; the hardware errors also take the restart from
+     * the scheduler, so a failing sensor can't bypass the session budget and the circuit breaker
+     */
+    protected fun isRestartAllowed(
+        restartPredicate: RestartPredicate?,
+        reason: AuthenticationFailureReason?
+    ): Boolean {
+        if (restartPredicate?.invoke(reason) != true)
+            return false
+        return when (reason) {
+            AuthenticationFailureReason.HARDWARE_UNAVAILABLE,
+            AuthenticationFailureReason.SENSOR_FAILED -> Core.restartScheduler.tryAcquire(tag)
+            else -> true
+        }
+    }
+
+    protected fun restartAfterBackoff(
+        cancellationSignal: CancellationSignal?,
+        restart: () -> Unit
+    ) {
+        val delay = Core.restartScheduler.schedule(tag, Runnable {
+            if (cancellationSignal?.isCanceled != true)
+                restart()
+        })
+        d("$name.restartAfterBackoff: $delay ms")
+    }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.engine.internal
+
+import android.os.SystemClock
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleEventObserver
+import androidx.lifecycle.ProcessLifecycleOwner
+import dev.skomlach.biometric.compat.AuthenticationFailureReason
+import dev.skomlach.biometric.compat.engine.core.interfaces.AuthenticationListener
+import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
+import dev.skomlach.common.misc.ExecutorHelper
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Short-living cache of the isHardwarePresent/hasEnrolled state of the biometric modules.
+ *
+ * An entry is valid for [MAX_AGE] and dropped earlier when the app comes to the foreground
+ * (user may enroll/remove biometrics only in Settings) or when the module reports an error
+ * that means the state was changed.
+ */
+object BiometricModuleStateCache {
+    const val HARDWARE_PRESENT = 0
+    const val ENROLLED = 1
+
+    private val MAX_AGE = TimeUnit.SECONDS.toMillis(10)
+    private val isStarted = AtomicBoolean(false)
+
+    private class Entry(val value: Boolean, val timestamp: Long)
+
+    //"tag:state" -> entry
+    private val entries = ConcurrentHashMap<String, Entry>()
+    private val listeners = CopyOnWriteArraySet<InvalidationListener>()
+
+    fun get(tag: Int, state: Int, compute: () -> Boolean): Boolean {
+        start()
+        val key = "$tag:$state"
+        val now = SystemClock.elapsedRealtime()
+        entries[key]?.let {
+            if (now - it.timestamp <= MAX_AGE)
+                return it.value
+        }
+        return compute.invoke().also {
+            entries[key] = Entry(it, now)
+        }
+    }
+
+    fun invalidate(tag: Int) {
+        entries.remove("$tag:$HARDWARE_PRESENT")
+        entries.remove("$tag:$ENROLLED")
+        notifyListeners()
+    }
+
+    fun invalidateAll() {
+        entries.clear()
+        notifyListeners()
+    }
+
+    /**
+     * For the caches derived from the module state (e.g. enrolled biometrics)
+     */
+    fun addInvalidationListener(listener: InvalidationListener) {
+        listeners.add(listener)
+        start()
+    }
+
+    fun removeInvalidationListener(listener: InvalidationListener) {
+        listeners.remove(listener)
+    }
+
+    private fun notifyListeners() {
+        for (listener in listeners) {
+            try {
+                listener.onStateInvalidated()
+            } catch (e: Throwable) {
+                BiometricLoggerImpl.e(e)
+            }
+        }
+    }
+
+    fun wrap(listener: AuthenticationListener?): AuthenticationListener? {
+        return if (listener == null) null else StateInvalidatingListener(listener)
+    }
+
+    private fun start() {
+        if (!isStarted.compareAndSet(false, true))
+            return
+        ExecutorHelper.post {
+            try {
+                ProcessLifecycleOwner.get().lifecycle.addObserver(LifecycleEventObserver { _, event ->
+                    if (event == Lifecycle.Event.ON_START)
+                        invalidateAll()
+                })
+            } catch (e: Throwable) {
+                BiometricLoggerImpl.e(e)
+            }
+        }
+    }
+
+    private class StateInvalidatingListener(private val delegate: AuthenticationListener) :
+        AuthenticationListener by delegate {
+        override fun onFailure(failureReason: AuthenticationFailureReason?, moduleTag: Int) {
+            when (failureReason) {
+                AuthenticationFailureReason.NO_BIOMETRICS_REGISTERED,
+                AuthenticationFailureReason.NO_HARDWARE,
+                AuthenticationFailureReason.HARDWARE_UNAVAILABLE -> invalidate(moduleTag)
+                else -> {}
+            }
+            delegate.onFailure(failureReason, moduleTag)
+        }
+    }
+
+    interface InvalidationListener {
+        fun onStateInvalidated()
+    }
+}
@@ -51,7 +51,7 @@ class CustomBiometricModule constructor(private val method: BiometricMethod, pri
     }
     override val isManagerAccessible: Boolean
         get() = manager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
@@ -62,7 +62,7 @@ class CustomBiometricModule constructor(private val method: BiometricMethod, pri
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
 
             try {
@@ -116,7 +116,7 @@ class CustomBiometricModule constructor(private val method: BiometricMethod, pri
                     0,
                     signalObject,
                     callback,
-                    ExecutorHelper.handler,
+                    ExecutorHelper.callbackHandler,
                     bundle ?: throw IllegalArgumentException("Bundle should be not NULL")
                 )
                 return
@@ -175,11 +175,14 @@ class CustomBiometricModule constructor(private val method: BiometricMethod, pri
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -223,7 +226,7 @@ class CustomBiometricModule constructor(private val method: BiometricMethod, pri
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
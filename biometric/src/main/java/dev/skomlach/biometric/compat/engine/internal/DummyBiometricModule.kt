@@ -40,10 +40,10 @@ class DummyBiometricModule(listener: BiometricInitListener?) :
     //BuildConfig.DEBUG;
     override val isManagerAccessible: Boolean
         get() = false //BuildConfig.DEBUG;
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() = true
 
-    override val hasEnrolled: Boolean = true
+    override val hasEnrolledUncached: Boolean = true
 
     @Throws(SecurityException::class)
     override fun authenticate(
@@ -34,6 +34,7 @@ import dev.skomlach.biometric.compat.engine.core.interfaces.AuthenticationListen
 import dev.skomlach.biometric.compat.engine.core.interfaces.RestartPredicate
 import dev.skomlach.biometric.compat.engine.internal.AbstractBiometricModule
 import dev.skomlach.biometric.compat.utils.BiometricErrorLockoutPermanentFix
+import dev.skomlach.biometric.compat.utils.OverloadResolver
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.d
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.e
 import dev.skomlach.common.misc.ExecutorHelper
@@ -366,6 +367,7 @@ class AndroidFaceUnlockModule @SuppressLint("WrongConstant") constructor(listene
     }
 
     private var manager: FaceManager? = null
+    private val authenticateResolver = OverloadResolver("FaceManager.authenticate", 4)
 
     init {
 
@@ -389,7 +391,7 @@ class AndroidFaceUnlockModule @SuppressLint("WrongConstant") constructor(listene
 
     override val isManagerAccessible: Boolean
         get() = manager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
             try {
                 return manager?.isHardwareDetected == true
@@ -400,7 +402,7 @@ class AndroidFaceUnlockModule @SuppressLint("WrongConstant") constructor(listene
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
             try {
                 return manager?.hasEnrolledTemplates() == true
@@ -453,52 +455,41 @@ class AndroidFaceUnlockModule @SuppressLint("WrongConstant") constructor(listene
 
                 d("$name.authenticate:  Crypto=$crypto")
 
-                try {
+                authenticateResolver.dispatch { variant ->
                     authCallTimestamp.set(System.currentTimeMillis())
-                    it.authenticate(
-                        crypto,
-                        signalObject,
-                        callback,
-                        ExecutorHelper.handler,
-                        0
-                    )
-                    return
-                } catch (e: Throwable) {
-                }
-                try {
-                    authCallTimestamp.set(System.currentTimeMillis())
-                    it.authenticate(
-                        crypto,
-                        signalObject,
-                        callback,
-                        ExecutorHelper.handler,
-                        getUserId(),
-                        true
-                    )
-                    return
-                } catch (e: Throwable) {
-                }
-                try {
-                    authCallTimestamp.set(System.currentTimeMillis())
-                    it.authenticate(
-                        crypto,
-                        signalObject,
-                        0,
-                        callback,
-                        ExecutorHelper.handler
-                    )
-                    return
-                } catch (e: Throwable) {
+                    when (variant) {
+                        0 -> it.authenticate(
+                            crypto,
+                            signalObject,
+                            callback,
+                            ExecutorHelper.callbackHandler,
+                            0
+                        )
+                        1 -> it.authenticate(
+                            crypto,
+                            signalObject,
+                            callback,
+                            ExecutorHelper.callbackHandler,
+                            getUserId(),
+                            true
+                        )
+                        2 -> it.authenticate(
+                            crypto,
+                            signalObject,
+                            0,
+                            callback,
+                            ExecutorHelper.callbackHandler
+                        )
+                        else -> it.authenticate(
+                            crypto,
+                            signalObject,
+                            0,
+                            callback,
+                            ExecutorHelper.callbackHandler,
+                            getUserId()
+                        )
+                    }
                 }
-                authCallTimestamp.set(System.currentTimeMillis())
-                it.authenticate(
-                    crypto,
-                    signalObject,
-                    0,
-                    callback,
-                    ExecutorHelper.handler,
-                    getUserId()
-                )
                 return
             } catch (e: Throwable) {
                 e(e, "$name: authenticate failed unexpectedly")
@@ -557,11 +548,14 @@ class AndroidFaceUnlockModule @SuppressLint("WrongConstant") constructor(listene
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -605,7 +599,7 @@ class AndroidFaceUnlockModule @SuppressLint("WrongConstant") constructor(listene
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
@@ -113,7 +113,7 @@ class FacelockOldModule(private var listener: BiometricInitListener?) :
     }
 
     // Retrieve all services that can match the given intent
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
             // Retrieve all services that can match the given intent
             if (faceLockHelper?.faceUnlockAvailable() == false) return false
@@ -128,7 +128,7 @@ class FacelockOldModule(private var listener: BiometricInitListener?) :
             } else hasEnrolled
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
             return isBiometricWeakEnabled("com.android.facelock", context)
         }
@@ -213,11 +213,14 @@ class FacelockOldModule(private var listener: BiometricInitListener?) :
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
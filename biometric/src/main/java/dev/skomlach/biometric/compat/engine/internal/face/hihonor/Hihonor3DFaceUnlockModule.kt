@@ -59,20 +59,20 @@ class Hihonor3DFaceUnlockModule(listener: BiometricInitListener?) :
 
     override val isManagerAccessible: Boolean
         get() = hihonor3DFaceManager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
             try {
-                if (hihonor3DFaceManager?.isHardwareDetected == true) return true
+                if (vendorCall("isHardwareDetected") { hihonor3DFaceManager?.isHardwareDetected } == true) return true
             } catch (e: Throwable) {
 
             }
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
             try {
-                return hihonor3DFaceManager?.hasEnrolledTemplates() ?: false
+                return vendorCall("hasEnrolledTemplates") { hihonor3DFaceManager?.hasEnrolledTemplates() } ?: false
             } catch (e: Throwable) {
 
             }
@@ -116,13 +116,15 @@ class Hihonor3DFaceUnlockModule(listener: BiometricInitListener?) :
                 // Occasionally, an NPE will bubble up out of FingerprintManager.authenticate
                 d("$name.authenticate:  Crypto=$crypto")
                 authCallTimestamp.set(System.currentTimeMillis())
-                it.authenticate(
-                    crypto,
-                    signalObject,
-                    0,
-                    callback,
-                    ExecutorHelper.handler
-                )
+                vendorCall("authenticate") {
+                    it.authenticate(
+                        crypto,
+                        signalObject,
+                        0,
+                        callback,
+                        ExecutorHelper.callbackHandler
+                    )
+                }
                 return
             }
         } catch (e: Throwable) {
@@ -168,11 +170,14 @@ class Hihonor3DFaceUnlockModule(listener: BiometricInitListener?) :
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -216,7 +221,7 @@ class Hihonor3DFaceUnlockModule(listener: BiometricInitListener?) :
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
@@ -99,10 +99,10 @@ class HuaweiFaceUnlockModule(listener: BiometricInitListener?) :
 
     override val isManagerAccessible: Boolean
         get() = huaweiFaceManagerLegacy != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
             try {
-                if (huaweiFaceManagerLegacy?.isHardwareDetected == true) return true
+                if (vendorCall("isHardwareDetected") { huaweiFaceManagerLegacy?.isHardwareDetected } == true) return true
             } catch (e: Throwable) {
 
             }
@@ -110,10 +110,10 @@ class HuaweiFaceUnlockModule(listener: BiometricInitListener?) :
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
             try {
-                if (huaweiFaceManagerLegacy?.hasEnrolledTemplates() == true) return true
+                if (vendorCall("hasEnrolledTemplates") { huaweiFaceManagerLegacy?.hasEnrolledTemplates() } == true) return true
             } catch (e: Throwable) {
 
             }
@@ -147,7 +147,9 @@ class HuaweiFaceUnlockModule(listener: BiometricInitListener?) :
                 }
                 // Occasionally, an NPE will bubble up out of FingerprintManager.authenticate
                 authCallTimestamp.set(System.currentTimeMillis())
-                it.authenticate(callback)
+                vendorCall("authenticate") {
+                    it.authenticate(callback)
+                }
                 return
             }
 
@@ -194,11 +196,14 @@ class HuaweiFaceUnlockModule(listener: BiometricInitListener?) :
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -242,7 +247,7 @@ class HuaweiFaceUnlockModule(listener: BiometricInitListener?) :
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
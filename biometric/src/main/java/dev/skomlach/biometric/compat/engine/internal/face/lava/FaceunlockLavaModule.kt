@@ -72,7 +72,7 @@ class FaceunlockLavaModule(private var listener: BiometricInitListener?) :
     }
 
     // Retrieve all services that can match the given intent
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
             // Retrieve all services that can match the given intent
             if (faceLockHelper?.isFaceUnlockOn != true) return false
@@ -87,7 +87,7 @@ class FaceunlockLavaModule(private var listener: BiometricInitListener?) :
             } else hasEnrolled
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
             return LockType.isBiometricWeakEnabled("com.prize.faceunlock", context)
         }
@@ -150,11 +150,14 @@ class FaceunlockLavaModule(private var listener: BiometricInitListener?) :
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
 
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (restartPredicate?.invoke(
+                if (isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
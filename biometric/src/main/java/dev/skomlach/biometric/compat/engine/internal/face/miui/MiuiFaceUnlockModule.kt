@@ -78,11 +78,11 @@ class MiuiFaceUnlockModule @SuppressLint("WrongConstant") constructor(listener:
 
     override val isManagerAccessible: Boolean
         get() = manager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
-                return manager?.isFaceFeatureSupport == true
+                return vendorCall("isFaceFeatureSupport") { manager?.isFaceFeatureSupport } == true
             } catch (e: Throwable) {
 
             }
@@ -90,11 +90,11 @@ class MiuiFaceUnlockModule @SuppressLint("WrongConstant") constructor(listener:
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
 
             try {
-                return manager?.enrolledFaces?.isNotEmpty() == true
+                return vendorCall("enrolledFaces") { manager?.enrolledFaces }?.isNotEmpty() == true
             } catch (e: Throwable) {
 
             }
@@ -128,14 +128,16 @@ class MiuiFaceUnlockModule @SuppressLint("WrongConstant") constructor(listener:
                     it.preInitAuthen()
                 // Occasionally, an NPE will bubble up out of FingerprintManager.authenticate
                 authCallTimestamp.set(System.currentTimeMillis())
-                it.authenticate(
-                    signalObject,
-                    0,
-                    callback,
-                    ExecutorHelper.handler,
-                    TimeUnit.SECONDS.toMillis(30)
-                        .toInt()
-                )
+                vendorCall("authenticate") {
+                    it.authenticate(
+                        signalObject,
+                        0,
+                        callback,
+                        ExecutorHelper.callbackHandler,
+                        TimeUnit.SECONDS.toMillis(30)
+                            .toInt()
+                    )
+                }
                 return
             } catch (e: Throwable) {
                 e(e, "$name: authenticate failed unexpectedly")
@@ -194,11 +196,14 @@ class MiuiFaceUnlockModule @SuppressLint("WrongConstant") constructor(listener:
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -25,7 +25,6 @@ import android.graphics.Rect
 import android.graphics.RectF
 import android.net.Uri
 import android.os.*
-import android.os.IBinder.DeathRecipient
 import android.provider.Settings
 import android.view.Surface
 import dev.skomlach.biometric.compat.engine.internal.face.miui.impl.wrapper.*
@@ -79,22 +78,6 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
         const val MG_UNLOCK_LIVENESS_FAILURE = 14
         const val MG_UNLOCK_LIVENESS_WARNING = 13
         const val MG_UNLOCK_OK = 0
-        private const val CODE_ADD_LOCKOUT_RESET_CALLBACK = 16
-        private const val CODE_AUTHENTICATE = 3
-        private const val CODE_CANCEL_AUTHENTICATE = 4
-        private const val CODE_CANCEL_ENROLL = 6
-        private const val CODE_ENROLL = 5
-        private const val CODE_EXT_CMD = 101
-        private const val CODE_GET_AUTHENTICATOR_ID = 14
-        private const val CODE_GET_ENROLLED_FACE_LIST = 9
-        private const val CODE_GET_VENDOR_INFO = 17
-        private const val CODE_HAS_ENROLLED_FACES = 12
-        private const val CODE_POST_ENROLL = 11
-        private const val CODE_PRE_ENROLL = 10
-        private const val CODE_PRE_INIT_AUTHEN = 2
-        private const val CODE_REMOVE = 7
-        private const val CODE_RENAME = 8
-        private const val CODE_RESET_TIMEOUT = 15
         private const val FACEUNLOCK_CURRENT_USE_INVALID_MODEL = 2
         private const val FACEUNLOCK_CURRENT_USE_RGB_MODEL = 1
         private const val FACEUNLOCK_CURRENT_USE_STRUCTURE_MODEL = 0
@@ -127,8 +110,6 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
 
         private val lock = ReentrantLock()
         private var INSTANCE = AtomicReference<IMiuiFaceManager?>(null)
-        private var SERVICE_DESCRIPTOR: String
-        private var SERVICE_NAME: String
         fun getInstance(): IMiuiFaceManager? {
             if (INSTANCE.get() != null && INSTANCE.get()?.isReleased == true) {
                 INSTANCE.set(null)
@@ -147,15 +128,10 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
             }
             return INSTANCE.get()
         }
-
-        init {
-            val str = "miui.face.FaceService"
-            SERVICE_NAME = str
-            SERVICE_DESCRIPTOR = str
-        }
     }
 
     private val context = AndroidContext.appContext
+    private val transport = MiuiFaceTransport(MiuiFaceTransport.MIUI_FACE_2D)
     private val mBinderLock = Any()
     private val mToken: IBinder = Binder()
     private var mAuthenticationCallback: IMiuiFaceManager.AuthenticationCallback? = null
@@ -273,18 +249,6 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
     private var mIsSuperPower = false
     private var mIsValid = false
     private var mLockoutResetCallback: IMiuiFaceManager.LockoutResetCallback? = null
-    private var mMiuiFaceService: IBinder? = null
-    private val mBinderDied = DeathRecipient {
-        try {
-            lock.runCatching { this.lock() }
-            e(TAG, "mMiuiFaceService Service Died.")
-            mMiuiFaceService = null
-        } finally {
-            lock.runCatching {
-                this.unlock()
-            }
-        }
-    }
     private var mRemovalCallback: IMiuiFaceManager.RemovalCallback? = null
     private var mRemovalMiuiface: Miuiface? = null
 
@@ -369,27 +333,6 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
         }
     }
 
-    @Throws(RemoteException::class)
-    private fun initService() {
-        try {
-            lock.runCatching { this.lock() }
-            if (mMiuiFaceService == null) {
-                try {
-                    mMiuiFaceService = Class.forName("android.os.ServiceManager")
-                        .getMethod("getService", String::class.java)
-                        .invoke(null, SERVICE_NAME) as IBinder
-                } catch (ignore: Exception) {
-                }
-
-                mMiuiFaceService?.linkToDeath(mBinderDied, 0)
-            }
-        } finally {
-            lock.runCatching {
-                this.unlock()
-            }
-        }
-    }
-
     override val isFaceFeatureSupport: Boolean
         get() {
             if (mIsSuperPower) {
@@ -437,13 +380,8 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
             d(TAG, "cancelAuthentication ")
         }
         try {
-            initService()
-            if (mMiuiFaceService != null) {
-                binderCallCancelAuthention(
-                    mMiuiFaceService,
-                    mToken,
-                    context.packageName
-                )
+            if (transport.isServiceAvailable) {
+                binderCallCancelAuthention(mToken, context.packageName)
             }
         } catch (e: RemoteException) {
             e(e)
@@ -455,9 +393,8 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
             d(TAG, "cancelEnrollment ")
         }
         try {
-            initService()
-            if (mMiuiFaceService != null) {
-                binderCallCancelEnrollment(mMiuiFaceService, mToken)
+            if (transport.isServiceAvailable) {
+                binderCallCancelEnrollment(mToken)
             }
         } catch (e: RemoteException) {
             e(e)
@@ -470,12 +407,8 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
         get() {
             var res: String? = ""
             try {
-                initService()
-                if (mMiuiFaceService != null) {
-                    res = binderCallGetVendorInfo(
-                        mMiuiFaceService,
-                        context.packageName
-                    )
+                if (transport.isServiceAvailable) {
+                    res = binderCallGetVendorInfo(context.packageName)
                 }
             } catch (e: RemoteException) {
                 val stringBuilder = StringBuilder()
@@ -520,10 +453,8 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
             mAuthenticationCallback = callback
             mEnrollmentCallback = null
             try {
-                initService()
-                if (mMiuiFaceService != null) {
+                if (transport.isServiceAvailable) {
                     binderCallAuthenticate(
-                        mMiuiFaceService,
                         mToken,
                         -1,
                         -1,
@@ -535,7 +466,7 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
                 } else {
                     d(
                         TAG,
-                        "mMiuiFaceService is null"
+                        "MiuiFaceService is null"
                     )
                     callback.onAuthenticationError(2100, getMessageInfo(2100))
                 }
@@ -597,13 +528,11 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
                 cancel.setOnCancelListener(OnEnrollCancelListener())
             }
             try {
-                initService()
-                if (mMiuiFaceService != null) {
+                if (transport.isServiceAvailable) {
                     mEnrollmentCallback = enrollCallback
                     i = 2100
                     try {
                         binderCallEnroll(
-                            mMiuiFaceService,
                             mToken,
                             cryptoToken,
                             0,
@@ -626,7 +555,7 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
                     }
                 }
                 i = 2100
-                d(TAG, "mMiuiFaceService is null")
+                d(TAG, "MiuiFaceService is null")
                 enrollCallback.onEnrollmentError(i, getMessageInfo(i))
             } catch (e3: RemoteException) {
                 e = e3
@@ -643,16 +572,8 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
     override fun extCmd(cmd: Int, param: Int): Int {
         var res = -1
         try {
-            initService()
-            if (mMiuiFaceService != null) {
-                res = binderCallExtCmd(
-                    mMiuiFaceService,
-                    mToken,
-                    mServiceReceiver,
-                    cmd,
-                    param,
-                    context.packageName
-                )
+            if (transport.isServiceAvailable) {
+                res = binderCallExtCmd(mToken, mServiceReceiver, cmd, param, context.packageName)
             }
         } catch (e: RemoteException) {
             val stringBuilder = StringBuilder()
@@ -683,23 +604,15 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
             d(TAG, stringBuilder.toString())
         }
         try {
-            initService()
-            if (mMiuiFaceService != null) {
+            if (transport.isServiceAvailable) {
                 mRemovalMiuiface = face
                 mRemovalCallback = callback
                 mEnrollmentCallback = null
                 mAuthenticationCallback = null
-                binderCallRemove(
-                    mMiuiFaceService,
-                    mToken,
-                    face.miuifaceId,
-                    face.groupId,
-                    0,
-                    mServiceReceiver
-                )
+                binderCallRemove(mToken, face.miuifaceId, face.groupId, 0, mServiceReceiver)
                 return
             }
-            d(TAG, "mMiuiFaceService is null")
+            d(TAG, "MiuiFaceService is null")
             callback.onRemovalError(face, 2100, getMessageInfo(2100))
         } catch (e: RemoteException) {
             val stringBuilder2 = StringBuilder()
@@ -719,9 +632,8 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
             d(TAG, stringBuilder.toString())
         }
         try {
-            initService()
-            if (mMiuiFaceService != null) {
-                binderCallRename(mMiuiFaceService, faceId, 0, name)
+            if (transport.isServiceAvailable) {
+                binderCallRename(faceId, 0, name)
             }
         } catch (e: RemoteException) {
             val stringBuilder2 = StringBuilder()
@@ -739,10 +651,9 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
             d(TAG, stringBuilder.toString())
         }
         try {
-            initService()
-            if (mMiuiFaceService != null) {
+            if (transport.isServiceAvailable) {
                 mLockoutResetCallback = callback
-                binderCallAddLoackoutResetCallback(mMiuiFaceService, mServiceReceiver)
+                binderCallAddLoackoutResetCallback(mServiceReceiver)
             }
         } catch (e: RemoteException) {
             val stringBuilder2 = StringBuilder()
@@ -757,9 +668,8 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
             d(TAG, "resetTimeout")
         }
         try {
-            initService()
-            if (mMiuiFaceService != null) {
-                binderCallRestTimeout(mMiuiFaceService, token)
+            if (transport.isServiceAvailable) {
+                binderCallRestTimeout(token)
             }
         } catch (e: RemoteException) {
             val stringBuilder = StringBuilder()
@@ -774,13 +684,8 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
             var stringBuilder: StringBuilder
             var res: List<Miuiface?>? = ArrayList()
             try {
-                initService()
-                if (mMiuiFaceService != null) {
-                    res = binderCallGetEnrolledFaces(
-                        mMiuiFaceService,
-                        0,
-                        context.packageName
-                    )
+                if (transport.isServiceAvailable) {
+                    res = binderCallGetEnrolledFaces(0, context.packageName)
                 }
             } catch (e: RemoteException) {
                 stringBuilder = StringBuilder()
@@ -825,15 +730,9 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
 
     override fun preInitAuthen() {
         try {
-            initService()
-            if (mMiuiFaceService != null) {
+            if (transport.isServiceAvailable) {
                 isFaceUnlockInited = false
-                binderCallPpreInitAuthen(
-                    mMiuiFaceService,
-                    mToken,
-                    context.packageName,
-                    mServiceReceiver
-                )
+                binderCallPpreInitAuthen(mToken, context.packageName, mServiceReceiver)
             }
         } catch (e: RemoteException) {
             val stringBuilder = StringBuilder()
@@ -850,26 +749,19 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
 
     @Throws(RemoteException::class)
     private fun binderCallPpreInitAuthen(
-        service: IBinder?,
         token: IBinder,
         packName: String,
         receiver: IBinder
     ) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeStrongBinder(token)
-        request.writeString(packName)
-        request.writeStrongBinder(receiver)
-        service?.transact(2, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
+        transport.transact(MiuiFaceTransport.Transaction.PRE_INIT_AUTHEN) { request ->
+            request.writeStrongBinder(token)
+            request.writeString(packName)
+            request.writeStrongBinder(receiver)
+        }
     }
 
     @Throws(RemoteException::class)
     private fun binderCallAuthenticate(
-        service: IBinder?,
         token: IBinder,
         sessionId: Long,
         userId: Int,
@@ -878,44 +770,29 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
         packName: String,
         timeout: Int
     ): Int {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        var iBinder: IBinder? = null
-        request.writeStrongBinder(token)
-        request.writeLong(sessionId)
-        request.writeInt(userId)
-        if (receiver != null) {
-            iBinder = receiver
-        }
-        request.writeStrongBinder(iBinder)
-        request.writeInt(flags)
-        request.writeString(packName)
-        request.writeInt(timeout)
-        service?.transact(3, request, reply, 0)
-        reply.readException()
-        val res = reply.readInt()
-        request.recycle()
-        reply.recycle()
-        return res
+        return transport.transact(MiuiFaceTransport.Transaction.AUTHENTICATE, { request ->
+            request.writeStrongBinder(token)
+            request.writeLong(sessionId)
+            request.writeInt(userId)
+            request.writeStrongBinder(receiver)
+            request.writeInt(flags)
+            request.writeString(packName)
+            request.writeInt(timeout)
+        }) { reply ->
+            reply.readInt()
+        } ?: -1
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallCancelAuthention(service: IBinder?, token: IBinder, packName: String) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeStrongBinder(token)
-        request.writeString(packName)
-        service?.transact(4, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
+    private fun binderCallCancelAuthention(token: IBinder, packName: String) {
+        transport.transact(MiuiFaceTransport.Transaction.CANCEL_AUTHENTICATE) { request ->
+            request.writeStrongBinder(token)
+            request.writeString(packName)
+        }
     }
 
     @Throws(RemoteException::class)
     private fun binderCallEnroll(
-        service: IBinder?,
         token: IBinder,
         cryptoToken: ByteArray?,
         groupId: Int,
@@ -926,228 +803,148 @@ class MiuiFaceManagerImpl : IMiuiFaceManager {
         detectArea: RectF?,
         timeout: Int
     ) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        var iBinder: IBinder? = null
-        request.writeStrongBinder(token)
-        request.writeByteArray(cryptoToken)
-        request.writeInt(groupId)
-        if (receiver != null) {
-            iBinder = receiver
-        }
-        request.writeStrongBinder(iBinder)
-        request.writeInt(flags)
-        request.writeString(packName)
-        if (surface != null) {
-            request.writeInt(1)
-            surface.writeToParcel(request, 0)
-        } else {
-            request.writeInt(0)
-        }
-        if (detectArea != null) {
-            request.writeInt(1)
-            detectArea.writeToParcel(request, 0)
-        } else {
-            request.writeInt(0)
+        transport.transact(MiuiFaceTransport.Transaction.ENROLL) { request ->
+            request.writeStrongBinder(token)
+            request.writeByteArray(cryptoToken)
+            request.writeInt(groupId)
+            request.writeStrongBinder(receiver)
+            request.writeInt(flags)
+            request.writeString(packName)
+            if (surface != null) {
+                request.writeInt(1)
+                surface.writeToParcel(request, 0)
+            } else {
+                request.writeInt(0)
+            }
+            if (detectArea != null) {
+                request.writeInt(1)
+                detectArea.writeToParcel(request, 0)
+            } else {
+                request.writeInt(0)
+            }
+            request.writeInt(timeout)
         }
-        request.writeInt(timeout)
-        service?.transact(5, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallCancelEnrollment(service: IBinder?, token: IBinder) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeStrongBinder(token)
-        service?.transact(6, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
+    private fun binderCallCancelEnrollment(token: IBinder) {
+        transport.transact(MiuiFaceTransport.Transaction.CANCEL_ENROLL) { request ->
+            request.writeStrongBinder(token)
+        }
     }
 
     @Throws(RemoteException::class)
     private fun binderCallRemove(
-        service: IBinder?,
         token: IBinder,
         faceId: Int,
         groupId: Int,
         userId: Int,
         receiver: IBinder?
     ) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        var iBinder: IBinder? = null
-        request.writeStrongBinder(token)
-        request.writeInt(faceId)
-        request.writeInt(groupId)
-        request.writeInt(userId)
-        if (receiver != null) {
-            iBinder = receiver
+        transport.transact(MiuiFaceTransport.Transaction.REMOVE) { request ->
+            request.writeStrongBinder(token)
+            request.writeInt(faceId)
+            request.writeInt(groupId)
+            request.writeInt(userId)
+            request.writeStrongBinder(receiver)
         }
-        request.writeStrongBinder(iBinder)
-        service?.transact(7, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallRename(service: IBinder?, faceId: Int, groupId: Int, name: String) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeInt(faceId)
-        request.writeInt(groupId)
-        request.writeString(name)
-        service?.transact(8, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
+    private fun binderCallRename(faceId: Int, groupId: Int, name: String) {
+        transport.transact(MiuiFaceTransport.Transaction.RENAME) { request ->
+            request.writeInt(faceId)
+            request.writeInt(groupId)
+            request.writeString(name)
+        }
     }
 
     @Throws(RemoteException::class)
     private fun binderCallGetEnrolledFaces(
-        service: IBinder?,
         groupId: Int,
         packName: String
     ): List<Miuiface?>? {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeInt(groupId)
-        request.writeString(packName)
-        service?.transact(9, request, reply, 0)
-        reply.readException()
-        val res: List<Miuiface> = ArrayList(reply.createTypedArrayList(Miuiface.CREATOR))
-        request.recycle()
-        reply.recycle()
-        return res
+        return transport.transact(MiuiFaceTransport.Transaction.GET_ENROLLED_FACE_LIST, { request ->
+            request.writeInt(groupId)
+            request.writeString(packName)
+        }) { reply ->
+            ArrayList(reply.createTypedArrayList(Miuiface.CREATOR) ?: emptyList())
+        }
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallPreEnroll(service: IBinder, token: IBinder) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeStrongBinder(token)
-        service.transact(10, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
+    private fun binderCallPreEnroll(token: IBinder) {
+        transport.transact(MiuiFaceTransport.Transaction.PRE_ENROLL) { request ->
+            request.writeStrongBinder(token)
+        }
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallPostEnroll(service: IBinder, token: IBinder) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeStrongBinder(token)
-        service.transact(11, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
+    private fun binderCallPostEnroll(token: IBinder) {
+        transport.transact(MiuiFaceTransport.Transaction.POST_ENROLL) { request ->
+            request.writeStrongBinder(token)
+        }
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallHasEnrolledFaces(service: IBinder, groupId: Int, packName: String): Int {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeInt(groupId)
-        request.writeString(packName)
-        service.transact(12, request, reply, 0)
-        reply.readException()
-        val res = reply.readInt()
-        request.recycle()
-        reply.recycle()
-        return res
+    private fun binderCallHasEnrolledFaces(groupId: Int, packName: String): Int {
+        return transport.transact(MiuiFaceTransport.Transaction.HAS_ENROLLED_FACES, { request ->
+            request.writeInt(groupId)
+            request.writeString(packName)
+        }) { reply ->
+            reply.readInt()
+        } ?: 0
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallAuthenticatorId(service: IBinder, packName: String): Long {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeString(packName)
-        service.transact(14, request, reply, 0)
-        reply.readException()
-        val res = reply.readLong()
-        request.recycle()
-        reply.recycle()
-        return res
+    private fun binderCallAuthenticatorId(packName: String): Long {
+        return transport.transact(MiuiFaceTransport.Transaction.GET_AUTHENTICATOR_ID, { request ->
+            request.writeString(packName)
+        }) { reply ->
+            reply.readLong()
+        } ?: 0L
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallRestTimeout(service: IBinder?, cryptoToken: ByteArray) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeByteArray(cryptoToken)
-        service?.transact(15, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
+    private fun binderCallRestTimeout(cryptoToken: ByteArray) {
+        transport.transact(MiuiFaceTransport.Transaction.RESET_TIMEOUT) { request ->
+            request.writeByteArray(cryptoToken)
+        }
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallAddLoackoutResetCallback(service: IBinder?, callback: IBinder) {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeStrongBinder(callback)
-        service?.transact(16, request, reply, 0)
-        reply.readException()
-        request.recycle()
-        reply.recycle()
+    private fun binderCallAddLoackoutResetCallback(callback: IBinder) {
+        transport.transact(MiuiFaceTransport.Transaction.ADD_LOCKOUT_RESET_CALLBACK) { request ->
+            request.writeStrongBinder(callback)
+        }
     }
 
     @Throws(RemoteException::class)
-    private fun binderCallGetVendorInfo(service: IBinder?, packName: String): String? {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        request.writeString(packName)
-        service?.transact(17, request, reply, 0)
-        reply.readException()
-        val res = reply.readString()
-        request.recycle()
-        reply.recycle()
-        return res
+    private fun binderCallGetVendorInfo(packName: String): String? {
+        return transport.transact(MiuiFaceTransport.Transaction.GET_VENDOR_INFO, { request ->
+            request.writeString(packName)
+        }) { reply ->
+            reply.readString()
+        }
     }
 
     @Throws(RemoteException::class)
     private fun binderCallExtCmd(
-        service: IBinder?,
         token: IBinder,
         receiver: IBinder?,
         cmd: Int,
         param: Int,
         packName: String
     ): Int {
-        val request = Parcel.obtain()
-        val reply = Parcel.obtain()
-        request.writeInterfaceToken(SERVICE_DESCRIPTOR)
-        var iBinder: IBinder? = null
-        request.writeStrongBinder(token)
-        if (receiver != null) {
-            iBinder = receiver
-        }
-        request.writeStrongBinder(iBinder)
-        request.writeInt(cmd)
-        request.writeInt(param)
-        request.writeString(packName)
-        service?.transact(101, request, reply, 0)
-        reply.readException()
-        val res = reply.readInt()
-        request.recycle()
-        reply.recycle()
-        return res
+        return transport.transact(MiuiFaceTransport.Transaction.EXT_CMD, { request ->
+            request.writeStrongBinder(token)
+            request.writeStrongBinder(receiver)
+            request.writeInt(cmd)
+            request.writeInt(param)
+            request.writeString(packName)
+        }) { reply ->
+            reply.readInt()
+        } ?: -1
     }
 
     private fun useHandler(handler: Handler?) {
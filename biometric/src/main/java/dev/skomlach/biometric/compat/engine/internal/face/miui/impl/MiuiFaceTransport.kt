@@ -0,0 +1,182 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.engine.internal.face.miui.impl
+
+import android.os.IBinder
+import android.os.Parcel
+import android.os.RemoteException
+import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.e
+import dev.skomlach.biometric.compat.utils.logging.VendorCallMetrics
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * Binder transport for the MIUI face service.
+ *
+ * Transaction codes are declared once per variant in [TransactionTable], the service binder is
+ * resolved once and dropped only when the remote side dies, and every call obtains/recycles its
+ * Parcels from the system pool in one place (also on failure).
+ */
+class MiuiFaceTransport(
+    val table: TransactionTable,
+    private val serviceProvider: () -> IBinder? = { getSystemService(table.serviceName) }
+) {
+    companion object {
+        private const val TAG = "MiuiFaceTransport"
+
+        val MIUI_FACE_2D = TransactionTable(
+            "miui.face.FaceService",
+            "miui.face.FaceService",
+            mapOf(
+                Transaction.PRE_INIT_AUTHEN to 2,
+                Transaction.AUTHENTICATE to 3,
+                Transaction.CANCEL_AUTHENTICATE to 4,
+                Transaction.ENROLL to 5,
+                Transaction.CANCEL_ENROLL to 6,
+                Transaction.REMOVE to 7,
+                Transaction.RENAME to 8,
+                Transaction.GET_ENROLLED_FACE_LIST to 9,
+                Transaction.PRE_ENROLL to 10,
+                Transaction.POST_ENROLL to 11,
+                Transaction.HAS_ENROLLED_FACES to 12,
+                Transaction.GET_AUTHENTICATOR_ID to 14,
+                Transaction.RESET_TIMEOUT to 15,
+                Transaction.ADD_LOCKOUT_RESET_CALLBACK to 16,
+                Transaction.GET_VENDOR_INFO to 17,
+                Transaction.EXT_CMD to 101
+            )
+        )
+
+        private fun getSystemService(name: String): IBinder? {
+            return try {
+                Class.forName("android.os.ServiceManager")
+                    .getMethod("getService", String::class.java)
+                    .invoke(null, name) as IBinder?
+            } catch (ignore: Throwable) {
+                null
+            }
+        }
+    }
+
+    enum class Transaction {
+        PRE_INIT_AUTHEN,
+        AUTHENTICATE,
+        CANCEL_AUTHENTICATE,
+        ENROLL,
+        CANCEL_ENROLL,
+        REMOVE,
+        RENAME,
+        GET_ENROLLED_FACE_LIST,
+        PRE_ENROLL,
+        POST_ENROLL,
+        HAS_ENROLLED_FACES,
+        GET_AUTHENTICATOR_ID,
+        RESET_TIMEOUT,
+        ADD_LOCKOUT_RESET_CALLBACK,
+        GET_VENDOR_INFO,
+        EXT_CMD
+    }
+
+    class TransactionTable(
+        val serviceName: String,
+        val descriptor: String,
+        private val codes: Map<Transaction, Int>
+    ) {
+        fun codeOf(transaction: Transaction): Int? = codes[transaction]
+    }
+
+    private val lock = ReentrantLock()
+
+    @Volatile
+    private var service: IBinder? = null
+    private val binderDied = IBinder.DeathRecipient {
+        e(TAG, "${table.serviceName} Service Died.")
+        invalidate()
+    }
+
+    val isServiceAvailable: Boolean
+        get() = getService() != null
+
+    fun invalidate() {
+        try {
+            lock.runCatching { this.lock() }
+            service?.runCatching { unlinkToDeath(binderDied, 0) }
+            service = null
+        } finally {
+            lock.runCatching {
+                this.unlock()
+            }
+        }
+    }
+
+    private fun getService(): IBinder? {
+        service?.let {
+            return it
+        }
+        try {
+            lock.runCatching { this.lock() }
+            if (service == null) {
+                service = serviceProvider.invoke()?.also {
+                    try {
+                        it.linkToDeath(binderDied, 0)
+                    } catch (ex: RemoteException) {
+                        e(ex)
+                    }
+                }
+            }
+            return service
+        } finally {
+            lock.runCatching {
+                this.unlock()
+            }
+        }
+    }
+
+    /**
+     * @return `null` if the service or the transaction is not available for this variant
+     */
+    @Throws(RemoteException::class)
+    fun <T> transact(
+        transaction: Transaction,
+        writer: (Parcel) -> Unit,
+        reader: (Parcel) -> T
+    ): T? {
+        val code = table.codeOf(transaction) ?: return null
+        val binder = getService() ?: return null
+        val request = Parcel.obtain()
+        val reply = Parcel.obtain()
+        try {
+            request.writeInterfaceToken(table.descriptor)
+            writer.invoke(request)
+            VendorCallMetrics.measure(TAG, transaction.name) {
+                binder.transact(code, request, reply, 0)
+            }
+            reply.readException()
+            return reader.invoke(reply)
+        } finally {
+            request.recycle()
+            reply.recycle()
+        }
+    }
+
+    @Throws(RemoteException::class)
+    fun transact(transaction: Transaction, writer: (Parcel) -> Unit): Boolean {
+        return transact(transaction, writer) { true } ?: false
+    }
+}
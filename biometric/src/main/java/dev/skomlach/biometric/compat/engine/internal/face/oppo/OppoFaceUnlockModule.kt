@@ -136,11 +136,11 @@ class OppoFaceUnlockModule @SuppressLint("WrongConstant") constructor(listener:
 
     override val isManagerAccessible: Boolean
         get() = manager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
-                return manager?.isHardwareDetected == true
+                return vendorCall("isHardwareDetected") { manager?.isHardwareDetected } == true
             } catch (e: Throwable) {
 
             }
@@ -148,11 +148,11 @@ class OppoFaceUnlockModule @SuppressLint("WrongConstant") constructor(listener:
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
 
             try {
-                return manager?.hasEnrolledTemplates() ?: false
+                return vendorCall("hasEnrolledTemplates") { manager?.hasEnrolledTemplates() } ?: false
             } catch (e: Throwable) {
 
 
@@ -197,13 +197,15 @@ class OppoFaceUnlockModule @SuppressLint("WrongConstant") constructor(listener:
 
                 d("$name.authenticate:  Crypto=$crypto")
                 authCallTimestamp.set(System.currentTimeMillis())
-                it.authenticate(
-                    crypto,
-                    signalObject,
-                    0,
-                    callback,
-                    ExecutorHelper.handler
-                )
+                vendorCall("authenticate") {
+                    it.authenticate(
+                        crypto,
+                        signalObject,
+                        0,
+                        callback,
+                        ExecutorHelper.callbackHandler
+                    )
+                }
                 return
             } catch (e: Throwable) {
                 e(e, "$name: authenticate failed unexpectedly")
@@ -258,9 +260,11 @@ class OppoFaceUnlockModule @SuppressLint("WrongConstant") constructor(listener:
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (restartPredicate?.invoke(failureReason) == true) {
+                if (isRestartAllowed(restartPredicate, failureReason)) {
                     listener?.onFailure(failureReason, tag())
                 } else {
                     if (mutableListOf(
@@ -304,7 +308,7 @@ class OppoFaceUnlockModule @SuppressLint("WrongConstant") constructor(listener:
             errorTs = tmp
 
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
@@ -53,11 +53,11 @@ class SoterFaceUnlockModule @SuppressLint("WrongConstant") constructor(private v
 
     override val isManagerAccessible: Boolean
         get() = manager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
-                return manager?.isHardwareDetected == true
+                return vendorCall("isHardwareDetected") { manager?.isHardwareDetected } == true
             } catch (e: Throwable) {
 
             }
@@ -65,11 +65,11 @@ class SoterFaceUnlockModule @SuppressLint("WrongConstant") constructor(private v
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
 
             try {
-                return manager?.isHardwareDetected == true && manager?.hasEnrolledBiometric() == true
+                return isHardwarePresent && vendorCall("hasEnrolledBiometric") { manager?.hasEnrolledBiometric() } == true
             } catch (e: Throwable) {
 
             }
@@ -114,14 +114,16 @@ class SoterFaceUnlockModule @SuppressLint("WrongConstant") constructor(private v
 
                 d("$name.authenticate:  Crypto=$crypto")
                 authCallTimestamp.set(System.currentTimeMillis())
-                it.authenticate(
-                    crypto,
-                    0,
-                    signalObject,
-                    callback,
-                    ExecutorHelper.handler,
-                    bundle ?: throw IllegalArgumentException("Bundle should be not NULL")
-                )
+                vendorCall("authenticate") {
+                    it.authenticate(
+                        crypto,
+                        0,
+                        signalObject,
+                        callback,
+                        ExecutorHelper.callbackHandler,
+                        bundle ?: throw IllegalArgumentException("Bundle should be not NULL")
+                    )
+                }
                 return
             } catch (e: Throwable) {
                 e(e, "$name: authenticate failed unexpectedly")
@@ -168,11 +170,14 @@ class SoterFaceUnlockModule @SuppressLint("WrongConstant") constructor(private v
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -216,7 +221,7 @@ class SoterFaceUnlockModule @SuppressLint("WrongConstant") constructor(private v
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
@@ -72,7 +72,7 @@ class API23FingerprintModule @SuppressLint("WrongConstant") constructor(listener
 
     override val isManagerAccessible: Boolean
         get() = manager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
@@ -84,7 +84,7 @@ class API23FingerprintModule @SuppressLint("WrongConstant") constructor(listener
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
 
             try {
@@ -137,7 +137,7 @@ class API23FingerprintModule @SuppressLint("WrongConstant") constructor(listener
                     signalObject,
                     0,
                     callback,
-                    ExecutorHelper.handler
+                    ExecutorHelper.callbackHandler
                 )
                 return
             } catch (e: Throwable) {
@@ -196,11 +196,14 @@ class API23FingerprintModule @SuppressLint("WrongConstant") constructor(listener
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -247,7 +250,7 @@ class API23FingerprintModule @SuppressLint("WrongConstant") constructor(listener
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
@@ -60,13 +60,14 @@ class FlymeFingerprintModule(listener: BiometricInitListener?) :
     override val isUserAuthCanByUsedWithCrypto: Boolean
         get() = false
     override var isManagerAccessible = false
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
                 mFingerprintServiceFingerprintManager = FingerprintManager.open()
-                return mFingerprintServiceFingerprintManager
-                    ?.isFingerEnable == true
+                return vendorCall("isFingerEnable") {
+                    mFingerprintServiceFingerprintManager?.isFingerEnable
+                } == true
             } catch (e: Throwable) {
 
             } finally {
@@ -76,13 +77,13 @@ class FlymeFingerprintModule(listener: BiometricInitListener?) :
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
 
             try {
                 mFingerprintServiceFingerprintManager = FingerprintManager.open()
 
-                val fingerprintIds = mFingerprintServiceFingerprintManager?.ids
+                val fingerprintIds = vendorCall("getIds") { mFingerprintServiceFingerprintManager?.ids }
                 return fingerprintIds?.isNotEmpty() == true
 
             } catch (e: Throwable) {
@@ -134,14 +135,16 @@ class FlymeFingerprintModule(listener: BiometricInitListener?) :
                 private fun fail(reason: AuthenticationFailureReason) {
                     var failureReason: AuthenticationFailureReason? = reason
                     if (restartCauseTimeout(failureReason)) {
-                        authenticate(
-                            biometricCryptoObject,
-                            cancellationSignal,
-                            listener,
-                            restartPredicate
-                        )
+                        restartAfterBackoff(cancellationSignal) {
+                            authenticate(
+                                biometricCryptoObject,
+                                cancellationSignal,
+                                listener,
+                                restartPredicate
+                            )
+                        }
                     } else
-                        if (restartPredicate?.invoke(failureReason) == true) {
+                        if (isRestartAllowed(restartPredicate, failureReason)) {
                             listener?.onFailure(failureReason, tag())
                         } else {
                             if (mutableListOf(
@@ -161,8 +164,10 @@ class FlymeFingerprintModule(listener: BiometricInitListener?) :
                 cancelFingerprintServiceFingerprintRequest()
             }
             authCallTimestamp.set(System.currentTimeMillis())
-            mFingerprintServiceFingerprintManager
-                ?.startIdentify(callback, mFingerprintServiceFingerprintManager?.ids)
+            vendorCall("startIdentify") {
+                mFingerprintServiceFingerprintManager
+                    ?.startIdentify(callback, mFingerprintServiceFingerprintManager?.ids)
+            }
 
             return
         } catch (e: Throwable) {
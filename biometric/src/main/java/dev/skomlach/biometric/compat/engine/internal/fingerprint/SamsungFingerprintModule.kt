@@ -60,11 +60,11 @@ class SamsungFingerprintModule(listener: BiometricInitListener?) :
         get() = false
     override val isManagerAccessible: Boolean
         get() = mSpass != null && mSpassFingerprint != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
-                return mSpass?.isFeatureEnabled(Spass.DEVICE_FINGERPRINT) == true
+                return vendorCall("isFeatureEnabled") { mSpass?.isFeatureEnabled(Spass.DEVICE_FINGERPRINT) } == true
             } catch (e: Throwable) {
 
             }
@@ -72,11 +72,11 @@ class SamsungFingerprintModule(listener: BiometricInitListener?) :
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
 
             try {
-                return mSpassFingerprint?.hasRegisteredFinger() == true
+                return vendorCall("hasRegisteredFinger") { mSpassFingerprint?.hasRegisteredFinger() } == true
             } catch (e: Throwable) {
 
             }
@@ -135,14 +135,16 @@ class SamsungFingerprintModule(listener: BiometricInitListener?) :
                     private fun fail(reason: AuthenticationFailureReason) {
                         var failureReason: AuthenticationFailureReason? = reason
                         if (restartCauseTimeout(failureReason)) {
-                            authenticate(
-                                biometricCryptoObject,
-                                cancellationSignal,
-                                listener,
-                                restartPredicate
-                            )
+                            restartAfterBackoff(cancellationSignal) {
+                                authenticate(
+                                    biometricCryptoObject,
+                                    cancellationSignal,
+                                    listener,
+                                    restartPredicate
+                                )
+                            }
                         } else
-                            if (restartPredicate?.invoke(failureReason) == true) {
+                            if (isRestartAllowed(restartPredicate, failureReason)) {
                                 listener?.onFailure(failureReason, tag())
                             } else {
                                 if (mutableListOf(
@@ -165,7 +167,9 @@ class SamsungFingerprintModule(listener: BiometricInitListener?) :
                     cancelFingerprintRequest()
                 }
                 authCallTimestamp.set(System.currentTimeMillis())
-                it.startIdentify(callback)
+                vendorCall("startIdentify") {
+                    it.startIdentify(callback)
+                }
 
                 return
             } catch (e: Throwable) {
@@ -74,11 +74,11 @@ class SoterFingerprintUnlockModule @SuppressLint("WrongConstant") constructor(pr
 
     override val isManagerAccessible: Boolean
         get() = manager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
-                return manager?.isHardwareDetected == true
+                return vendorCall("isHardwareDetected") { manager?.isHardwareDetected } == true
             } catch (e: Throwable) {
 
             }
@@ -86,11 +86,11 @@ class SoterFingerprintUnlockModule @SuppressLint("WrongConstant") constructor(pr
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
 
             try {
-                return manager?.hasEnrolledBiometric() == true
+                return vendorCall("hasEnrolledBiometric") { manager?.hasEnrolledBiometric() } == true
             } catch (e: Throwable) {
 
             }
@@ -135,14 +135,16 @@ class SoterFingerprintUnlockModule @SuppressLint("WrongConstant") constructor(pr
 
                 d("$name.authenticate:  Crypto=$crypto")
                 authCallTimestamp.set(System.currentTimeMillis())
-                it.authenticate(
-                    crypto,
-                    0,
-                    signalObject,
-                    callback,
-                    ExecutorHelper.handler,
-                    bundle ?: throw IllegalArgumentException("Bundle should be not NULL")
-                )
+                vendorCall("authenticate") {
+                    it.authenticate(
+                        crypto,
+                        0,
+                        signalObject,
+                        callback,
+                        ExecutorHelper.callbackHandler,
+                        bundle ?: throw IllegalArgumentException("Bundle should be not NULL")
+                    )
+                }
                 return
             } catch (e: Throwable) {
                 e(e, "$name: authenticate failed unexpectedly")
@@ -199,11 +201,14 @@ class SoterFingerprintUnlockModule @SuppressLint("WrongConstant") constructor(pr
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -247,7 +252,7 @@ class SoterFingerprintUnlockModule @SuppressLint("WrongConstant") constructor(pr
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
@@ -73,7 +73,7 @@ class SupportFingerprintModule(listener: BiometricInitListener?) :
 
     override val isManagerAccessible: Boolean
         get() = managerCompat != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
@@ -85,7 +85,7 @@ class SupportFingerprintModule(listener: BiometricInitListener?) :
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
             try {
                 return managerCompat?.hasEnrolledFingerprints() == true
@@ -135,7 +135,7 @@ class SupportFingerprintModule(listener: BiometricInitListener?) :
                     0,
                     cancellationSignal,
                     callback,
-                    ExecutorHelper.handler
+                    ExecutorHelper.callbackHandler
                 )
                 return
             } catch (e: Throwable) {
@@ -196,11 +196,14 @@ class SupportFingerprintModule(listener: BiometricInitListener?) :
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -244,7 +247,7 @@ class SupportFingerprintModule(listener: BiometricInitListener?) :
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
@@ -33,6 +33,7 @@ import dev.skomlach.biometric.compat.engine.core.interfaces.AuthenticationListen
 import dev.skomlach.biometric.compat.engine.core.interfaces.RestartPredicate
 import dev.skomlach.biometric.compat.engine.internal.AbstractBiometricModule
 import dev.skomlach.biometric.compat.utils.BiometricErrorLockoutPermanentFix
+import dev.skomlach.biometric.compat.utils.OverloadResolver
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.d
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.e
 import dev.skomlach.common.misc.ExecutorHelper
@@ -201,6 +202,7 @@ class AndroidIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
     }
 
     private var manager: IrisManager? = null
+    private val authenticateResolver = OverloadResolver("IrisManager.authenticate", 4)
 
     init {
 
@@ -226,7 +228,7 @@ class AndroidIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
 
     override val isManagerAccessible: Boolean
         get() = manager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
 
             try {
@@ -238,7 +240,7 @@ class AndroidIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
 
             try {
@@ -285,52 +287,41 @@ class AndroidIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
                         null
                 }
                 d("$name.authenticate:  Crypto=$crypto")
-                try {
+                authenticateResolver.dispatch { variant ->
                     authCallTimestamp.set(System.currentTimeMillis())
-                    it.authenticate(
-                        crypto,
-                        signalObject,
-                        callback,
-                        ExecutorHelper.handler,
-                        0
-                    )
-                    return
-                } catch (e: Throwable) {
-                }
-                try {
-                    authCallTimestamp.set(System.currentTimeMillis())
-                    it.authenticate(
-                        crypto,
-                        signalObject,
-                        callback,
-                        ExecutorHelper.handler,
-                        getUserId(),
-                        true
-                    )
-                    return
-                } catch (e: Throwable) {
-                }
-                try {
-                    authCallTimestamp.set(System.currentTimeMillis())
-                    it.authenticate(
-                        crypto,
-                        signalObject,
-                        0,
-                        callback,
-                        ExecutorHelper.handler
-                    )
-                    return
-                } catch (e: Throwable) {
+                    when (variant) {
+                        0 -> it.authenticate(
+                            crypto,
+                            signalObject,
+                            callback,
+                            ExecutorHelper.callbackHandler,
+                            0
+                        )
+                        1 -> it.authenticate(
+                            crypto,
+                            signalObject,
+                            callback,
+                            ExecutorHelper.callbackHandler,
+                            getUserId(),
+                            true
+                        )
+                        2 -> it.authenticate(
+                            crypto,
+                            signalObject,
+                            0,
+                            callback,
+                            ExecutorHelper.callbackHandler
+                        )
+                        else -> it.authenticate(
+                            crypto,
+                            signalObject,
+                            0,
+                            callback,
+                            ExecutorHelper.callbackHandler,
+                            getUserId()
+                        )
+                    }
                 }
-                authCallTimestamp.set(System.currentTimeMillis())
-                it.authenticate(
-                    crypto,
-                    signalObject,
-                    0,
-                    callback,
-                    ExecutorHelper.handler,
-                    getUserId()
-                )
                 return
             } catch (e: Throwable) {
                 e(e, "$name: authenticate failed unexpectedly")
@@ -385,11 +376,14 @@ class AndroidIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -433,7 +427,7 @@ class AndroidIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
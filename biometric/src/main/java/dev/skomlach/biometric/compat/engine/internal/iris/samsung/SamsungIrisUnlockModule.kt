@@ -141,10 +141,10 @@ class SamsungIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
 
     override val isManagerAccessible: Boolean
         get() = manager != null
-    override val isHardwarePresent: Boolean
+    override val isHardwarePresentUncached: Boolean
         get() {
             try {
-                return manager?.isHardwareDetected == true
+                return vendorCall("isHardwareDetected") { manager?.isHardwareDetected } == true
             } catch (e: Throwable) {
 
             }
@@ -152,10 +152,10 @@ class SamsungIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
             return false
         }
 
-    override val hasEnrolled: Boolean
+    override val hasEnrolledUncached: Boolean
         get() {
             try {
-                return manager?.hasEnrolledIrises() == true
+                return vendorCall("hasEnrolledIrises") { manager?.hasEnrolledIrises() } == true
             } catch (e: Throwable) {
 
             }
@@ -200,14 +200,16 @@ class SamsungIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
                 }
                 d("$name.authenticate:  Crypto=$crypto")
                 authCallTimestamp.set(System.currentTimeMillis())
-                it.authenticate(
-                    crypto,
-                    signalObject,
-                    0,
-                    callback,
-                    ExecutorHelper.handler,
-                    null
-                )
+                vendorCall("authenticate") {
+                    it.authenticate(
+                        crypto,
+                        signalObject,
+                        0,
+                        callback,
+                        ExecutorHelper.callbackHandler,
+                        null
+                    )
+                }
                 return
             } catch (e: Throwable) {
                 e(e, "$name: authenticate failed unexpectedly")
@@ -257,11 +259,14 @@ class SamsungIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
                 }
             }
             if (restartCauseTimeout(failureReason)) {
-                authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                restartAfterBackoff(cancellationSignal) {
+                    authenticate(biometricCryptoObject, cancellationSignal, listener, restartPredicate)
+                }
             } else
-                if (failureReason == AuthenticationFailureReason.TIMEOUT || restartPredicate?.invoke(
+                if (failureReason == AuthenticationFailureReason.TIMEOUT || isRestartAllowed(
+                        restartPredicate,
                         failureReason
-                    ) == true
+                    )
                 ) {
                     listener?.onFailure(failureReason, tag())
                 } else {
@@ -305,7 +310,7 @@ class SamsungIrisUnlockModule @SuppressLint("WrongConstant") constructor(listene
                 return
             errorTs = tmp
             var failureReason = AuthenticationFailureReason.AUTHENTICATION_FAILED
-            if (restartPredicate?.invoke(failureReason) == true) {
+            if (isRestartAllowed(restartPredicate, failureReason)) {
                 listener?.onFailure(failureReason, tag())
             } else {
                 if (mutableListOf(
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.impl
+
+import android.os.SystemClock
+import dev.skomlach.biometric.compat.BiometricConfirmation
+import dev.skomlach.biometric.compat.BiometricType
+
+/**
+ * Collects the results of the primary and secondary sensors of the single prompt and resolves the
+ * combined outcome as soon as the [BiometricConfirmation] policy is satisfied.
+ *
+ * Not thread-safe; all calls are expected on the thread that delivers the sensor callbacks.
+ */
+class AuthResultAggregator(
+    private val confirmation: BiometricConfirmation,
+    private val config: Config = Config(),
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() }
+) {
+    companion object {
+        const val DEFAULT_SECONDARY_TIMEOUT = 1500L
+    }
+
+    class Config(
+        //How long the secondary sensors may run after they were started (if deadline armed)
+        val secondaryTimeoutMillis: Long = DEFAULT_SECONDARY_TIMEOUT
+    )
+
+    class Outcome(
+        val success: Map<BiometricType?, AuthResult>,
+        val error: AuthResult?
+    ) {
+        val isSucceeded: Boolean
+            get() = success.isNotEmpty()
+    }
+
+    //Shared with the dialog (see BiometricPromptCompatDialogImpl.authFinishedCopy)
+    val results: MutableMap<BiometricType?, AuthResult> = LinkedHashMap()
+    private val deadlines = HashMap<BiometricType?, Long>()
+
+    var isResolved = false
+        private set
+
+    fun reset() {
+        results.clear()
+        deadlines.clear()
+        isResolved = false
+    }
+
+    fun record(type: BiometricType?, result: AuthResult) {
+        results[type] = result
+        deadlines.remove(type)
+    }
+
+    fun pending(expected: Collection<BiometricType?>): List<BiometricType?> {
+        return expected.filter { !results.containsKey(it) }
+    }
+
+    /**
+     * @param isSatisfiedExternally - for [BiometricConfirmation.ALL]: the system already confirmed
+     * all required types, no need to wait for the rest
+     * @return `null` while the policy is not satisfied yet or when the outcome was already returned
+     */
+    fun resolve(
+        expected: Collection<BiometricType?>,
+        isSatisfiedExternally: Boolean = false
+    ): Outcome? {
+        if (isResolved)
+            return null
+        val isCompleted = pending(expected).isEmpty()
+        val success = results.filter {
+            it.value.authResultState == AuthResult.AuthResultState.SUCCESS
+        }
+        val error =
+            results.values.lastOrNull { it.authResultState == AuthResult.AuthResultState.FATAL_ERROR }
+        val isSatisfied = when (confirmation) {
+            BiometricConfirmation.ANY -> success.isNotEmpty() || isCompleted
+            BiometricConfirmation.ALL -> isCompleted || isSatisfiedExternally
+        }
+        if (!isSatisfied || (success.isEmpty() && error == null))
+            return null
+        isResolved = true
+        deadlines.clear()
+        return Outcome(success, error)
+    }
+
+    fun armDeadline(types: Collection<BiometricType?>) {
+        val deadline = clock.invoke() + config.secondaryTimeoutMillis
+        for (type in types) {
+            if (!results.containsKey(type))
+                deadlines[type] = deadline
+        }
+    }
+
+    /**
+     * @return delay until the nearest deadline, or `null` if there is nothing to wait for
+     */
+    fun nextDeadlineDelay(): Long? {
+        val nearest = deadlines.values.minOrNull() ?: return null
+        return (nearest - clock.invoke()).coerceAtLeast(0)
+    }
+
+    /**
+     * @return types whose deadline has passed without a result; they are not tracked anymore
+     */
+    fun takeExpired(): List<BiometricType?> {
+        val now = clock.invoke()
+        val expired = deadlines.filter { it.value <= now }.keys.toList()
+        for (type in expired)
+            deadlines.remove(type)
+        return expired
+    }
+}
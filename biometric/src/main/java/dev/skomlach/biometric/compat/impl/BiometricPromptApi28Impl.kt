@@ -26,12 +26,12 @@ import android.text.SpannableString
 import android.text.style.ForegroundColorSpan
 import androidx.annotation.ColorInt
 import androidx.biometric.BiometricFragment
+import androidx.biometric.BiometricInternals
 import androidx.biometric.BiometricManager
 import androidx.biometric.BiometricPrompt
 import androidx.biometric.BiometricPrompt.PromptInfo
 import androidx.biometric.CancellationHelper
 import androidx.core.content.ContextCompat
-import androidx.fragment.app.FragmentManager
 import dev.skomlach.biometric.compat.*
 import dev.skomlach.biometric.compat.crypto.BiometricCryptoException
 import dev.skomlach.biometric.compat.crypto.BiometricCryptoObjectHelper
@@ -44,6 +44,8 @@ import dev.skomlach.biometric.compat.utils.DevicesWithKnownBugs
 import dev.skomlach.biometric.compat.utils.HardwareAccessImpl
 import dev.skomlach.biometric.compat.utils.Vibro
 import dev.skomlach.biometric.compat.utils.activityView.IconStateHelper
+import dev.skomlach.biometric.compat.utils.logging.AuthPhase
+import dev.skomlach.biometric.compat.utils.logging.AuthTimelineTracer
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.d
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.e
 import dev.skomlach.biometric.compat.utils.notification.BiometricNotificationManager
@@ -68,8 +70,12 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
     private var restartPredicate = defaultPredicate()
     private var dialog: BiometricPromptCompatDialogImpl? = null
     private var callback: BiometricPromptCompat.AuthenticationCallback? = null
-    private val authFinished: MutableMap<BiometricType?, AuthResult> =
-        HashMap<BiometricType?, AuthResult>()
+    private val resultAggregator = AuthResultAggregator(
+        builder.getBiometricAuthRequest().confirmation,
+        AuthResultAggregator.Config(builder.getSecondaryTimeout())
+    )
+    private val authFinished: MutableMap<BiometricType?, AuthResult>
+        get() = resultAggregator.results
     private var biometricFragment: AtomicReference<BiometricFragment?> =
         AtomicReference<BiometricFragment?>(null)
     private val fmAuthCallback: BiometricAuthenticationListener =
@@ -86,14 +92,10 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
                 if (tmp - errorTs <= skipTimeout || tmp - authCallTimestamp.get() <= skipTimeout)
                     return
                 errorTs = tmp
-                ExecutorHelper.post {
-                    dialog?.onFailure(false)
-                    for (module in (if (isNativeBiometricWorkaroundRequired) builder.getAllAvailableTypes() else builder.getPrimaryAvailableTypes())) {
-                        IconStateHelper.errorType(module)
-                    }
-
+                dialog?.onFailure(false)
+                for (module in (if (isNativeBiometricWorkaroundRequired) builder.getAllAvailableTypes() else builder.getPrimaryAvailableTypes())) {
+                    IconStateHelper.errorType(module)
                 }
-
             }
 
             override fun onAuthenticationError(errorCode: Int, errString: CharSequence) {
@@ -140,13 +142,11 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
                     }
                     if (restartPredicate.invoke(failureReason)) {
                         if (callback != null) {
-                            ExecutorHelper.post {
-                                dialog?.onFailure(
-                                    failureReason == AuthenticationFailureReason.LOCKED_OUT
-                                )
-                                for (module in (if (isNativeBiometricWorkaroundRequired) builder.getAllAvailableTypes() else builder.getPrimaryAvailableTypes())) {
-                                    IconStateHelper.errorType(module)
-                                }
+                            dialog?.onFailure(
+                                failureReason == AuthenticationFailureReason.LOCKED_OUT
+                            )
+                            for (module in (if (isNativeBiometricWorkaroundRequired) builder.getAllAvailableTypes() else builder.getPrimaryAvailableTypes())) {
+                                IconStateHelper.errorType(module)
                             }
                         }
                     } else {
@@ -247,7 +247,9 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
     override fun authenticate(cbk: BiometricPromptCompat.AuthenticationCallback?) {
         d("BiometricPromptApi28Impl.authenticate():")
         this.restartPredicate = defaultPredicate()
-        this.authFinished.clear()
+        ExecutorHelper.removeCallbacks(startSecondaryTask)
+        ExecutorHelper.removeCallbacks(deadlineTask)
+        this.resultAggregator.reset()
         this.biometricFragment.set(null)
         callback = cbk
         if (DevicesWithKnownBugs.isMissedBiometricUI) {
@@ -273,77 +275,95 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
         }
     }
 
-    private val finalTask = Runnable {
-        val secondary = ArrayList<BiometricType>(builder.getSecondaryAvailableTypes())
-        BiometricAuthentication.cancelAuthentication()
-        val finished = secondary.filter { type ->
-            authFinished.keys.contains(type)
+    //Fails the secondary sensors that did not respond in time (workaround path only)
+    private val deadlineTask: Runnable = Runnable {
+        val expired = resultAggregator.takeExpired()
+        if (expired.isNotEmpty()) {
+            BiometricAuthentication.cancelAuthentication()
+            expired.forEach {
+                checkAuthResultForSecondary(
+                    AuthenticationResult(confirmed = it),
+                    AuthResult.AuthResultState.FATAL_ERROR,
+                    AuthenticationFailureReason.TIMEOUT
+                )
+            }
         }
-        secondary.removeAll(finished.toSet())
-        secondary.forEach {
-            checkAuthResultForSecondary(
-                AuthenticationResult(confirmed = it),
-                AuthResult.AuthResultState.FATAL_ERROR,
-                AuthenticationFailureReason.TIMEOUT
-            )
+        scheduleDeadline()
+    }
+
+    private fun scheduleDeadline() {
+        ExecutorHelper.removeCallbacks(deadlineTask)
+        resultAggregator.nextDeadlineDelay()?.let {
+            ExecutorHelper.postDelayed(deadlineTask, it)
         }
+    }
 
+    //Secondary sensors are started once the system prompt has animated in
+    private val startSecondaryTask = Runnable {
+        startSecondary()
     }
+
     override fun startAuth() {
         d("BiometricPromptApi28Impl.startAuth():")
-        val shortDelayMillis =
-            builder.getContext().resources.getInteger(android.R.integer.config_shortAnimTime)
-                .toLong()
-        val secondary = ArrayList<BiometricType>(builder.getSecondaryAvailableTypes())
         onUiOpened()
         showSystemUi(biometricPrompt)
+        if (builder.getSecondaryAvailableTypes().isNotEmpty()) {
+            val shortDelayMillis =
+                builder.getContext().resources.getInteger(android.R.integer.config_shortAnimTime)
+                    .toLong()
+            ExecutorHelper.removeCallbacks(startSecondaryTask)
+            ExecutorHelper.postDelayed(startSecondaryTask, shortDelayMillis)
+        }
+    }
+
+    private fun startSecondary() {
+        val secondary = ArrayList<BiometricType>(builder.getSecondaryAvailableTypes())
         if (secondary.isNotEmpty()) {
-            ExecutorHelper.postDelayed({
-                if (!isNativeBiometricWorkaroundRequired) {
-                    BiometricAuthentication.authenticate(
-                        builder.getCryptographyPurpose(),
-                        null,
-                        secondary,
-                        fmAuthCallback,
-                        BundleBuilder.create(builder)
-                    )
-                } else {
-                    BiometricAuthentication.authenticate(
-                        builder.getCryptographyPurpose(),
-                        null,
-                        secondary,
-                        object : BiometricAuthenticationListener {
-                            override fun onSuccess(module: AuthenticationResult?) {
-                                checkAuthResultForSecondary(
-                                    module,
-                                    AuthResult.AuthResultState.SUCCESS
-                                )
-                            }
+            if (!isNativeBiometricWorkaroundRequired) {
+                BiometricAuthentication.authenticate(
+                    builder.getCryptographyPurpose(),
+                    null,
+                    secondary,
+                    fmAuthCallback,
+                    BundleBuilder.create(builder)
+                )
+            } else {
+                BiometricAuthentication.authenticate(
+                    builder.getCryptographyPurpose(),
+                    null,
+                    secondary,
+                    object : BiometricAuthenticationListener {
+                        override fun onSuccess(module: AuthenticationResult?) {
+                            checkAuthResultForSecondary(
+                                module,
+                                AuthResult.AuthResultState.SUCCESS
+                            )
+                        }
 
-                            override fun onHelp(msg: CharSequence?) {
+                        override fun onHelp(msg: CharSequence?) {
 
-                            }
+                        }
 
-                            override fun onFailure(
-                                failureReason: AuthenticationFailureReason?,
-                                module: BiometricType?
-                            ) {
-                                checkAuthResultForSecondary(
-                                    AuthenticationResult(confirmed = module),
-                                    AuthResult.AuthResultState.FATAL_ERROR,
-                                    failureReason
-                                )
-                            }
+                        override fun onFailure(
+                            failureReason: AuthenticationFailureReason?,
+                            module: BiometricType?
+                        ) {
+                            checkAuthResultForSecondary(
+                                AuthenticationResult(confirmed = module),
+                                AuthResult.AuthResultState.FATAL_ERROR,
+                                failureReason
+                            )
+                        }
 
 
-                            override fun onCanceled(module: BiometricType?) {}
-                        },
-                        BundleBuilder.create(builder)
-                    )
+                        override fun onCanceled(module: BiometricType?) {}
+                    },
+                    BundleBuilder.create(builder)
+                )
 
-                    ExecutorHelper.postDelayed(finalTask, 1500)
-                }
-            }, shortDelayMillis)
+                resultAggregator.armDeadline(secondary)
+                scheduleDeadline()
+            }
         }
 
     }
@@ -353,22 +373,24 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
 
             var biometricCryptoObject: BiometricCryptoObject? = null
             builder.getCryptographyPurpose()?.let {
-                try {
-                    biometricCryptoObject = BiometricCryptoObjectHelper.getBiometricCryptoObject(
-                        "BiometricPromptCompat",
-                        builder.getCryptographyPurpose(),
-                        true
-                    )
-                } catch (e: BiometricCryptoException) {
-                    if (builder.getCryptographyPurpose()?.purpose == BiometricCryptographyPurpose.ENCRYPT) {
-                        BiometricCryptoObjectHelper.deleteCrypto("BiometricPromptCompat")
-                        biometricCryptoObject =
-                            BiometricCryptoObjectHelper.getBiometricCryptoObject(
-                                "BiometricPromptCompat",
-                                builder.getCryptographyPurpose(),
-                                true
-                            )
-                    } else throw e
+                AuthTimelineTracer.trace(AuthPhase.CRYPTO_OBJECT_CREATION, "BiometricPromptCompat") {
+                    try {
+                        biometricCryptoObject = BiometricCryptoObjectHelper.getBiometricCryptoObject(
+                            "BiometricPromptCompat",
+                            builder.getCryptographyPurpose(),
+                            true
+                        )
+                    } catch (e: BiometricCryptoException) {
+                        if (builder.getCryptographyPurpose()?.purpose == BiometricCryptographyPurpose.ENCRYPT) {
+                            BiometricCryptoObjectHelper.deleteCrypto("BiometricPromptCompat")
+                            biometricCryptoObject =
+                                BiometricCryptoObjectHelper.getBiometricCryptoObject(
+                                    "BiometricPromptCompat",
+                                    builder.getCryptographyPurpose(),
+                                    true
+                                )
+                        } else throw e
+                    }
                 }
             }
 
@@ -395,30 +417,10 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
                 authCallTimestamp.set(System.currentTimeMillis())
                 biometricPrompt.authenticate(biometricPromptInfo)
             }
-            ExecutorHelper.startOnBackground {
-                //fallback - sometimes we not able to cancel BiometricPrompt properly
-                try {
-                    val m = BiometricPrompt::class.java.declaredMethods.first {
-                        it.parameterTypes.size == 1 && it.parameterTypes[0] == FragmentManager::class.java && it.returnType == BiometricFragment::class.java
-                    }
-                    val isAccessible = m.isAccessible
-                    try {
-                        if (!isAccessible)
-                            m.isAccessible = true
-                        biometricFragment.set(
-                            m.invoke(
-                                null,
-                                builder.getContext().supportFragmentManager
-                            ) as BiometricFragment?
-                        )
-                    } finally {
-                        if (!isAccessible)
-                            m.isAccessible = false
-                    }
-                } catch (e: Throwable) {
-                    e(e)
-                }
-            }
+            //fallback - sometimes we not able to cancel BiometricPrompt properly
+            biometricFragment.set(
+                BiometricInternals.findBiometricFragment(builder.getContext().supportFragmentManager)
+            )
         } catch (e: BiometricCryptoException) {
             e(e)
             checkAuthResultForPrimary(
@@ -432,14 +434,11 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
 
     override fun stopAuth() {
         e("BiometricPromptApi28Impl.stopAuth():")
-        ExecutorHelper.removeCallbacks(finalTask)
+        ExecutorHelper.removeCallbacks(startSecondaryTask)
+        ExecutorHelper.removeCallbacks(deadlineTask)
         BiometricAuthentication.cancelAuthentication()
-        biometricFragment.get()?.let {
-            CancellationHelper.forceCancel(it)
-        } ?: run {
+        if (!CancellationHelper.forceCancel(biometricFragment.getAndSet(null)))
             biometricPrompt.cancelAuthentication()
-        }
-        biometricFragment.set(null)
     }
 
     override fun cancelAuth() {
@@ -502,69 +501,32 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
             BiometricCryptoObject(cryptoObject.signature, cryptoObject.cipher, cryptoObject.mac)
         }
         for (module in (if (isNativeBiometricWorkaroundRequired) builder.getAllAvailableTypes() else builder.getPrimaryAvailableTypes())) {
-            authFinished[module] =
+            resultAggregator.record(
+                module,
                 AuthResult(authResult, AuthenticationResult(module, crypto), failureReason)
+            )
             added = true
-            ExecutorHelper.post {
-                BiometricNotificationManager.dismiss(module)
-                if (AuthResult.AuthResultState.SUCCESS == authResult) {
-                    IconStateHelper.successType(module)
-                } else
-                    IconStateHelper.errorType(module)
-            }
-
+            BiometricNotificationManager.dismiss(module)
+            if (AuthResult.AuthResultState.SUCCESS == authResult) {
+                IconStateHelper.successType(module)
+            } else
+                IconStateHelper.errorType(module)
         }
         dialog?.authFinishedCopy = authFinished
-        d("BiometricPromptApi28Impl.checkAuthResultForPrimary():2222222222")
         if (added && builder.getBiometricAuthRequest().confirmation == BiometricConfirmation.ALL && AuthResult.AuthResultState.SUCCESS == authResult) {
             Vibro.start()
         }
 
-        val authFinishedList: List<BiometricType?> = java.util.ArrayList(authFinished.keys)
-        val allList: MutableList<BiometricType?> = java.util.ArrayList(
-            builder.getAllAvailableTypes()
-        )
-        allList.removeAll(authFinishedList)
+        val allList = resultAggregator.pending(builder.getAllAvailableTypes())
         d("checkAuthResultForPrimary.authFinished - ${builder.getBiometricAuthRequest()}: $allList; ($authFinished / ${builder.getAllAvailableTypes()})")
-        val error =
-            authFinished.values.lastOrNull { it.authResultState == AuthResult.AuthResultState.FATAL_ERROR }
-        val success =
-            authFinished.values.lastOrNull { it.authResultState == AuthResult.AuthResultState.SUCCESS }
-        d("checkAuthResultForPrimary.authFinished - ${builder.getBiometricAuthRequest()}: $error/$success")
-        if (((success != null || allList.isEmpty()) && builder.getBiometricAuthRequest().confirmation == BiometricConfirmation.ANY) ||
-            (builder.getBiometricAuthRequest().confirmation == BiometricConfirmation.ALL && (DevicesWithKnownBugs.systemDealWithBiometricPrompt || allList.isEmpty()))
-        ) {
-            ExecutorHelper.post {
-                if (success != null) {
-                    val onlySuccess = authFinished.filter {
-                        it.value.authResultState == AuthResult.AuthResultState.SUCCESS
-                    }
-                    val fixCryptoObjects = builder.getCryptographyPurpose()?.purpose == null
-                    d("BiometricPromptApi28Impl.checkAuthResultForPrimary() -> onSucceeded")
-                    callback?.onSucceeded(onlySuccess.keys.toList().mapNotNull {
-                        var result: AuthenticationResult? = null
-                        onlySuccess[it]?.successData?.let { r ->
-                            result = AuthenticationResult(
-                                r.confirmed,
-                                if (fixCryptoObjects) null else r.cryptoObject
-                            )
-                        }
-                        result
-                    }.toSet())
-                } else if (error != null) {
-                    if (failureReason == AuthenticationFailureReason.LOCKED_OUT) {
-                        ExecutorHelper.postDelayed({
-                            e("BiometricPromptApi28Impl.checkAuthResultForPrimary() -> onFailed")
-                            callback?.onFailed(error.failureReason)
-                        }, 2000)
-                    } else {
-                        e("BiometricPromptApi28Impl.checkAuthResultForPrimary() -> onFailed")
-                        callback?.onFailed(error.failureReason)
-                    }
-                }
-                cancelAuthentication()
-            }
-        } else if (allList.isNotEmpty()) {
+        val outcome = resultAggregator.resolve(
+            builder.getAllAvailableTypes(),
+            DevicesWithKnownBugs.systemDealWithBiometricPrompt
+        )
+        if (outcome != null) {
+            //lockout for the primary failure is already recorded above
+            deliverOutcome(outcome, "checkAuthResultForPrimary", false)
+        } else if (!resultAggregator.isResolved && allList.isNotEmpty()) {
             if (dialog == null) {
                 dialog =
                     BiometricPromptCompatDialogImpl(
@@ -610,16 +572,14 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
         if (!isOpened.get())
             return
         d("BiometricPromptApi28Impl.checkAuthResultForSecondary():")
-        ExecutorHelper.post {
-            if (authResult == AuthResult.AuthResultState.SUCCESS) {
-                if (builder.getBiometricAuthRequest().confirmation == BiometricConfirmation.ALL) {
-                    Vibro.start()
-                }
-                IconStateHelper.successType(module?.confirmed)
-            } else if (authResult == AuthResult.AuthResultState.FATAL_ERROR) {
-                dialog?.onFailure(failureReason == AuthenticationFailureReason.LOCKED_OUT)
-                IconStateHelper.errorType(module?.confirmed)
+        if (authResult == AuthResult.AuthResultState.SUCCESS) {
+            if (builder.getBiometricAuthRequest().confirmation == BiometricConfirmation.ALL) {
+                Vibro.start()
             }
+            IconStateHelper.successType(module?.confirmed)
+        } else if (authResult == AuthResult.AuthResultState.FATAL_ERROR) {
+            dialog?.onFailure(failureReason == AuthenticationFailureReason.LOCKED_OUT)
+            IconStateHelper.errorType(module?.confirmed)
         }
         //non fatal
         if (mutableListOf(
@@ -629,57 +589,52 @@ class BiometricPromptApi28Impl(override val builder: BiometricPromptCompat.Build
         ) {
             return
         }
-        authFinished[module?.confirmed] = AuthResult(authResult, module, failureReason)
+        resultAggregator.record(module?.confirmed, AuthResult(authResult, module, failureReason))
         dialog?.authFinishedCopy = authFinished
         BiometricNotificationManager.dismiss(module?.confirmed)
+        if (resultAggregator.nextDeadlineDelay() == null)
+            ExecutorHelper.removeCallbacks(deadlineTask)
 
-        val authFinishedList: List<BiometricType?> = java.util.ArrayList(authFinished.keys)
-        val allList: MutableList<BiometricType?> = java.util.ArrayList(
-            builder.getAllAvailableTypes()
-        )
-        allList.removeAll(authFinishedList)
+        val allList = resultAggregator.pending(builder.getAllAvailableTypes())
         d("checkAuthResultForSecondary.authFinished - ${builder.getBiometricAuthRequest()}: $allList; ($authFinished / ${builder.getAllAvailableTypes()})")
-        val error =
-            authFinished.values.lastOrNull { it.authResultState == AuthResult.AuthResultState.FATAL_ERROR }
-        val success =
-            authFinished.values.lastOrNull { it.authResultState == AuthResult.AuthResultState.SUCCESS }
-
-        d("checkAuthResultForSecondary.authFinished - ${builder.getBiometricAuthRequest()}: $error/$success")
-        if (((success != null || allList.isEmpty()) && builder.getBiometricAuthRequest().confirmation == BiometricConfirmation.ANY) ||
-            (builder.getBiometricAuthRequest().confirmation == BiometricConfirmation.ALL && allList.isEmpty())
-        ) {
-            ExecutorHelper.post {
+        resultAggregator.resolve(builder.getAllAvailableTypes())?.let {
+            deliverOutcome(it, "checkAuthResultForSecondary", true)
+        }
+    }
 
-                if (success != null) {
-                    val onlySuccess = authFinished.filter {
-                        it.value.authResultState == AuthResult.AuthResultState.SUCCESS
+    private fun deliverOutcome(
+        outcome: AuthResultAggregator.Outcome,
+        source: String,
+        recordLockout: Boolean
+    ) {
+        ExecutorHelper.removeCallbacks(deadlineTask)
+        ExecutorHelper.post {
+            val error = outcome.error
+            if (outcome.isSucceeded) {
+                val fixCryptoObjects = builder.getCryptographyPurpose()?.purpose == null
+                d("BiometricPromptApi28Impl.$source -> onSucceeded")
+                callback?.onSucceeded(outcome.success.values.mapNotNull { r ->
+                    r.successData?.let {
+                        AuthenticationResult(
+                            it.confirmed,
+                            if (fixCryptoObjects) null else it.cryptoObject
+                        )
                     }
-                    val fixCryptoObjects = builder.getCryptographyPurpose()?.purpose == null
-                    d("BiometricPromptApi28Impl.checkAuthResultForSecondary() -> onSucceeded")
-                    callback?.onSucceeded(onlySuccess.keys.toList().mapNotNull {
-                        var result: AuthenticationResult? = null
-                        onlySuccess[it]?.successData?.let { r ->
-                            result = AuthenticationResult(
-                                r.confirmed,
-                                if (fixCryptoObjects) null else r.cryptoObject
-                            )
-                        }
-                        result
-                    }.toSet())
-                } else if (error != null) {
-                    if (error.failureReason !== AuthenticationFailureReason.LOCKED_OUT) {
-                        e("BiometricPromptApi28Impl.checkAuthResultForSecondary() -> onFailed")
-                        callback?.onFailed(error.failureReason)
-                    } else {
+                }.toSet())
+            } else if (error != null) {
+                if (error.failureReason !== AuthenticationFailureReason.LOCKED_OUT) {
+                    e("BiometricPromptApi28Impl.$source -> onFailed")
+                    callback?.onFailed(error.failureReason)
+                } else {
+                    if (recordLockout)
                         HardwareAccessImpl.getInstance(builder.getBiometricAuthRequest()).lockout()
-                        ExecutorHelper.postDelayed({
-                            e("BiometricPromptApi28Impl.checkAuthResultForSecondary() -> onFailed")
-                            callback?.onFailed(error.failureReason)
-                        }, 2000)
-                    }
+                    ExecutorHelper.postDelayed({
+                        e("BiometricPromptApi28Impl.$source -> onFailed")
+                        callback?.onFailed(error.failureReason)
+                    }, 2000)
                 }
-                cancelAuthentication()
             }
+            cancelAuthentication()
         }
     }
 
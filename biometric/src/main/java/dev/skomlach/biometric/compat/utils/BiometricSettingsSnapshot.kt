@@ -0,0 +1,149 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.utils
+
+import android.content.Context
+import android.database.ContentObserver
+import android.net.Uri
+import android.os.Build
+import android.provider.Settings
+import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
+import dev.skomlach.common.contextprovider.AndroidContext
+import dev.skomlach.common.misc.ExecutorHelper
+import dev.skomlach.common.misc.SettingsHelper
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * In-memory snapshot of the biometric-related settings.
+ *
+ * The secure table is read once (name/value columns only) and the relevant rows are indexed;
+ * the snapshot and the looked-up keys are dropped when the settings are changed.
+ */
+object BiometricSettingsSnapshot {
+    private val appContext = AndroidContext.appContext
+    private val biometricAliases = arrayOf(
+        "fingerprint",
+        "face",
+        "iris",
+        "biometric",
+        "palm",
+        "voice",
+        "heartrate",
+        "behavior"
+    )
+    private val isObserverRegistered = AtomicBoolean(false)
+
+    @Volatile
+    private var unlockRows: Map<String, String?>? = null
+
+    //key -> value resolved through SettingsHelper (Secure/System/Global), incl. missing keys
+    private val resolvedKeys = ConcurrentHashMap<String, Long>()
+    private val observer by lazy {
+        object : ContentObserver(ExecutorHelper.handler) {
+            override fun onChange(selfChange: Boolean) {
+                onChange(selfChange, null)
+            }
+
+            override fun onChange(selfChange: Boolean, uri: Uri?) {
+                val name = uri?.lastPathSegment
+                if (name == null || isUnlockSetting(name))
+                    unlockRows = null
+                if (name == null)
+                    resolvedKeys.clear()
+                else
+                    resolvedKeys.remove(name)
+            }
+        }
+    }
+
+    /**
+     * Values of the "*_unl*_enable*" rows of the secure table for any biometric type
+     */
+    fun getUnlockSettings(): Map<String, String?> {
+        registerObserver()
+        unlockRows?.let {
+            return it
+        }
+        return queryUnlockRows().also {
+            unlockRows = it
+        }
+    }
+
+    fun getLong(context: Context, key: String, defaultValue: Long): Long {
+        registerObserver()
+        getUnlockSettings()[key]?.toLongOrNull()?.let {
+            return it
+        }
+        val value = resolvedKeys[key] ?: SettingsHelper.getLong(context, key, Long.MIN_VALUE).also {
+            resolvedKeys[key] = it
+        }
+        return if (value == Long.MIN_VALUE) defaultValue else value
+    }
+
+    private fun isUnlockSetting(name: String): Boolean {
+        val s = name.lowercase(Locale.ROOT)
+        return s.contains("_unl") && s.contains("_enable") && biometricAliases.any { s.contains(it) }
+    }
+
+    private fun queryUnlockRows(): Map<String, String?> {
+        val result = HashMap<String, String?>()
+        //SettingsProvider supports only "name=?" selection, so the rows are filtered here
+        try {
+            appContext.contentResolver.query(
+                Uri.parse("content://settings/secure"),
+                arrayOf("name", "value"),
+                null,
+                null,
+                null
+            )?.use { cursor ->
+                val nameIndex = cursor.getColumnIndex("name")
+                val valueIndex = cursor.getColumnIndex("value")
+                while (cursor.moveToNext()) {
+                    if (nameIndex < 0 || cursor.isNull(nameIndex))
+                        continue
+                    val name = cursor.getString(nameIndex)
+                    if (name.isNullOrEmpty() || !isUnlockSetting(name))
+                        continue
+                    result[name] = if (valueIndex < 0) null else cursor.getString(valueIndex)
+                }
+            }
+        } catch (e: Throwable) {
+            BiometricLoggerImpl.e(e)
+        }
+        return result
+    }
+
+    private fun registerObserver() {
+        if (!isObserverRegistered.compareAndSet(false, true))
+            return
+        val uris = mutableListOf(Settings.Secure.CONTENT_URI, Settings.System.CONTENT_URI)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1)
+            uris.add(Settings.Global.CONTENT_URI)
+        for (uri in uris) {
+            try {
+                appContext.contentResolver.registerContentObserver(uri, true, observer)
+            } catch (e: Throwable) {
+                BiometricLoggerImpl.e(e)
+            }
+        }
+    }
+}
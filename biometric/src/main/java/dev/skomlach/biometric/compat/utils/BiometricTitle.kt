@@ -19,14 +19,98 @@
 
 package dev.skomlach.biometric.compat.utils
 
+import android.content.ComponentCallbacks
 import android.content.Context
+import android.content.res.Configuration
+import androidx.core.os.ConfigurationCompat
+import dev.skomlach.biometric.compat.BiometricApi
+import dev.skomlach.biometric.compat.BiometricAuthRequest
+import dev.skomlach.biometric.compat.BiometricManagerCompat
 import dev.skomlach.biometric.compat.BiometricType
+import dev.skomlach.biometric.compat.engine.internal.BiometricModuleStateCache
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
+import dev.skomlach.common.misc.ExecutorHelper
 import dev.skomlach.common.misc.SystemStringsHelper
 import dev.skomlach.common.misc.Utils
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 
 object BiometricTitle {
+    //"locale|types" -> title; the titles may change with locale, enrolled biometrics (Android 12+) or system update
+    private val cache = ConcurrentHashMap<String, String>()
+
+    //Bumped on every clear; a title resolved before the clear must not be stored after it
+    private val generation = AtomicInteger(0)
+    private val isListenersRegistered = AtomicBoolean(false)
+
     fun getRelevantTitle(context: Context, types: Set<BiometricType>): String {
+        registerListeners(context)
+        val key = getCacheKey(context, types)
+        cache[key]?.let {
+            return it
+        }
+        val resolvedFor = generation.get()
+        return resolveTitle(context, types).also {
+            cache[key] = it
+            //cleared while resolving - drop the possibly stale value
+            if (generation.get() != resolvedFor)
+                cache.remove(key, it)
+        }
+    }
+
+    private fun clear() {
+        generation.incrementAndGet()
+        cache.clear()
+    }
+
+    fun warmUp(context: Context) {
+        ExecutorHelper.startOnBackground {
+            try {
+                val types = BiometricType.values().filter {
+                    it != BiometricType.BIOMETRIC_ANY && BiometricManagerCompat.isBiometricReadyForUsage(
+                        BiometricAuthRequest(BiometricApi.AUTO, it)
+                    )
+                }.toSet()
+                getRelevantTitle(context, types)
+                for (type in types) {
+                    if (type != BiometricType.BIOMETRIC_ANY)
+                        getRelevantTitle(context, setOf(type))
+                }
+            } catch (e: Throwable) {
+                BiometricLoggerImpl.e(e)
+            }
+        }
+    }
+
+    private fun getCacheKey(context: Context, types: Set<BiometricType>): String {
+        val locales = ConfigurationCompat.getLocales(context.resources.configuration)
+        val locale = if (!locales.isEmpty) locales[0] else null
+        return "$locale|" + types.filter { it != BiometricType.BIOMETRIC_ANY }
+            .sortedBy { it.ordinal }
+            .joinToString(",")
+    }
+
+    private fun registerListeners(context: Context) {
+        if (!isListenersRegistered.compareAndSet(false, true))
+            return
+        context.applicationContext.registerComponentCallbacks(object : ComponentCallbacks {
+            override fun onConfigurationChanged(newConfig: Configuration) {
+                clear()
+            }
+
+            override fun onLowMemory() {}
+        })
+        //BiometricManager.getStrings() depends on the enrolled biometrics
+        BiometricModuleStateCache.addInvalidationListener(object :
+            BiometricModuleStateCache.InvalidationListener {
+            override fun onStateInvalidated() {
+                clear()
+            }
+        })
+    }
+
+    private fun resolveTitle(context: Context, types: Set<BiometricType>): String {
         //Attempt#1
         val set = types.toMutableSet().apply {
             remove(BiometricType.BIOMETRIC_ANY)
@@ -93,14 +177,10 @@ object BiometricTitle {
     }
 
     private fun getSystemTitle(context: Context, alias: String): String? {
-        return getFromSystemTitle(context, alias) ?: getFromSystemSubtitle(context, alias)
-    }
-
-    private fun getFromSystemSubtitle(context: Context, alias: String): String? {
-        return SystemStringsHelper.getFromSystem(context, alias + "_dialog_default_subtitle")
-    }
-
-    private fun getFromSystemTitle(context: Context, alias: String): String? {
-        return SystemStringsHelper.getFromSystem(context, alias + "_dialog_default_title")
+        return SystemStringsHelper.getFirstFromSystem(
+            context,
+            alias + "_dialog_default_title",
+            alias + "_dialog_default_subtitle"
+        )
     }
 }
\ No newline at end of file
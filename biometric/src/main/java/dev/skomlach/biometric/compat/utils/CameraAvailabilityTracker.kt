@@ -0,0 +1,257 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.utils
+
+import android.annotation.SuppressLint
+import android.annotation.TargetApi
+import android.app.AppOpsManager
+import android.content.Context
+import android.hardware.SensorPrivacyManager
+import android.hardware.camera2.CameraCharacteristics
+import android.hardware.camera2.CameraManager
+import android.os.Build
+import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
+import dev.skomlach.common.contextprovider.AndroidContext
+import dev.skomlach.common.misc.ExecutorHelper
+import dev.skomlach.common.misc.Utils
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Process-wide tracker of the camera availability and camera privacy toggle state.
+ *
+ * The CameraManager.AvailabilityCallback is registered only once, so the state is always current
+ * and can be read without any IPC.
+ *
+ * The privacy toggle itself can't be observed with the public API; its state is resolved by
+ * SensorPrivacyCheck (AppOps) and dropped to "unknown" whenever the camera op mode or the camera
+ * availability changes, so it is resolved again on the next check. The op mode callback is not
+ * guaranteed for the toggle, so a resolved state also expires after [SensorPrivacyCheck.CHECK_TIMEOUT].
+ */
+@SuppressLint("NewApi")
+object CameraAvailabilityTracker {
+    private const val PRIVACY_UNKNOWN = -1
+    private const val PRIVACY_DISABLED = 0
+    private const val PRIVACY_ENABLED = 1
+
+    private val appContext = AndroidContext.appContext
+    private val isStarted = AtomicBoolean(false)
+
+    //cameraId -> isAvailable
+    private val availability = ConcurrentHashMap<String, Boolean>()
+
+    //cameraId -> isFrontFacing
+    private val lensFacing = ConcurrentHashMap<String, Boolean>()
+
+    //Cameras reported by CameraManager; the state is known once each of them got its first callback
+    @Volatile
+    private var cameraIds: Set<String>? = null
+    private val cameraPrivacyState = AtomicInteger(PRIVACY_UNKNOWN)
+    private val cameraPrivacyCheckedTime = AtomicLong(0)
+
+    @Volatile
+    private var isPrivacyToggleSupported: Boolean? = null
+    private val listeners = CopyOnWriteArraySet<CameraStateListener>()
+
+    /**
+     * @return `null` while the initial state is unknown (the callback is registered
+     * asynchronously and no events received yet)
+     */
+    val isFrontCameraInUse: Boolean?
+        get() {
+            start()
+            val ids = cameraIds ?: return null
+            var isKnown = true
+            for (id in ids) {
+                val isAvailable = availability[id]
+                if (isAvailable == null)
+                    isKnown = false
+                else if (!isAvailable && lensFacing[id] == true)
+                    return true
+            }
+            return if (isKnown) false else null
+        }
+
+    /**
+     * @return `null` if the state still unknown and should be resolved by the caller
+     */
+    val isCameraPrivacyEnabled: Boolean?
+        get() {
+            start()
+            if (!Utils.isAtLeastS || isPrivacyToggleSupported == false)
+                return false
+            if (System.currentTimeMillis() - cameraPrivacyCheckedTime.get() > SensorPrivacyCheck.CHECK_TIMEOUT)
+                return null
+            return when (cameraPrivacyState.get()) {
+                PRIVACY_ENABLED -> true
+                PRIVACY_DISABLED -> false
+                else -> null
+            }
+        }
+
+    fun isCameraAvailable(cameraId: String): Boolean {
+        start()
+        return availability[cameraId] ?: true
+    }
+
+    fun addListener(listener: CameraStateListener) {
+        listeners.add(listener)
+        start()
+    }
+
+    fun removeListener(listener: CameraStateListener) {
+        listeners.remove(listener)
+    }
+
+    fun start() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP || !isStarted.compareAndSet(
+                false,
+                true
+            )
+        )
+            return
+        //Fix for `Non-fatal Exception: java.lang.IllegalArgumentException: No handler given, and current thread has no looper!`
+        ExecutorHelper.startOnBackground {
+            try {
+                val cameraManager =
+                    appContext.getSystemService(Context.CAMERA_SERVICE) as CameraManager
+                cameraIds = try {
+                    cameraManager.cameraIdList.toSet()
+                } catch (e: Throwable) {
+                    //no way to know; treat as "no cameras" instead of waiting for the callbacks forever
+                    BiometricLoggerImpl.e(e)
+                    emptySet()
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P)
+                    cameraManager.registerAvailabilityCallback(
+                        ExecutorHelper.backgroundExecutor,
+                        getCameraCallback(cameraManager)
+                    )
+                else
+                    cameraManager.registerAvailabilityCallback(
+                        getCameraCallback(cameraManager),
+                        ExecutorHelper.handler
+                    )
+            } catch (e: Throwable) {
+                BiometricLoggerImpl.e(e)
+            }
+            if (Utils.isAtLeastS)
+                watchPrivacySignals()
+        }
+    }
+
+    internal fun updateCameraPrivacyState(enabled: Boolean) {
+        val newState = if (enabled) PRIVACY_ENABLED else PRIVACY_DISABLED
+        cameraPrivacyCheckedTime.set(System.currentTimeMillis())
+        if (cameraPrivacyState.getAndSet(newState) != newState)
+            notifyListeners()
+    }
+
+    private fun invalidateCameraPrivacyState() {
+        if (cameraPrivacyState.getAndSet(PRIVACY_UNKNOWN) != PRIVACY_UNKNOWN)
+            notifyListeners()
+    }
+
+    @TargetApi(Build.VERSION_CODES.S)
+    private fun watchPrivacySignals() {
+        try {
+            val sensorPrivacyManager: SensorPrivacyManager? =
+                appContext.getSystemService(SensorPrivacyManager::class.java)
+            isPrivacyToggleSupported =
+                sensorPrivacyManager?.supportsSensorToggle(SensorPrivacyManager.Sensors.CAMERA) == true
+            if (isPrivacyToggleSupported != true)
+                return
+            val appOpsManager: AppOpsManager? =
+                appContext.getSystemService(AppOpsManager::class.java)
+            appOpsManager?.startWatchingMode(
+                AppOpsManager.OPSTR_CAMERA,
+                appContext.packageName
+            ) { _, _ ->
+                BiometricLoggerImpl.d("CameraAvailabilityTracker.onOpChanged")
+                invalidateCameraPrivacyState()
+            }
+        } catch (e: Throwable) {
+            BiometricLoggerImpl.e(e)
+        }
+    }
+
+    private fun isFrontFacing(cameraManager: CameraManager, cameraId: String): Boolean {
+        lensFacing[cameraId]?.let {
+            return it
+        }
+        return (cameraManager.getCameraCharacteristics(cameraId)
+            .get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_FRONT).also {
+            lensFacing[cameraId] = it
+        }
+    }
+
+    private fun notifyListeners() {
+        for (listener in listeners) {
+            try {
+                listener.onCameraStateChanged()
+            } catch (e: Throwable) {
+                BiometricLoggerImpl.e(e)
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private fun getCameraCallback(
+        cameraManager: CameraManager
+    ): CameraManager.AvailabilityCallback {
+        return object : CameraManager.AvailabilityCallback() {
+            private fun update(cameraId: String, isAvailable: Boolean) {
+                try {
+                    //Caused by android.hardware.camera2.CameraAccessException: CAMERA_DISCONNECTED (2): Camera service is currently unavailable
+                    isFrontFacing(cameraManager, cameraId)
+                } catch (e: Throwable) {
+                    BiometricLoggerImpl.e(e)
+                }
+                val ids = cameraIds
+                if (ids != null && !ids.contains(cameraId))
+                    cameraIds = ids + cameraId
+                val previous = availability.put(cameraId, isAvailable)
+                if (previous != isAvailable) {
+                    //Privacy toggle may be the cause of the change; resolve it again
+                    if (previous != null)
+                        cameraPrivacyState.set(PRIVACY_UNKNOWN)
+                    notifyListeners()
+                }
+            }
+
+            override fun onCameraAvailable(cameraId: String) {
+                super.onCameraAvailable(cameraId)
+                update(cameraId, true)
+            }
+
+            override fun onCameraUnavailable(cameraId: String) {
+                super.onCameraUnavailable(cameraId)
+                update(cameraId, false)
+            }
+        }
+    }
+
+    interface CameraStateListener {
+        fun onCameraStateChanged()
+    }
+}
@@ -22,36 +22,41 @@ package dev.skomlach.biometric.compat.utils
 import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
-import android.content.IntentFilter
 import androidx.core.os.BuildCompat
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.d
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl.e
-import dev.skomlach.common.contextprovider.AndroidContext
-import dev.skomlach.common.misc.BroadcastTools
+import dev.skomlach.common.misc.BroadcastHub
 
 class DeviceUnlockedReceiver : BroadcastReceiver() {
     companion object {
-        private val appContext = AndroidContext.appContext
         fun registerDeviceUnlockListener() {
             if (BuildCompat.isAtLeastN()) {
                 try {
-                    val filter = IntentFilter()
-                    filter.addAction(Intent.ACTION_USER_PRESENT)
-                    filter.addAction(Intent.ACTION_MANAGED_PROFILE_UNLOCKED)
-                    filter.addAction(Intent.ACTION_USER_UNLOCKED)
-                    BroadcastTools.registerGlobalBroadcastIntent(appContext, DeviceUnlockedReceiver(), filter)
+                    BroadcastHub.subscribe(
+                        listOf(
+                            Intent.ACTION_USER_PRESENT,
+                            Intent.ACTION_MANAGED_PROFILE_UNLOCKED,
+                            Intent.ACTION_USER_UNLOCKED
+                        )
+                    ) {
+                        onDeviceUnlocked(it)
+                    }
                 } catch (e: Throwable) {
                     e(e)
                 }
             }
         }
+
+        private fun onDeviceUnlocked(intent: Intent) {
+            if (!intent.action.isNullOrEmpty()) {
+                d("Device unlocked or boot completed")
+                BiometricErrorLockoutPermanentFix.resetBiometricSensorPermanentlyLocked()
+            }
+        }
     }
 
     override fun onReceive(context: Context, intent: Intent) {
-        if (!intent.action.isNullOrEmpty()) {
-            d("Device unlocked or boot completed")
-            BiometricErrorLockoutPermanentFix.resetBiometricSensorPermanentlyLocked()
-        }
+        onDeviceUnlocked(intent)
     }
 
 }
\ No newline at end of file
@@ -22,18 +22,21 @@ package dev.skomlach.biometric.compat.utils
 import android.annotation.SuppressLint
 import android.app.admin.DevicePolicyManager
 import android.content.Context
-import android.net.Uri
 import android.os.Build
 import dev.skomlach.common.contextprovider.AndroidContext
 import dev.skomlach.common.misc.ReflectionTools
-import dev.skomlach.common.misc.SettingsHelper
+import java.lang.reflect.Method
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 @SuppressLint("PrivateApi")
 
 object LockType {
     private val appContext = AndroidContext.appContext
 
+    //pkg -> resolved LockPatternUtils (with null method if not available)
+    private val lockPatternUtilsHandles = ConcurrentHashMap<String, LockPatternUtilsHandle>()
+
     /**
      * The bit in LOCK_BIOMETRIC_WEAK_FLAGS to be used to indicate whether liveliness should be used
      */
@@ -53,7 +56,8 @@ object LockType {
      */
 
     fun isBiometricWeakLivelinessEnabled(context: Context): Boolean {
-        val currentFlag = SettingsHelper.getLong(context, LOCK_BIOMETRIC_WEAK_FLAGS, 0L)
+        val currentFlag =
+            BiometricSettingsSnapshot.getLong(context, LOCK_BIOMETRIC_WEAK_FLAGS, 0L)
         return currentFlag and FLAG_BIOMETRIC_WEAK_LIVELINESS.toLong() != 0L
     }
 
@@ -69,35 +73,67 @@ object LockType {
         }
     }
 
-    fun isBiometricWeakEnabled(pkg: String?, context: Context): Boolean {
-        try {
-            val mode: Int
+    //Both variants are kept: OEM builds may have the method, but fail on invocation
+    private class LockPatternUtilsHandle(
+        val instance: Any?,
+        val method: Method?,
+        val methodWithUserId: Method?
+    )
+
+    private fun getLockPatternUtils(pkg: String?): LockPatternUtilsHandle? {
+        val key = pkg ?: ""
+        lockPatternUtilsHandles[key]?.let {
+            return if (it.instance == null) null else it
+        }
+        val handle = try {
             val lockUtilsClass = getClass(pkg)
             val lockUtils =
                 lockUtilsClass.getConstructor(Context::class.java).newInstance(appContext)
-
-            val method = lockUtilsClass.getMethod("getActivePasswordQuality")
-            mode = method.invoke(lockUtils) as Int
-            return mode == DevicePolicyManager.PASSWORD_QUALITY_BIOMETRIC_WEAK
+            val method = try {
+                lockUtilsClass.getMethod("getActivePasswordQuality")
+            } catch (ignore: Throwable) {
+                null
+            }
+            val methodWithUserId = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+                try {
+                    lockUtilsClass.getMethod(
+                        "getActivePasswordQuality",
+                        Int::class.javaPrimitiveType
+                    )
+                } catch (ignore: Throwable) {
+                    null
+                }
+            else null
+            if (method == null && methodWithUserId == null)
+                null
+            else
+                LockPatternUtilsHandle(lockUtils, method, methodWithUserId)
         } catch (ignore: Throwable) {
-
+            null
         }
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+        lockPatternUtilsHandles[key] = handle ?: LockPatternUtilsHandle(null, null, null)
+        return handle
+    }
+
+    fun isBiometricWeakEnabled(pkg: String?, context: Context): Boolean {
+        getLockPatternUtils(pkg)?.let { handle ->
             try {
-                val mode: Int
-                val lockUtilsClass = getClass(pkg)
-                val lockUtils =
-                    lockUtilsClass.getConstructor(Context::class.java).newInstance(appContext)
-
-                val method = lockUtilsClass.getMethod(
-                    "getActivePasswordQuality",
-                    Int::class.javaPrimitiveType
-                )
-                mode = method.invoke(lockUtils, 0) as Int
-                return mode == DevicePolicyManager.PASSWORD_QUALITY_BIOMETRIC_WEAK
+                handle.method?.let {
+                    val mode = it.invoke(handle.instance) as Int
+                    return mode == DevicePolicyManager.PASSWORD_QUALITY_BIOMETRIC_WEAK
+                }
+            } catch (ignore: Throwable) {
+
+            }
+            try {
+                handle.methodWithUserId?.let {
+                    val mode = it.invoke(handle.instance, 0) as Int
+                    return mode == DevicePolicyManager.PASSWORD_QUALITY_BIOMETRIC_WEAK
+                }
             } catch (ignore: Throwable) {
 
             }
+        }
         return isBiometricEnabledInSettings(context)
     }
 
@@ -148,63 +184,18 @@ object LockType {
 //    }
 
     private fun isBiometricEnabledInSettings(context: Context): Boolean {
-        try {
-            val keyValue: MutableList<String> = ArrayList()
-            val u = Uri.parse("content://settings/secure")
-            var mCur = context
-                .contentResolver
-                .query(
-                    u, null,
-                    null,
-                    null,
-                    null
-                )
-            if (mCur != null) {
-                mCur.moveToFirst()
-                while (!mCur.isAfterLast) {
-                    val nameIndex = mCur
-                        .getColumnIndex("name")
-                    if (!mCur.isNull(nameIndex)) {
-                        val name = mCur.getString(nameIndex)
-                        if (name.isNullOrEmpty()) {
-                            mCur.moveToNext()
-                            continue
-                        }
-                        val s = name.lowercase(Locale.ROOT)
-                        if (s.contains("fingerprint")
-                            || s.contains("face")
-                            || s.contains("iris")
-                            || s.contains("biometric")
-                            || s.contains("palm")
-                            || s.contains("voice")
-                            || s.contains("heartrate")
-                            || s.contains("behavior")
-
-                        ) {
-                            if (s.contains("_unl") && s.contains("_enable")) {
-                                keyValue.add(name)
-                            }
-                        }
-                    }
-                    mCur.moveToNext()
-                }
-                mCur.close()
-                mCur = null
-            }
-            for (s in keyValue) {
-                //-1 not exists, 0 - disabled
-                if (SettingsHelper.getInt(context, s, -1) > 0) {
-                    return true
-                }
+        for (value in BiometricSettingsSnapshot.getUnlockSettings().values) {
+            //-1 not exists, 0 - disabled
+            if ((value?.toLongOrNull() ?: -1) > 0) {
+                return true
             }
-        } catch (ignored: Throwable) {
         }
-        val pwrdType = SettingsHelper.getLong(
+        val pwrdType = BiometricSettingsSnapshot.getLong(
             context,
             PASSWORD_TYPE_KEY,
             DevicePolicyManager.PASSWORD_QUALITY_UNSPECIFIED.toLong()
         )
-        val pwrdAltType = SettingsHelper.getLong(
+        val pwrdAltType = BiometricSettingsSnapshot.getLong(
             context,
             PASSWORD_TYPE_ALTERNATE_KEY,
             DevicePolicyManager.PASSWORD_QUALITY_UNSPECIFIED.toLong()
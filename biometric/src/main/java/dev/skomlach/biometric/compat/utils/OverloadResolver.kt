@@ -0,0 +1,108 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.utils
+
+import android.os.Build
+import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
+import dev.skomlach.common.storage.SharedPreferenceProvider
+
+/**
+ * Remembers which of the alternative vendor API signatures works on this device.
+ *
+ * The first call tries the variants in order; the index of the successful one is persisted
+ * per system build, so the next calls go directly to the working variant. If the known variant
+ * fails with anything but a signature mismatch, the error is rethrown as is instead of trying
+ * the other variants.
+ */
+class OverloadResolver(private val key: String, private val variantsCount: Int) {
+    companion object {
+        private const val PREF_NAME = "BiometricCompat_Overloads"
+        private const val KEY_FINGERPRINT = "fingerprint"
+        private const val UNKNOWN = -1
+    }
+
+    @Volatile
+    private var resolved = UNKNOWN
+
+    @Volatile
+    private var isLoaded = false
+
+    @Throws(Throwable::class)
+    fun dispatch(call: (variant: Int) -> Unit) {
+        val known = getResolved()
+        if (known != UNKNOWN) {
+            try {
+                call.invoke(known)
+                return
+            } catch (e: Throwable) {
+                if (!isSignatureMismatch(e))
+                    throw e
+                BiometricLoggerImpl.e(e, "OverloadResolver: variant $known of $key failed")
+            }
+        }
+        var error: Throwable? = null
+        for (variant in 0 until variantsCount) {
+            if (variant == known)
+                continue
+            try {
+                call.invoke(variant)
+                setResolved(variant)
+                return
+            } catch (e: Throwable) {
+                error = e
+            }
+        }
+        throw error ?: IllegalStateException("No variants available for $key")
+    }
+
+    //The variant does not exist on this device (hidden API stubs or reflection)
+    private fun isSignatureMismatch(e: Throwable): Boolean {
+        return e is LinkageError || e is NoSuchMethodException
+    }
+
+    private fun getResolved(): Int {
+        if (isLoaded)
+            return resolved
+        try {
+            val preferences = SharedPreferenceProvider.getPreferences(PREF_NAME)
+            if (preferences.getString(KEY_FINGERPRINT, null) == Build.FINGERPRINT)
+                resolved = preferences.getInt(key, UNKNOWN).takeIf { it in 0 until variantsCount } ?: UNKNOWN
+        } catch (e: Throwable) {
+            BiometricLoggerImpl.e(e)
+        }
+        isLoaded = true
+        return resolved
+    }
+
+    private fun setResolved(variant: Int) {
+        if (resolved == variant)
+            return
+        resolved = variant
+        try {
+            val preferences = SharedPreferenceProvider.getPreferences(PREF_NAME)
+            val editor = preferences.edit()
+            if (preferences.getString(KEY_FINGERPRINT, null) != Build.FINGERPRINT)
+                editor.clear().putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+            editor.putInt(key, variant).apply()
+        } catch (e: Throwable) {
+            BiometricLoggerImpl.e(e)
+        }
+    }
+}
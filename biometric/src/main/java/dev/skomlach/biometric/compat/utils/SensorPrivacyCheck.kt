@@ -22,10 +22,7 @@ package dev.skomlach.biometric.compat.utils
 import android.Manifest
 import android.annotation.SuppressLint
 import android.annotation.TargetApi
-import android.content.Context
 import android.hardware.SensorPrivacyManager
-import android.hardware.camera2.CameraCharacteristics
-import android.hardware.camera2.CameraManager
 import android.os.Build
 import android.os.Process
 import androidx.core.app.AppOpsManagerCompat
@@ -33,7 +30,6 @@ import dev.skomlach.biometric.compat.impl.permissions.SensorBlockedFallbackFragm
 
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
 import dev.skomlach.common.contextprovider.AndroidContext
-import dev.skomlach.common.misc.ExecutorHelper
 import dev.skomlach.common.misc.Utils
 import dev.skomlach.common.permissions.AppOpCompatConstants
 import dev.skomlach.common.permissions.PermissionUtils
@@ -44,133 +40,43 @@ import java.util.concurrent.atomic.AtomicLong
 object SensorPrivacyCheck {
     const val CHECK_TIMEOUT = 5_000L
     private val appContext = AndroidContext.appContext
-    private var isCameraInUseTime = AtomicLong(0)
-    private var isCameraInUse = AtomicBoolean(false)
 
     //Workaround that allow do not spam the user
     private var isUiRequested = AtomicBoolean(false)
     private var lastCheckedTime = AtomicLong(0)
     private var lastKnownState = AtomicBoolean(false)
-    fun isCameraInUse(): Boolean {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            if (System.currentTimeMillis() - isCameraInUseTime.get() <= CHECK_TIMEOUT) {
-                return isCameraInUse.get()
-            }
-            val ts = System.currentTimeMillis()
-            val delay =
-                appContext.resources.getInteger(android.R.integer.config_longAnimTime)
-                    .toLong()
-            val isDone = AtomicBoolean(false)
-            //Fix for `Non-fatal Exception: java.lang.IllegalArgumentException: No handler given, and current thread has no looper!`
-            ExecutorHelper.startOnBackground {
-                try {
 
-                    val cameraManager =
-                        appContext.getSystemService(Context.CAMERA_SERVICE) as CameraManager
-                    cameraManager.registerAvailabilityCallback(
-                        ExecutorHelper.backgroundExecutor,
-                        getCameraCallback(cameraManager, isDone)
-                    )
-
-                } catch (e: Throwable) {
-                    BiometricLoggerImpl.e(e)
-                }
-            }
-            while (!isDone.get() && System.currentTimeMillis() - ts <= delay) {
-                try {
-                    Thread.sleep(20)
-                } catch (ignore: InterruptedException) {
-                }
+    init {
+        CameraAvailabilityTracker.addListener(object :
+            CameraAvailabilityTracker.CameraStateListener {
+            override fun onCameraStateChanged() {
+                //Drop the cached result, so the next check will use actual state
+                lastCheckedTime.set(0)
             }
-        }
-        isCameraInUseTime.set(System.currentTimeMillis())
-        return isCameraInUse.get()
+        })
     }
 
-
-    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
-    private fun getCameraCallback(
-        cameraManager: CameraManager?,
-        isDone: AtomicBoolean
-    ): CameraManager.AvailabilityCallback {
-        return object : CameraManager.AvailabilityCallback() {
-            init {
-                ExecutorHelper.startOnBackground(
-                    {
-                        try {
-                            cameraManager?.unregisterAvailabilityCallback(this)
-                        } catch (e: Throwable) {
-                            BiometricLoggerImpl.e(e)
-                        } finally {
-                            isDone.set(true)
-                        }
-                    },
-                    appContext.resources.getInteger(android.R.integer.config_longAnimTime)
-                        .toLong()
-                )
-            }
-
-            private fun unregisterListener() {
-                //Fix for `Non-fatal Exception: java.lang.IllegalArgumentException: No handler given, and current thread has no looper!`
-                ExecutorHelper.startOnBackground {
-                    try {
-                        cameraManager?.unregisterAvailabilityCallback(this)
-                    } catch (e: Throwable) {
-                        BiometricLoggerImpl.e(e)
-                    } finally {
-                        isDone.set(true)
-                    }
-                }
-            }
-
-            override fun onCameraAvailable(cameraId: String) {
-                try {
-                    super.onCameraAvailable(cameraId)
-                    cameraManager?.getCameraCharacteristics(cameraId)?.let {
-                        if (it.get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_FRONT) {
-                            try {
-                                isCameraInUse.set(false)
-                            } finally {
-                                unregisterListener()
-                            }
-                        }
-                    }
-                } catch (e: Throwable) {
-                    //Caused by android.hardware.camera2.CameraAccessException: CAMERA_DISCONNECTED (2): Camera service is currently unavailable
-//                    if (e is CameraAccessException &&
-//                        e.message?.contains("CAMERA_DISCONNECTED ($cameraId): Camera service is currently unavailable") == true &&
-//                        cameraId == facingCamera
-//                    ) {
-//                        isCameraInUse = true
-//                    } else
-                    BiometricLoggerImpl.e(e)
-                }
+    //Unknown until the first availability callbacks arrive; wait for them (at most
+    //config_longAnimTime), the same way as the one-shot callback did before
+    fun isCameraInUse(): Boolean {
+        CameraAvailabilityTracker.isFrontCameraInUse?.let {
+            return it
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+            return false
+        val ts = System.currentTimeMillis()
+        val delay =
+            appContext.resources.getInteger(android.R.integer.config_longAnimTime).toLong()
+        while (System.currentTimeMillis() - ts <= delay) {
+            try {
+                Thread.sleep(20)
+            } catch (ignore: InterruptedException) {
             }
-
-            override fun onCameraUnavailable(cameraId: String) {
-                try {
-                    super.onCameraUnavailable(cameraId)
-                    cameraManager?.getCameraCharacteristics(cameraId)?.let {
-                        if (it.get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_FRONT) {
-                            try {
-                                isCameraInUse.set(true)
-                            } finally {
-                                unregisterListener()
-                            }
-                        }
-                    }
-                } catch (e: Throwable) {
-                    //Caused by android.hardware.camera2.CameraAccessException: CAMERA_DISCONNECTED (2): Camera service is currently unavailable
-//                    if (e is CameraAccessException &&
-//                        e.message?.contains("CAMERA_DISCONNECTED ($cameraId): Camera service is currently unavailable") == true &&
-//                        cameraId == facingCamera
-//                    ) {
-//                        isCameraInUse = true
-//                    } else
-                    BiometricLoggerImpl.e(e)
-                }
+            CameraAvailabilityTracker.isFrontCameraInUse?.let {
+                return it
             }
         }
+        return false
     }
 
     //Android 12 stuff
@@ -209,6 +115,10 @@ object SensorPrivacyCheck {
                 appContext.getSystemService(SensorPrivacyManager::class.java)
             if (sensorPrivacyManager?.supportsSensorToggle(sensor) == true) {
                 try {
+                    val knownState = if (sensor == SensorPrivacyManager.Sensors.CAMERA)
+                        CameraAvailabilityTracker.isCameraPrivacyEnabled else null
+                    if (knownState != null)
+                        return onPrivacyStateResolved(sensor, knownState)
                     val permissionToOp: String =
                         AppOpCompatConstants.getAppOpFromPermission(
                             if (sensor == SensorPrivacyManager.Sensors.CAMERA)
@@ -230,17 +140,10 @@ object SensorPrivacyCheck {
                                 appContext.packageName
                             ) else AppOpsManagerCompat.MODE_IGNORED
                     }
-                    return (noteOp != AppOpsManagerCompat.MODE_ALLOWED).also {
-                        lastKnownState.set(it)
-                        lastCheckedTime.set(System.currentTimeMillis())
-                        if (it) {
-                            isUiRequested.set(true)
-                            if (sensor == SensorPrivacyManager.Sensors.CAMERA)
-                                SensorBlockedFallbackFragment.askForCameraUnblock()
-                            else
-                                SensorBlockedFallbackFragment.askForMicUnblock()
-                        }
-                    }
+                    val isBlocked = noteOp != AppOpsManagerCompat.MODE_ALLOWED
+                    if (sensor == SensorPrivacyManager.Sensors.CAMERA)
+                        CameraAvailabilityTracker.updateCameraPrivacyState(isBlocked)
+                    return onPrivacyStateResolved(sensor, isBlocked)
                 } catch (e: Throwable) {
                     BiometricLoggerImpl.e(e)
                 }
@@ -251,5 +154,17 @@ object SensorPrivacyCheck {
         return false
     }
 
-
+    @TargetApi(Build.VERSION_CODES.S)
+    private fun onPrivacyStateResolved(sensor: Int, isBlocked: Boolean): Boolean {
+        lastKnownState.set(isBlocked)
+        lastCheckedTime.set(System.currentTimeMillis())
+        if (isBlocked) {
+            isUiRequested.set(true)
+            if (sensor == SensorPrivacyManager.Sensors.CAMERA)
+                SensorBlockedFallbackFragment.askForCameraUnblock()
+            else
+                SensorBlockedFallbackFragment.askForMicUnblock()
+        }
+        return isBlocked
+    }
 }
\ No newline at end of file
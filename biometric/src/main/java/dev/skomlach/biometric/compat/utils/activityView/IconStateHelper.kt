@@ -18,46 +18,44 @@
  */
 package dev.skomlach.biometric.compat.utils.activityView
 
+import android.view.Choreographer
 import dev.skomlach.biometric.compat.BiometricType
 import dev.skomlach.common.misc.ExecutorHelper
-import java.util.*
 
 object IconStateHelper {
-    private val iconsTasks = Collections.synchronizedMap(HashMap<BiometricType?, Runnable>())
-    private val listeners = Collections.synchronizedSet(HashSet<IconStateListener>())
-    fun registerListener(stateListener: IconStateListener) {
-        listeners.add(stateListener)
+    private val stateMachine = IconStateMachine(object : IconStateMachine.Scheduler {
+        override fun postFrame(task: Runnable) {
+            ExecutorHelper.handler.post {
+                Choreographer.getInstance().postFrameCallback { task.run() }
+            }
+        }
+
+        override fun postDelayed(task: Runnable, delay: Long) {
+            ExecutorHelper.handler.postDelayed(task, delay)
+        }
+
+        override fun removeCallbacks(task: Runnable) {
+            ExecutorHelper.handler.removeCallbacks(task)
+        }
+    })
+
+    fun registerListener(
+        stateListener: IconStateListener,
+        types: Collection<BiometricType?>? = null
+    ) {
+        stateMachine.registerListener(stateListener, types)
     }
 
     fun unregisterListener(stateListener: IconStateListener) {
-        listeners.remove(stateListener)
+        stateMachine.unregisterListener(stateListener)
     }
 
     fun errorType(type: BiometricType?) {
-        ExecutorHelper.post {
-            for (stateListener in listeners) {
-                stateListener.onError(type)
-            }
-            var task = iconsTasks[type]
-            task?.let { ExecutorHelper.removeCallbacks(it) }
-            task = object : Runnable {
-                override fun run() {
-                    ExecutorHelper.removeCallbacks(this)
-                    for (stateListener in listeners) {
-                        stateListener.reset(type)
-                    }
-                }
-            }
-            ExecutorHelper.postDelayed(task, 2000)
-        }
+        stateMachine.onEvent(type, IconStateMachine.State.ERROR)
     }
 
     fun successType(type: BiometricType?) {
-        ExecutorHelper.post {
-            for (stateListener in listeners) {
-                stateListener.onSuccess(type)
-            }
-        }
+        stateMachine.onEvent(type, IconStateMachine.State.SUCCESS)
     }
 
     interface IconStateListener {
@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.utils.activityView
+
+import dev.skomlach.biometric.compat.BiometricType
+import java.util.concurrent.CopyOnWriteArraySet
+
+/**
+ * Coalesces the icon state events: all events received for the biometric type within one frame
+ * result in at most one transition (the last event wins), and a transition into the state that
+ * is already shown is skipped, so the running animation is not restarted.
+ *
+ * Has no Android dependencies; the frame and delay timing is provided by [Scheduler].
+ */
+class IconStateMachine(
+    private val scheduler: Scheduler,
+    private val resetDelay: Long = 2000L
+) {
+    enum class State {
+        WAITING, ERROR, SUCCESS
+    }
+
+    interface Scheduler {
+        fun postFrame(task: Runnable)
+        fun postDelayed(task: Runnable, delay: Long)
+        fun removeCallbacks(task: Runnable)
+    }
+
+    private val listeners = CopyOnWriteArraySet<IconStateHelper.IconStateListener>()
+    private val shownStates = HashMap<BiometricType?, State>()
+    private val pendingStates = LinkedHashMap<BiometricType?, State>()
+
+    //One reset task per type, reused for every error
+    private val resetTasks = HashMap<BiometricType?, Runnable>()
+    private var isFrameScheduled = false
+    private val frameTask = Runnable { onFrame() }
+
+    var transitionsCount = 0L
+        private set
+
+    /**
+     * @param types the types shown by the listener; `null` if unknown (all types)
+     */
+    fun registerListener(
+        listener: IconStateHelper.IconStateListener,
+        types: Collection<BiometricType?>? = null
+    ) {
+        synchronized(this) {
+            //new listener starts from the default state; other types keep their shown state
+            if (types == null)
+                shownStates.clear()
+            else
+                for (type in types)
+                    shownStates.remove(type)
+        }
+        listeners.add(listener)
+    }
+
+    fun unregisterListener(listener: IconStateHelper.IconStateListener) {
+        listeners.remove(listener)
+    }
+
+    fun onEvent(type: BiometricType?, state: State) {
+        synchronized(this) {
+            pendingStates[type] = state
+            if (isFrameScheduled)
+                return
+            isFrameScheduled = true
+        }
+        scheduler.postFrame(frameTask)
+    }
+
+    private fun onFrame() {
+        val transitions = ArrayList<Pair<BiometricType?, State>>()
+        synchronized(this) {
+            isFrameScheduled = false
+            for ((type, state) in pendingStates) {
+                if (shownStates[type] != state) {
+                    shownStates[type] = state
+                    transitions.add(Pair(type, state))
+                }
+                if (state == State.ERROR) {
+                    val resetTask = resetTasks.getOrPut(type) {
+                        Runnable { onEvent(type, State.WAITING) }
+                    }
+                    scheduler.removeCallbacks(resetTask)
+                    scheduler.postDelayed(resetTask, resetDelay)
+                }
+            }
+            pendingStates.clear()
+            transitionsCount += transitions.size
+        }
+        for ((type, state) in transitions) {
+            for (listener in listeners) {
+                when (state) {
+                    State.ERROR -> listener.onError(type)
+                    State.SUCCESS -> listener.onSuccess(type)
+                    State.WAITING -> listener.reset(type)
+                }
+            }
+        }
+    }
+}
@@ -207,7 +207,7 @@ class WindowForegroundBlurring(
             updateBiometricIconsLayout()
 
             updateBackground()
-            IconStateHelper.registerListener(this)
+            IconStateHelper.registerListener(this, compatBuilder.getAllAvailableTypes())
             parentView.addOnAttachStateChangeListener(attachStateChangeListener)
             parentView.viewTreeObserver.addOnPreDrawListener(onDrawListener)
         } catch (e: Throwable) {
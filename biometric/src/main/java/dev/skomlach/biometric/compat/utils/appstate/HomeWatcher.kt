@@ -18,34 +18,32 @@
  */
 package dev.skomlach.biometric.compat.utils.appstate
 
-import android.content.BroadcastReceiver
-import android.content.Context
 import android.content.Intent
-import android.content.IntentFilter
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
-import dev.skomlach.common.contextprovider.AndroidContext
-import dev.skomlach.common.misc.BroadcastTools.registerGlobalBroadcastIntent
-import dev.skomlach.common.misc.BroadcastTools.unregisterGlobalBroadcastIntent
+import dev.skomlach.common.misc.BroadcastHub
 
 class HomeWatcher(private val mListener: OnHomePressedListener) {
-    private val mFilter: IntentFilter = IntentFilter()
-    private val mReceiver = InnerReceiver()
-    private val appContext = AndroidContext.appContext
-
-    init {
+    companion object {
         //Deprecated starts from API 31
-        mFilter.addAction(Intent.ACTION_CLOSE_SYSTEM_DIALOGS)
-        mFilter.addAction(Intent.ACTION_SCREEN_ON)
-        mFilter.addAction(Intent.ACTION_SCREEN_OFF)
+        private val ACTIONS = listOf(
+            Intent.ACTION_CLOSE_SYSTEM_DIALOGS,
+            Intent.ACTION_SCREEN_ON,
+            Intent.ACTION_SCREEN_OFF
+        )
+        private const val SYSTEM_DIALOG_REASON_KEY = "reason"
+        private const val SYSTEM_DIALOG_REASON_GLOBAL_ACTIONS = "globalactions"
+        private const val SYSTEM_DIALOG_REASON_RECENT_APPS = "recentapps"
+        private const val SYSTEM_DIALOG_REASON_HOME_KEY = "homekey"
+    }
+
+    private val subscriber = BroadcastHub.Subscriber { intent ->
+        onReceive(intent)
     }
 
     fun startWatch(): Runnable {
         return try {
             stopWatch()
-            registerGlobalBroadcastIntent(appContext, mReceiver, mFilter)
-            Runnable {
-                stopWatch()
-            }
+            BroadcastHub.subscribe(ACTIONS, subscriber)
         } catch (e: Throwable) {
             BiometricLoggerImpl.e(e)
             Runnable { }
@@ -55,7 +53,7 @@ class HomeWatcher(private val mListener: OnHomePressedListener) {
 
     private fun stopWatch() {
         try {
-            unregisterGlobalBroadcastIntent(appContext, mReceiver)
+            BroadcastHub.unsubscribe(ACTIONS, subscriber)
         } catch (ignore: Throwable) {
 
         }
@@ -67,30 +65,23 @@ class HomeWatcher(private val mListener: OnHomePressedListener) {
         fun onPowerPressed()
     }
 
-    private inner class InnerReceiver : BroadcastReceiver() {
-        val SYSTEM_DIALOG_REASON_KEY = "reason"
-        val SYSTEM_DIALOG_REASON_GLOBAL_ACTIONS = "globalactions"
-        val SYSTEM_DIALOG_REASON_RECENT_APPS = "recentapps"
-        val SYSTEM_DIALOG_REASON_HOME_KEY = "homekey"
-        val SYSTEM_DIALOG_REASON_DREAM = "dream"
-        override fun onReceive(context: Context, intent: Intent) {
-            try {
-                val action = intent.action
-                if (Intent.ACTION_CLOSE_SYSTEM_DIALOGS == action) {
-                    val reason = intent.getStringExtra(SYSTEM_DIALOG_REASON_KEY)
-                    if (SYSTEM_DIALOG_REASON_GLOBAL_ACTIONS != reason) {
-                        if (SYSTEM_DIALOG_REASON_HOME_KEY == reason) {
-                            mListener.onHomePressed()
-                        } else if (SYSTEM_DIALOG_REASON_RECENT_APPS == reason) {
-                            mListener.onRecentAppPressed()
-                        }
-
+    private fun onReceive(intent: Intent) {
+        try {
+            val action = intent.action
+            if (Intent.ACTION_CLOSE_SYSTEM_DIALOGS == action) {
+                val reason = intent.getStringExtra(SYSTEM_DIALOG_REASON_KEY)
+                if (SYSTEM_DIALOG_REASON_GLOBAL_ACTIONS != reason) {
+                    if (SYSTEM_DIALOG_REASON_HOME_KEY == reason) {
+                        mListener.onHomePressed()
+                    } else if (SYSTEM_DIALOG_REASON_RECENT_APPS == reason) {
+                        mListener.onRecentAppPressed()
                     }
-                } else if (Intent.ACTION_SCREEN_OFF == action || Intent.ACTION_SCREEN_ON == action) {
-                    mListener.onPowerPressed()
+
                 }
-            } catch (e: Throwable) {
+            } else if (Intent.ACTION_SCREEN_OFF == action || Intent.ACTION_SCREEN_ON == action) {
+                mListener.onPowerPressed()
             }
+        } catch (e: Throwable) {
         }
     }
 
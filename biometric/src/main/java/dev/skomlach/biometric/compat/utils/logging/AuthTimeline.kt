@@ -0,0 +1,157 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.utils.logging
+
+import java.util.Collections
+
+enum class AuthPhase {
+    READINESS_WAIT,
+    TRUNCATION_CHECK,
+    IMPL_SELECTION,
+    CRYPTO_OBJECT_CREATION,
+    MODULE_DISPATCH,
+    DIALOG_SHOW
+}
+
+enum class AuthOutcome {
+    SUCCEEDED,
+    FAILED,
+    CANCELED
+}
+
+/**
+ * Receives the timeline of each finished authentication session.
+ */
+interface AuthTimelineListener {
+    fun onTimeline(report: AuthTimelineReport)
+}
+
+/**
+ * Optional mirror of the phases into the platform tracing (systrace/perfetto).
+ */
+interface AuthTraceSink {
+    fun beginSection(name: String, cookie: Int)
+    fun endSection(name: String, cookie: Int)
+}
+
+class AuthPhaseRecord(
+    val phase: AuthPhase,
+    val detail: String?,
+    val startNanos: Long,
+    val endNanos: Long
+) {
+    val durationNanos: Long
+        get() = endNanos - startNanos
+
+    override fun toString(): String {
+        return "$phase${if (detail == null) "" else "[$detail]"}=${durationNanos / 1_000_000.0}ms"
+    }
+}
+
+class AuthTimelineReport(
+    val sessionId: Int,
+    val startNanos: Long,
+    val phases: List<AuthPhaseRecord>,
+    val uiOpenedNanos: Long?,
+    val resultNanos: Long,
+    val outcome: AuthOutcome
+) {
+    val promptToUiNanos: Long?
+        get() = uiOpenedNanos?.let { it - startNanos }
+    val promptToResultNanos: Long
+        get() = resultNanos - startNanos
+
+    //Phase may be recorded more than once (e.g. crypto object created for each module)
+    fun totalNanos(phase: AuthPhase): Long {
+        return phases.filter { it.phase == phase }.sumOf { it.durationNanos }
+    }
+
+    override fun toString(): String {
+        return "AuthTimelineReport(session=$sessionId, outcome=$outcome, promptToUi=${
+            promptToUiNanos?.let { it / 1_000_000.0 }
+        }ms, promptToResult=${promptToResultNanos / 1_000_000.0}ms, phases=$phases)"
+    }
+}
+
+/**
+ * Typed timeline of the single authentication session.
+ */
+class AuthTimeline(
+    val sessionId: Int,
+    private val traceSink: AuthTraceSink? = null,
+    private val clock: () -> Long = { System.nanoTime() }
+) {
+    private val startNanos = clock.invoke()
+    private val records = Collections.synchronizedList(ArrayList<AuthPhaseRecord>())
+
+    @Volatile
+    private var uiOpenedNanos: Long? = null
+
+    @Volatile
+    var isFinished = false
+        private set
+
+    fun begin(phase: AuthPhase, detail: String? = null): Span {
+        return Span(phase, detail)
+    }
+
+    fun markUiOpened() {
+        if (uiOpenedNanos == null)
+            uiOpenedNanos = clock.invoke()
+    }
+
+    fun finish(outcome: AuthOutcome): AuthTimelineReport? {
+        synchronized(this) {
+            if (isFinished)
+                return null
+            isFinished = true
+        }
+        return AuthTimelineReport(
+            sessionId,
+            startNanos,
+            records.toList().sortedBy { it.startNanos },
+            uiOpenedNanos,
+            clock.invoke(),
+            outcome
+        )
+    }
+
+    inner class Span internal constructor(val phase: AuthPhase, val detail: String?) {
+        private val startNanos = clock.invoke()
+        private val cookie = sessionId * 31 + phase.ordinal
+        private val sectionName = "BiometricPromptCompat.${phase.name}"
+        private var isEnded = false
+
+        init {
+            traceSink?.beginSection(sectionName, cookie)
+        }
+
+        fun end() {
+            synchronized(this) {
+                if (isEnded)
+                    return
+                isEnded = true
+            }
+            traceSink?.endSection(sectionName, cookie)
+            if (!isFinished)
+                records.add(AuthPhaseRecord(phase, detail, startNanos, clock.invoke()))
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.utils.logging
+
+import androidx.core.os.TraceCompat
+import dev.skomlach.common.misc.ExecutorHelper
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Holds the timeline of the authentication flow in progress.
+ * Only one flow may be active at a time (see BiometricPromptCompat.authFlowInProgress),
+ * so engine code can attach its phases to the [current] session without passing it around.
+ */
+object AuthTimelineTracer {
+    private val sessionCounter = AtomicInteger(0)
+    private val platformTraceSink = object : AuthTraceSink {
+        override fun beginSection(name: String, cookie: Int) {
+            TraceCompat.beginAsyncSection(name, cookie)
+        }
+
+        override fun endSection(name: String, cookie: Int) {
+            TraceCompat.endAsyncSection(name, cookie)
+        }
+    }
+
+    @Volatile
+    var listener: AuthTimelineListener? = null
+
+    @Volatile
+    var current: AuthTimeline? = null
+        private set
+
+    fun startSession(): AuthTimeline? {
+        val isTraceEnabled = try {
+            TraceCompat.isEnabled()
+        } catch (ignore: Throwable) {
+            false
+        }
+        if (listener == null && !isTraceEnabled) {
+            current = null
+            return null
+        }
+        return AuthTimeline(
+            sessionCounter.incrementAndGet(),
+            if (isTraceEnabled) platformTraceSink else null
+        ).also {
+            current = it
+        }
+    }
+
+    inline fun <T> trace(phase: AuthPhase, detail: String? = null, block: () -> T): T {
+        val span = current?.begin(phase, detail) ?: return block()
+        try {
+            return block()
+        } finally {
+            span.end()
+        }
+    }
+
+    fun finish(timeline: AuthTimeline?, outcome: AuthOutcome) {
+        val report = timeline?.finish(outcome) ?: return
+        if (current === timeline)
+            current = null
+        BiometricLoggerImpl.d("AuthTimelineTracer $report")
+        listener?.let {
+            ExecutorHelper.post {
+                try {
+                    it.onTimeline(report)
+                } catch (e: Throwable) {
+                    BiometricLoggerImpl.e(e)
+                }
+            }
+        }
+    }
+}
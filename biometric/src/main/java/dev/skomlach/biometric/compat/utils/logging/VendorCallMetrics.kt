@@ -0,0 +1,137 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.utils.logging
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Latency histograms for the reflective/Binder calls made by the vendor biometric modules.
+ *
+ * Disabled by default; while disabled [measure] is a plain call of the block.
+ */
+object VendorCallMetrics {
+    //Bucket N holds calls that took [2^N, 2^(N+1)) microseconds; last bucket holds everything above
+    const val BUCKETS_COUNT = 24
+
+    @Volatile
+    @JvmStatic
+    var enabled = false
+
+    private val records = ConcurrentHashMap<String, Record>()
+
+    inline fun <T> measure(module: String, method: String, block: () -> T): T {
+        if (!enabled)
+            return block()
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            record(module, method, System.nanoTime() - start)
+        }
+    }
+
+    fun record(module: String, method: String, durationNanos: Long) {
+        val key = "$module#$method"
+        val record = records[key] ?: Record(module, method).let {
+            records.putIfAbsent(key, it) ?: it
+        }
+        record.add(durationNanos)
+    }
+
+    @JvmStatic
+    fun snapshot(): List<MethodStats> {
+        return records.values.map {
+            it.toStats()
+        }.sortedWith(compareBy({ it.module }, { it.method }))
+    }
+
+    @JvmStatic
+    fun reset() {
+        records.clear()
+    }
+
+    private class Record(val module: String, val method: String) {
+        private val count = AtomicLong(0)
+        private val totalNanos = AtomicLong(0)
+        private val maxNanos = AtomicLong(0)
+        private val buckets = AtomicLongArray(BUCKETS_COUNT)
+
+        fun add(durationNanos: Long) {
+            count.incrementAndGet()
+            totalNanos.addAndGet(durationNanos)
+            var max = maxNanos.get()
+            while (durationNanos > max && !maxNanos.compareAndSet(max, durationNanos)) {
+                max = maxNanos.get()
+            }
+            val micros = TimeUnit.NANOSECONDS.toMicros(durationNanos)
+            val bucket = if (micros <= 0) 0 else 63 - java.lang.Long.numberOfLeadingZeros(micros)
+            buckets.incrementAndGet(bucket.coerceAtMost(BUCKETS_COUNT - 1))
+        }
+
+        fun toStats(): MethodStats {
+            return MethodStats(
+                module,
+                method,
+                count.get(),
+                totalNanos.get(),
+                maxNanos.get(),
+                LongArray(BUCKETS_COUNT) { buckets.get(it) })
+        }
+    }
+
+    class MethodStats(
+        val module: String,
+        val method: String,
+        val count: Long,
+        val totalNanos: Long,
+        val maxNanos: Long,
+        val buckets: LongArray
+    ) {
+        val averageMillis: Double
+            get() = if (count == 0L) 0.0 else totalNanos / count / 1_000_000.0
+        val maxMillis: Double
+            get() = maxNanos / 1_000_000.0
+
+        /**
+         * @return upper bound (in ms) of the histogram bucket that contains requested percentile
+         */
+        fun percentileMillis(percentile: Double): Double {
+            if (count == 0L)
+                return 0.0
+            val threshold = Math.ceil(count * percentile.coerceIn(0.0, 1.0)).toLong()
+            var seen = 0L
+            for (i in buckets.indices) {
+                seen += buckets[i]
+                if (seen >= threshold && seen > 0)
+                    return (1L shl (i + 1)) / 1000.0
+            }
+            return maxMillis
+        }
+
+        override fun toString(): String {
+            return "MethodStats(module=$module, method=$method, count=$count, avg=${averageMillis}ms, p95=${
+                percentileMillis(0.95)
+            }ms, max=${maxMillis}ms)"
+        }
+    }
+}
@@ -16,15 +16,17 @@
  *   See the License for the specific language governing permissions and
  *   limitations under the License.
  */
-
 package dev.skomlach.biometric.compat.utils.notification
 
 import android.annotation.SuppressLint
+import android.app.Notification
 import android.app.NotificationChannel
 import android.app.NotificationManager
 import android.app.PendingIntent
 import android.content.Intent
 import android.os.Build
+import android.os.Handler
+import android.os.HandlerThread
 import androidx.core.app.NotificationCompat
 import androidx.core.app.NotificationManagerCompat
 import dev.skomlach.biometric.compat.BiometricPromptCompat
@@ -32,24 +34,56 @@ import dev.skomlach.biometric.compat.BiometricType
 import dev.skomlach.biometric.compat.utils.logging.BiometricLoggerImpl
 import dev.skomlach.common.R
 import dev.skomlach.common.contextprovider.AndroidContext
-import dev.skomlach.common.misc.ExecutorHelper
 import dev.skomlach.common.misc.Utils
 import dev.skomlach.common.permissions.PermissionUtils
 import dev.skomlach.common.translate.LocalizationHelper
-import java.util.concurrent.atomic.AtomicReference
+import java.util.Locale
 
 
 object BiometricNotificationManager {
     private val appContext = AndroidContext.appContext
     const val CHANNEL_ID = "biometric"
-    private val notificationReference = AtomicReference<Runnable>(null)
 
     @SuppressLint("StaticFieldLeak")
     private val notificationCompat = NotificationManagerCompat.from(appContext)
 
+    //All notification work is serialized on its own looper, away from the prompt UI and
+    //the vendor callbacks thread
+    private val worker by lazy {
+        Handler(HandlerThread("BiometricNotifications").apply { start() }.looper)
+    }
+
+    //Locale the channel was checked for; channel name is localized
+    @Volatile
+    private var channelLocale: Locale? = null
+
+    //Accessed from the worker thread only
+    private val templates = HashMap<BiometricType, Pair<String, Notification>>()
+    private val postedIds = HashSet<Int>()
+    private var repostTask: Runnable? = null
+
+    //Notifications may be left from the previous process
+    private var isStaleCleanupRequired = true
+
+    private val deleteIntent: PendingIntent by lazy {
+        PendingIntent.getBroadcast(
+            appContext,
+            2,
+            Intent(),
+            //Targeting U+ (version 34 and above) disallows creating or retrieving
+            // a PendingIntent with FLAG_MUTABLE, an implicit Intent within and
+            // without FLAG_NO_CREATE and FLAG_ALLOW_UNSAFE_IMPLICIT_INTENT for
+            // security reasons. To retrieve an already existing PendingIntent,
+            // use FLAG_NO_CREATE, however, to create a new PendingIntent with an implicit Intent use FLAG_IMMUTABLE.
+            if (Utils.isAtLeastS) PendingIntent.FLAG_IMMUTABLE else PendingIntent.FLAG_CANCEL_CURRENT
+        )
+    }
 
     fun initNotificationsPreferences() {
         if (Build.VERSION.SDK_INT >= 26) {
+            val locale = AndroidContext.locale
+            if (channelLocale == locale)
+                return
             try {
                 var notificationChannel = notificationCompat.getNotificationChannel(CHANNEL_ID)
                 if (notificationChannel == null) {
@@ -61,6 +95,7 @@ object BiometricNotificationManager {
                     notificationChannel.setShowBadge(false)
                     notificationCompat.createNotificationChannel(notificationChannel)
                 }
+                channelLocale = locale
             } catch (e: Throwable) {
                 BiometricLoggerImpl.e(e)
             }
@@ -71,88 +106,106 @@ object BiometricNotificationManager {
         builder: BiometricPromptCompat.Builder
     ) {
         BiometricLoggerImpl.d("BiometricNotificationManager", "showNotification")
-        initNotificationsPreferences()
-        dismissAll()
-        val notify = Runnable {
-            try {
-                val clickIntent = Intent()
-                for (type in builder.getAllAvailableTypes()) {
-
-                    val notif = NotificationCompat.Builder(appContext, CHANNEL_ID)
-                        .setOnlyAlertOnce(true)
-//                        .setAutoCancel(false)
-//                        .setOngoing(true)
-                        .setAutoCancel(true)
-                        .setLocalOnly(true)
-                        .setContentTitle(builder.getTitle())
-                        .setContentText(builder.getDescription())
-                        .setDeleteIntent(
-                            PendingIntent.getBroadcast(
-                                appContext,
-                                2,
-                                clickIntent,
-                                //Targeting U+ (version 34 and above) disallows creating or retrieving
-                                // a PendingIntent with FLAG_MUTABLE, an implicit Intent within and
-                                // without FLAG_NO_CREATE and FLAG_ALLOW_UNSAFE_IMPLICIT_INTENT for
-                                // security reasons. To retrieve an already existing PendingIntent,
-                                // use FLAG_NO_CREATE, however, to create a new PendingIntent with an implicit Intent use FLAG_IMMUTABLE.
-                                if (Utils.isAtLeastS) PendingIntent.FLAG_IMMUTABLE else PendingIntent.FLAG_CANCEL_CURRENT
-                            )
-                        )
-                        .setSmallIcon(type.iconId).build()
-
-                    if (
-                        PermissionUtils.isAllowedNotificationsPermission &&
-                        PermissionUtils.isAllowedNotificationsChannelPermission(CHANNEL_ID)
-                    ) {
-                        notificationCompat.notify(type.hashCode(), notif)
-                        BiometricLoggerImpl.d("BiometricNotificationManager", "Notification posted")
-                    } else
-                        BiometricLoggerImpl.d(
-                            "BiometricNotificationManager",
-                            "Notifications not allowed"
-                        )
-                }
-            } catch (e: Throwable) {
-                BiometricLoggerImpl.e(e)
+        val types = builder.getAllAvailableTypes().toList()
+        val title = builder.getTitle()
+        val description = builder.getDescription()
+        //In multi-window mode the notification may be not shown at the first attempt
+        val repostDelay = if (builder.getMultiWindowSupport().isInMultiWindow)
+            appContext.resources.getInteger(android.R.integer.config_longAnimTime).toLong()
+        else
+            -1L
+        worker.post {
+            initNotificationsPreferences()
+            cancelPosted()
+            val notify = Runnable {
+                notify(types, title, description)
+            }
+            notify.run()
+            if (repostDelay >= 0) {
+                repostTask = notify
+                worker.postDelayed(notify, repostDelay)
             }
         }
+    }
 
-
-        ExecutorHelper.post(notify)
-
-        if (builder.getMultiWindowSupport().isInMultiWindow) {
-            notificationReference.set(notify)
-            val delay =
-                appContext.resources.getInteger(android.R.integer.config_longAnimTime).toLong()
-            ExecutorHelper.postDelayed(notify, delay)
+    fun dismissAll() {
+        worker.post {
+            cancelPosted()
         }
     }
 
-    fun dismissAll() {
-        notificationReference.get()?.let {
-            ExecutorHelper.removeCallbacks(it)
-            notificationReference.set(null)
+    fun dismiss(type: BiometricType?) {
+        val id = type?.hashCode() ?: return
+        worker.post {
+            try {
+                if (postedIds.remove(id))
+                    notificationCompat.cancel(id)
+            } catch (e: Throwable) {
+                BiometricLoggerImpl.e(e)
+            }
         }
+    }
 
+    private fun notify(
+        types: List<BiometricType>,
+        title: CharSequence?,
+        description: CharSequence?
+    ) {
         try {
-            for (type in BiometricType.values()) {
-                try {
-                    notificationCompat.cancel(type.hashCode())
-                } catch (e: Throwable) {
-                    BiometricLoggerImpl.e(e)
-                }
+            if (!PermissionUtils.isAllowedNotificationsPermission ||
+                !PermissionUtils.isAllowedNotificationsChannelPermission(CHANNEL_ID)
+            ) {
+                BiometricLoggerImpl.d("BiometricNotificationManager", "Notifications not allowed")
+                return
+            }
+            val contentKey = "$title|$description"
+            for (type in types) {
+                val notification = templates[type]?.takeIf { it.first == contentKey }?.second
+                    ?: buildNotification(type, title, description).also {
+                        templates[type] = Pair(contentKey, it)
+                    }
+                notificationCompat.notify(type.hashCode(), notification)
+                postedIds.add(type.hashCode())
+                BiometricLoggerImpl.d("BiometricNotificationManager", "Notification posted")
             }
         } catch (e: Throwable) {
             BiometricLoggerImpl.e(e)
         }
     }
 
-    fun dismiss(type: BiometricType?) {
-        try {
-            notificationCompat.cancel(type?.hashCode() ?: return)
-        } catch (e: Throwable) {
-            BiometricLoggerImpl.e(e)
+    private fun buildNotification(
+        type: BiometricType,
+        title: CharSequence?,
+        description: CharSequence?
+    ): Notification {
+        return NotificationCompat.Builder(appContext, CHANNEL_ID)
+            .setOnlyAlertOnce(true)
+            .setAutoCancel(true)
+            .setLocalOnly(true)
+            .setContentTitle(title)
+            .setContentText(description)
+            .setDeleteIntent(deleteIntent)
+            .setSmallIcon(type.iconId).build()
+    }
+
+    private fun cancelPosted() {
+        repostTask?.let {
+            worker.removeCallbacks(it)
+            repostTask = null
+        }
+        if (isStaleCleanupRequired) {
+            isStaleCleanupRequired = false
+            for (type in BiometricType.values()) {
+                postedIds.add(type.hashCode())
+            }
+        }
+        for (id in postedIds) {
+            try {
+                notificationCompat.cancel(id)
+            } catch (e: Throwable) {
+                BiometricLoggerImpl.e(e)
+            }
         }
+        postedIds.clear()
     }
-}
\ No newline at end of file
+}
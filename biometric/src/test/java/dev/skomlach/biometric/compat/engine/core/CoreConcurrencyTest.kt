@@ -0,0 +1,156 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.engine.core
+
+import androidx.core.os.CancellationSignal
+import dev.skomlach.biometric.compat.BiometricCryptoObject
+import dev.skomlach.biometric.compat.engine.core.interfaces.AuthenticationListener
+import dev.skomlach.biometric.compat.engine.core.interfaces.BiometricModule
+import dev.skomlach.biometric.compat.engine.core.interfaces.RestartPredicate
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Stress test of the lock-free module registry and the per-module cancellation signals of [Core].
+ */
+class CoreConcurrencyTest {
+    companion object {
+        private const val THREADS = 8
+        private const val MODULES = 200
+        private const val ROUNDS = 500
+    }
+
+    private val executor = Executors.newFixedThreadPool(THREADS)
+
+    @Before
+    fun setUp() {
+        Core.cleanModules()
+    }
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+        Core.cancelAuthentication()
+        Core.cleanModules()
+    }
+
+    @Test
+    fun concurrentRegistrationLosesNoModules() {
+        val modules = List(MODULES) { FakeModule(it) }
+        val barrier = CyclicBarrier(THREADS)
+        val readerFailures = AtomicInteger(0)
+        runConcurrently { thread ->
+            barrier.await()
+            var hasRegistered = false
+            //every module is registered by two threads, so duplicates race with each other
+            for (index in modules.indices) {
+                if (index % (THREADS / 2) == thread % (THREADS / 2)) {
+                    Core.registerModule(modules[index])
+                    hasRegistered = true
+                }
+                //own registration must be visible to the readers right away
+                if ((hasRegistered && !Core.isHardwareDetected) || Core.isLockOut)
+                    readerFailures.incrementAndGet()
+            }
+        }
+        assertEquals(0, readerFailures.get())
+
+        //Core.cancelAuthentication() reaches only the registered modules
+        for (module in modules) {
+            Core.authenticate(null, module, null, null)
+        }
+        Core.cancelAuthentication()
+        for (module in modules) {
+            assertEquals("module ${module.tag()}", 1, module.signals.size)
+            assertTrue("module ${module.tag()} is not registered", module.signals[0].isCanceled)
+        }
+    }
+
+    @Test
+    fun concurrentAuthenticateLeavesOnlyOneActiveSignal() {
+        val module = FakeModule(1)
+        Core.registerModule(module)
+        val barrier = CyclicBarrier(THREADS)
+        runConcurrently { thread ->
+            barrier.await()
+            for (i in 0 until ROUNDS) {
+                if (thread == 0 && i % 10 == 0)
+                    Core.cancelAuthentication(module)
+                else
+                    Core.authenticate(null, module, null, null)
+            }
+        }
+        //every superseded request must be canceled, at most the last one may still be active
+        val active = module.signals.filter { !it.isCanceled }
+        assertTrue("active signals: ${active.size}", active.size <= 1)
+
+        Core.cancelAuthentication(module)
+        assertFalse(module.signals.any { !it.isCanceled })
+    }
+
+    private fun runConcurrently(task: (thread: Int) -> Unit) {
+        val done = CountDownLatch(THREADS)
+        val errors = Collections.synchronizedList(ArrayList<Throwable>())
+        for (thread in 0 until THREADS) {
+            executor.execute {
+                try {
+                    task.invoke(thread)
+                } catch (e: Throwable) {
+                    errors.add(e)
+                } finally {
+                    done.countDown()
+                }
+            }
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS))
+        assertTrue(errors.toString(), errors.isEmpty())
+    }
+
+    private class FakeModule(private val tag: Int) : BiometricModule {
+        val signals: MutableList<CancellationSignal> =
+            Collections.synchronizedList(ArrayList<CancellationSignal>())
+        override val isManagerAccessible: Boolean = true
+        override val isHardwarePresent: Boolean = true
+        override val isLockOut: Boolean = false
+        override val isUserAuthCanByUsedWithCrypto: Boolean = false
+        override val hasEnrolled: Boolean = true
+
+        override fun authenticate(
+            biometricCryptoObject: BiometricCryptoObject?,
+            cancellationSignal: CancellationSignal?,
+            listener: AuthenticationListener?,
+            restartPredicate: RestartPredicate?
+        ) {
+            cancellationSignal?.let { signals.add(it) }
+        }
+
+        override fun tag(): Int = tag
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.engine.core
+
+import dev.skomlach.biometric.compat.AuthenticationFailureReason
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+/**
+ * Replays restart storms on a virtual clock.
+ */
+class RestartSchedulerTest {
+    private val clock = VirtualClock()
+
+    private fun scheduler(
+        config: RestartScheduler.Config = RestartScheduler.Config(jitter = 0.0),
+        random: Random = Random(42)
+    ) = RestartScheduler(clock, config, { clock.now }, random)
+
+    @Test
+    fun backoffGrowsExponentiallyUpToMax() {
+        val scheduler = scheduler(
+            RestartScheduler.Config(
+                initialDelayMillis = 100,
+                multiplier = 2.0,
+                maxDelayMillis = 1000,
+                jitter = 0.0
+            )
+        )
+        assertEquals(
+            listOf(100L, 200L, 400L, 800L, 1000L, 1000L),
+            (1..6).map { scheduler.nextDelay(it) })
+    }
+
+    @Test
+    fun jitterStaysInBounds() {
+        val config = RestartScheduler.Config(
+            initialDelayMillis = 1000,
+            multiplier = 2.0,
+            maxDelayMillis = 8000,
+            jitter = 0.5
+        )
+        val scheduler = scheduler(config, Random(7))
+        for (attempt in 1..5) {
+            val backoff = scheduler(config.withoutJitter()).nextDelay(attempt)
+            val delays = (0 until 1000).map { scheduler.nextDelay(attempt) }
+            assertTrue(delays.all { it in (backoff / 2)..backoff })
+            //jitter actually spreads the restarts
+            assertTrue(delays.toSet().size > 1)
+        }
+    }
+
+    @Test
+    fun restartsRunAfterBackoffOnVirtualClock() {
+        val scheduler = scheduler(
+            RestartScheduler.Config(initialDelayMillis = 250, maxDelayMillis = 4000, jitter = 0.0)
+        )
+        val restartTimes = ArrayList<Long>()
+        //module restarts itself right after each failure: a restart storm
+        val restart = object : Runnable {
+            override fun run() {
+                restartTimes.add(clock.now)
+                if (scheduler.tryAcquire(MODULE))
+                    scheduler.schedule(MODULE, this)
+            }
+        }
+        assertTrue(scheduler.tryAcquire(MODULE))
+        scheduler.schedule(MODULE, restart)
+        clock.advanceBy(60_000)
+
+        //budget of the session is 8 restarts, each delayed twice longer than previous
+        assertEquals(listOf(250L, 750L, 1750L, 3750L, 7750L, 11750L, 15750L, 19750L), restartTimes)
+        assertEquals(8, scheduler.sessionRestarts)
+    }
+
+    @Test
+    fun sessionBudgetIsSpentAndResetBySession() {
+        val scheduler = scheduler(RestartScheduler.Config(sessionRestartBudget = 3))
+        repeat(3) {
+            assertTrue(scheduler.tryAcquire(it))
+        }
+        assertFalse(scheduler.tryAcquire(MODULE))
+
+        scheduler.startSession()
+        assertTrue(scheduler.tryAcquire(MODULE))
+    }
+
+    @Test
+    fun circuitOpensAfterHardwareErrorsAndClosesOnSuccess() {
+        val scheduler = scheduler(
+            RestartScheduler.Config(hardwareErrorThreshold = 3, circuitOpenMillis = 30_000)
+        )
+        scheduler.onFailure(MODULE, AuthenticationFailureReason.HARDWARE_UNAVAILABLE)
+        scheduler.onFailure(MODULE, AuthenticationFailureReason.SENSOR_FAILED)
+        assertFalse(scheduler.isCircuitOpen(MODULE))
+        scheduler.onFailure(MODULE, AuthenticationFailureReason.HARDWARE_UNAVAILABLE)
+        assertTrue(scheduler.isCircuitOpen(MODULE))
+        assertFalse(scheduler.tryAcquire(MODULE))
+        //other modules are not affected
+        assertTrue(scheduler.tryAcquire(OTHER_MODULE))
+
+        scheduler.onSuccess(MODULE)
+        assertFalse(scheduler.isCircuitOpen(MODULE))
+        assertTrue(scheduler.tryAcquire(MODULE))
+    }
+
+    @Test
+    fun circuitClosesAfterCooldown() {
+        val scheduler = scheduler(
+            RestartScheduler.Config(hardwareErrorThreshold = 3, circuitOpenMillis = 30_000)
+        )
+        repeat(3) {
+            scheduler.onFailure(MODULE, AuthenticationFailureReason.SENSOR_FAILED)
+        }
+        clock.advanceBy(29_999)
+        assertTrue(scheduler.isCircuitOpen(MODULE))
+        clock.advanceBy(1)
+        assertFalse(scheduler.isCircuitOpen(MODULE))
+    }
+
+    @Test
+    fun nonMatchResetsHardwareErrors() {
+        val scheduler = scheduler(RestartScheduler.Config(hardwareErrorThreshold = 3))
+        scheduler.onFailure(MODULE, AuthenticationFailureReason.HARDWARE_UNAVAILABLE)
+        scheduler.onFailure(MODULE, AuthenticationFailureReason.HARDWARE_UNAVAILABLE)
+        scheduler.onFailure(MODULE, AuthenticationFailureReason.AUTHENTICATION_FAILED)
+        scheduler.onFailure(MODULE, AuthenticationFailureReason.HARDWARE_UNAVAILABLE)
+        assertFalse(scheduler.isCircuitOpen(MODULE))
+    }
+
+    @Test
+    fun cancelDropsPendingRestart() {
+        val scheduler = scheduler()
+        var restarts = 0
+        assertTrue(scheduler.tryAcquire(MODULE))
+        scheduler.schedule(MODULE) { restarts++ }
+        scheduler.cancel(MODULE)
+        clock.advanceBy(60_000)
+        assertEquals(0, restarts)
+        assertEquals(0, clock.pendingCount)
+    }
+
+    @Test
+    fun startSessionDropsPendingRestarts() {
+        val scheduler = scheduler()
+        var restarts = 0
+        assertTrue(scheduler.tryAcquire(MODULE))
+        scheduler.schedule(MODULE) { restarts++ }
+        assertTrue(scheduler.tryAcquire(OTHER_MODULE))
+        scheduler.schedule(OTHER_MODULE) { restarts++ }
+        scheduler.startSession()
+        clock.advanceBy(60_000)
+        assertEquals(0, restarts)
+        assertEquals(0, scheduler.sessionRestarts)
+    }
+
+    @Test
+    fun newRestartReplacesPendingOne() {
+        val scheduler = scheduler()
+        val restarts = ArrayList<String>()
+        assertTrue(scheduler.tryAcquire(MODULE))
+        scheduler.schedule(MODULE) { restarts.add("first") }
+        assertTrue(scheduler.tryAcquire(MODULE))
+        scheduler.schedule(MODULE) { restarts.add("second") }
+        clock.advanceBy(60_000)
+        assertEquals(listOf("second"), restarts)
+    }
+
+    private fun RestartScheduler.Config.withoutJitter() = RestartScheduler.Config(
+        initialDelayMillis,
+        multiplier,
+        maxDelayMillis,
+        0.0,
+        sessionRestartBudget,
+        hardwareErrorThreshold,
+        circuitOpenMillis
+    )
+
+    /**
+     * Virtual time and the delayed tasks queue; time moves only by [advanceBy].
+     */
+    private class VirtualClock : RestartScheduler.Scheduler {
+        private class Task(val runnable: Runnable, val time: Long, val order: Long)
+
+        private val tasks = ArrayList<Task>()
+        private var counter = 0L
+        var now = 0L
+            private set
+        val pendingCount: Int
+            get() = tasks.size
+
+        override fun postDelayed(task: Runnable, delay: Long) {
+            tasks.add(Task(task, now + delay, counter++))
+        }
+
+        override fun removeCallbacks(task: Runnable) {
+            tasks.removeAll { it.runnable === task }
+        }
+
+        fun advanceBy(millis: Long) {
+            val target = now + millis
+            while (true) {
+                val next = tasks.filter { it.time <= target }
+                    .minWithOrNull(compareBy({ it.time }, { it.order })) ?: break
+                tasks.remove(next)
+                now = next.time
+                next.runnable.run()
+            }
+            now = target
+        }
+    }
+
+    companion object {
+        private const val MODULE = 1
+        private const val OTHER_MODULE = 2
+    }
+}
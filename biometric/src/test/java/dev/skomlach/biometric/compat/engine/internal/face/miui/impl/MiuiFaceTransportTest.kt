@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.engine.internal.face.miui.impl
+
+import android.os.Binder
+import android.os.Build
+import android.os.Parcel
+import dev.skomlach.biometric.compat.engine.internal.face.miui.impl.MiuiFaceTransport.Transaction
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * [MiuiFaceTransport] against an in-process Binder standing in for the MIUI face service.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [Build.VERSION_CODES.TIRAMISU])
+class MiuiFaceTransportTest {
+
+    /**
+     * Answers HAS_ENROLLED_FACES with the group id it received; every other call fails
+     * with a SecurityException, as the service does for unknown callers.
+     */
+    private class FakeFaceService(private val descriptor: String) : Binder() {
+        val codes = ArrayList<Int>()
+
+        override fun onTransact(code: Int, data: Parcel, reply: Parcel?, flags: Int): Boolean {
+            codes.add(code)
+            data.enforceInterface(descriptor)
+            if (code == MiuiFaceTransport.MIUI_FACE_2D.codeOf(Transaction.HAS_ENROLLED_FACES)) {
+                val groupId = data.readInt()
+                reply?.writeNoException()
+                reply?.writeInt(groupId)
+            } else {
+                reply?.writeException(SecurityException("denied"))
+            }
+            return true
+        }
+    }
+
+    private val table = MiuiFaceTransport.MIUI_FACE_2D
+    private val service = FakeFaceService(table.descriptor)
+    private var lookups = 0
+    private val transport = MiuiFaceTransport(table) {
+        lookups++
+        service
+    }
+
+    private fun hasEnrolled(groupId: Int): Int? {
+        return transport.transact(Transaction.HAS_ENROLLED_FACES, { request ->
+            request.writeInt(groupId)
+        }) { reply ->
+            reply.readInt()
+        }
+    }
+
+    @Test
+    fun callsUseTheVariantCodeAndDescriptor() {
+        assertEquals(7, hasEnrolled(7))
+        assertEquals(listOf(12), service.codes)
+    }
+
+    @Test
+    fun serviceIsResolvedOnceUntilInvalidated() {
+        hasEnrolled(1)
+        hasEnrolled(2)
+        assertTrue(transport.isServiceAvailable)
+        assertEquals(1, lookups)
+
+        transport.invalidate()
+        hasEnrolled(3)
+        assertEquals(2, lookups)
+    }
+
+    @Test
+    fun remoteErrorsArePropagated() {
+        try {
+            transport.transact(Transaction.CANCEL_AUTHENTICATE) { request ->
+                request.writeStrongBinder(Binder())
+            }
+            fail()
+        } catch (e: SecurityException) {
+            assertEquals(listOf(4), service.codes)
+        }
+        //the parcels of the failed call are recycled, the next call works
+        assertEquals(5, hasEnrolled(5))
+    }
+
+    @Test
+    fun missingTransactionOrServiceIsNotCalled() {
+        val partial = MiuiFaceTransport(
+            MiuiFaceTransport.TransactionTable(
+                table.serviceName,
+                table.descriptor,
+                mapOf(Transaction.AUTHENTICATE to 3)
+            )
+        ) { service }
+        assertNull(partial.transact(Transaction.HAS_ENROLLED_FACES, {}) { it.readInt() })
+        assertTrue(service.codes.isEmpty())
+
+        val absent = MiuiFaceTransport(table) { null }
+        assertFalse(absent.isServiceAvailable)
+        assertNull(absent.transact(Transaction.HAS_ENROLLED_FACES, {}) { it.readInt() })
+        assertFalse(absent.transact(Transaction.CANCEL_ENROLL) {})
+    }
+}
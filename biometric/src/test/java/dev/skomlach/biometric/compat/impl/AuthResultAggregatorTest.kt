@@ -0,0 +1,161 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.impl
+
+import dev.skomlach.biometric.compat.AuthenticationFailureReason
+import dev.skomlach.biometric.compat.AuthenticationResult
+import dev.skomlach.biometric.compat.BiometricConfirmation
+import dev.skomlach.biometric.compat.BiometricType
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Resolves the primary/secondary results on a virtual clock.
+ */
+class AuthResultAggregatorTest {
+    private val primary = BiometricType.BIOMETRIC_FINGERPRINT
+    private val secondary = BiometricType.BIOMETRIC_FACE
+    private val all = listOf(primary, secondary)
+    private var now = 10_000L
+
+    private fun aggregator(confirmation: BiometricConfirmation, timeout: Long = 1500L) =
+        AuthResultAggregator(confirmation, AuthResultAggregator.Config(timeout)) { now }
+
+    private fun success(type: BiometricType) =
+        AuthResult(AuthResult.AuthResultState.SUCCESS, AuthenticationResult(type))
+
+    private fun error(type: BiometricType, reason: AuthenticationFailureReason) =
+        AuthResult(AuthResult.AuthResultState.FATAL_ERROR, AuthenticationResult(type), reason)
+
+    @Test
+    fun deadlineExpiresOnlyTheSilentSensors() {
+        val aggregator = aggregator(BiometricConfirmation.ANY, 1500L)
+        aggregator.armDeadline(listOf(secondary, BiometricType.BIOMETRIC_IRIS))
+        assertEquals(1500L, aggregator.nextDeadlineDelay())
+
+        now += 1000
+        assertEquals(500L, aggregator.nextDeadlineDelay())
+        assertTrue(aggregator.takeExpired().isEmpty())
+        //responded in time, no longer waited for
+        aggregator.record(
+            BiometricType.BIOMETRIC_IRIS,
+            error(BiometricType.BIOMETRIC_IRIS, AuthenticationFailureReason.AUTHENTICATION_FAILED)
+        )
+
+        now += 600
+        assertEquals(0L, aggregator.nextDeadlineDelay())
+        assertEquals(listOf<BiometricType?>(secondary), aggregator.takeExpired())
+        assertNull(aggregator.nextDeadlineDelay())
+        assertTrue(aggregator.takeExpired().isEmpty())
+    }
+
+    @Test
+    fun deadlineIsNotArmedForReportedSensors() {
+        val aggregator = aggregator(BiometricConfirmation.ANY)
+        aggregator.record(secondary, success(secondary))
+        aggregator.armDeadline(listOf(secondary))
+        assertNull(aggregator.nextDeadlineDelay())
+    }
+
+    @Test
+    fun secondarySuccessBeforePrimaryResolvesAny() {
+        val aggregator = aggregator(BiometricConfirmation.ANY)
+        aggregator.armDeadline(listOf(secondary))
+        aggregator.record(secondary, success(secondary))
+
+        val outcome = aggregator.resolve(all)
+        assertNotNull(outcome)
+        assertTrue(outcome!!.isSucceeded)
+        assertEquals(setOf<BiometricType?>(secondary), outcome.success.keys)
+        assertNull(aggregator.nextDeadlineDelay())
+        //late primary result does not produce the second outcome
+        aggregator.record(primary, success(primary))
+        assertNull(aggregator.resolve(all))
+    }
+
+    @Test
+    fun secondarySuccessBeforePrimaryWaitsForAll() {
+        val aggregator = aggregator(BiometricConfirmation.ALL)
+        aggregator.record(secondary, success(secondary))
+        assertNull(aggregator.resolve(all))
+        assertFalse(aggregator.isResolved)
+        assertEquals(listOf<BiometricType?>(primary), aggregator.pending(all))
+
+        aggregator.record(primary, success(primary))
+        val outcome = aggregator.resolve(all)!!
+        assertEquals(setOf<BiometricType?>(primary, secondary), outcome.success.keys)
+    }
+
+    @Test
+    fun systemConfirmationSatisfiesAllWithSecondaryPending() {
+        val aggregator = aggregator(BiometricConfirmation.ALL)
+        aggregator.record(primary, success(primary))
+        assertNull(aggregator.resolve(all))
+        assertNotNull(aggregator.resolve(all, isSatisfiedExternally = true))
+    }
+
+    @Test
+    fun primaryErrorWaitsForPendingSecondary() {
+        val aggregator = aggregator(BiometricConfirmation.ANY, 1500L)
+        aggregator.armDeadline(listOf(secondary))
+        aggregator.record(primary, error(primary, AuthenticationFailureReason.LOCKED_OUT))
+        //secondary may still succeed
+        assertNull(aggregator.resolve(all))
+
+        now += 1500
+        for (type in aggregator.takeExpired())
+            aggregator.record(type, error(type!!, AuthenticationFailureReason.TIMEOUT))
+        val outcome = aggregator.resolve(all)!!
+        assertFalse(outcome.isSucceeded)
+        assertEquals(AuthenticationFailureReason.TIMEOUT, outcome.error?.failureReason)
+    }
+
+    @Test
+    fun primaryErrorThenSecondarySuccess() {
+        val aggregator = aggregator(BiometricConfirmation.ANY)
+        aggregator.armDeadline(listOf(secondary))
+        aggregator.record(primary, error(primary, AuthenticationFailureReason.HARDWARE_UNAVAILABLE))
+        assertNull(aggregator.resolve(all))
+
+        now += 100
+        aggregator.record(secondary, success(secondary))
+        val outcome = aggregator.resolve(all)!!
+        assertTrue(outcome.isSucceeded)
+        assertEquals(
+            AuthenticationFailureReason.HARDWARE_UNAVAILABLE,
+            outcome.error?.failureReason
+        )
+    }
+
+    @Test
+    fun resetStartsNewSession() {
+        val aggregator = aggregator(BiometricConfirmation.ANY)
+        aggregator.record(primary, success(primary))
+        assertNotNull(aggregator.resolve(all))
+        aggregator.reset()
+        assertFalse(aggregator.isResolved)
+        assertTrue(aggregator.results.isEmpty())
+        assertEquals(all, aggregator.pending(all))
+    }
+}
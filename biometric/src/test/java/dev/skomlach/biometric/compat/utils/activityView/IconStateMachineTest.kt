@@ -0,0 +1,170 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.utils.activityView
+
+import dev.skomlach.biometric.compat.BiometricType
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+/**
+ * Drives synthetic event storms through [IconStateMachine] with a manual frame clock.
+ */
+class IconStateMachineTest {
+    private val scheduler = ManualScheduler()
+    private val machine = IconStateMachine(scheduler, RESET_DELAY)
+    private val listener = RecordingListener()
+
+    init {
+        machine.registerListener(listener)
+    }
+
+    @Test
+    fun eventsWithinFrameResultInOneTransition() {
+        repeat(1000) {
+            machine.onEvent(BiometricType.BIOMETRIC_FACE, IconStateMachine.State.ERROR)
+            machine.onEvent(BiometricType.BIOMETRIC_FACE, IconStateMachine.State.SUCCESS)
+        }
+        assertEquals(1, scheduler.pendingFrames)
+        scheduler.frame()
+        assertEquals(1L, machine.transitionsCount)
+        assertEquals(listOf("onSuccess:BIOMETRIC_FACE"), listener.calls)
+    }
+
+    @Test
+    fun repeatedStateIsNotReplayed() {
+        repeat(100) {
+            machine.onEvent(BiometricType.BIOMETRIC_FINGERPRINT, IconStateMachine.State.SUCCESS)
+            scheduler.frame()
+        }
+        assertEquals(1L, machine.transitionsCount)
+    }
+
+    @Test
+    fun errorStormResetsOnceAfterLastError() {
+        //error every 100 ms for 10 seconds
+        repeat(100) {
+            machine.onEvent(BiometricType.BIOMETRIC_FACE, IconStateMachine.State.ERROR)
+            scheduler.frame()
+            scheduler.advanceBy(100)
+        }
+        assertEquals(1L, machine.transitionsCount)
+        scheduler.advanceBy(RESET_DELAY)
+        scheduler.frame()
+        assertEquals(2L, machine.transitionsCount)
+        assertEquals(
+            listOf("onError:BIOMETRIC_FACE", "reset:BIOMETRIC_FACE"),
+            listener.calls
+        )
+    }
+
+    @Test
+    fun randomStormIsBoundedByFrames() {
+        val random = Random(1)
+        val types = listOf(BiometricType.BIOMETRIC_FACE, BiometricType.BIOMETRIC_IRIS)
+        val states = IconStateMachine.State.values()
+        val frames = 500
+        repeat(frames) {
+            repeat(random.nextInt(50)) {
+                machine.onEvent(types[random.nextInt(types.size)], states[random.nextInt(states.size)])
+            }
+            scheduler.frame()
+            scheduler.advanceBy(16)
+        }
+        //at most one transition per type and frame, and each transition reached the listener
+        assertEquals(machine.transitionsCount, listener.calls.size.toLong())
+        assertTrue(machine.transitionsCount <= frames.toLong() * types.size)
+    }
+
+    @Test
+    fun newListenerResetsOnlyItsTypes() {
+        machine.onEvent(BiometricType.BIOMETRIC_FACE, IconStateMachine.State.SUCCESS)
+        machine.onEvent(BiometricType.BIOMETRIC_IRIS, IconStateMachine.State.SUCCESS)
+        scheduler.frame()
+        assertEquals(2L, machine.transitionsCount)
+
+        machine.registerListener(RecordingListener(), listOf(BiometricType.BIOMETRIC_IRIS))
+        machine.onEvent(BiometricType.BIOMETRIC_FACE, IconStateMachine.State.SUCCESS)
+        machine.onEvent(BiometricType.BIOMETRIC_IRIS, IconStateMachine.State.SUCCESS)
+        scheduler.frame()
+        //only the iris state is shown again
+        assertEquals(3L, machine.transitionsCount)
+    }
+
+    private class RecordingListener : IconStateHelper.IconStateListener {
+        val calls = ArrayList<String>()
+
+        override fun onError(type: BiometricType?) {
+            calls.add("onError:$type")
+        }
+
+        override fun onSuccess(type: BiometricType?) {
+            calls.add("onSuccess:$type")
+        }
+
+        override fun reset(type: BiometricType?) {
+            calls.add("reset:$type")
+        }
+    }
+
+    /**
+     * Frames are run only by [frame], delayed tasks only by [advanceBy].
+     */
+    private class ManualScheduler : IconStateMachine.Scheduler {
+        private val frameTasks = ArrayList<Runnable>()
+        private val delayedTasks = ArrayList<Pair<Long, Runnable>>()
+        private var now = 0L
+
+        val pendingFrames: Int
+            get() = frameTasks.size
+
+        override fun postFrame(task: Runnable) {
+            frameTasks.add(task)
+        }
+
+        override fun postDelayed(task: Runnable, delay: Long) {
+            delayedTasks.add(Pair(now + delay, task))
+        }
+
+        override fun removeCallbacks(task: Runnable) {
+            delayedTasks.removeAll { it.second === task }
+        }
+
+        fun frame() {
+            val tasks = ArrayList(frameTasks)
+            frameTasks.clear()
+            for (task in tasks)
+                task.run()
+        }
+
+        fun advanceBy(millis: Long) {
+            now += millis
+            val due = delayedTasks.filter { it.first <= now }.sortedBy { it.first }
+            delayedTasks.removeAll(due)
+            for ((_, task) in due)
+                task.run()
+        }
+    }
+
+    companion object {
+        private const val RESET_DELAY = 2000L
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.biometric.compat.utils.logging
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Drives [AuthTimeline] with a virtual nanosecond clock.
+ */
+class AuthTimelineTest {
+    private var now = 1_000L
+    private val sink = RecordingSink()
+
+    private fun timeline() = AuthTimeline(7, sink) { now }
+
+    @Test
+    fun phasesAreOrderedByStartAndKeepTheirDurations() {
+        val timeline = timeline()
+        now += 10
+        val readiness = timeline.begin(AuthPhase.READINESS_WAIT)
+        now += 1
+        val truncation = timeline.begin(AuthPhase.TRUNCATION_CHECK)
+        now += 5
+        //ended out of order; the report is still ordered by the start time
+        truncation.end()
+        now += 15
+        readiness.end()
+        now += 2
+        timeline.begin(AuthPhase.IMPL_SELECTION).end()
+        now += 3
+        val dispatch = timeline.begin(AuthPhase.MODULE_DISPATCH, "Module#1")
+        now += 40
+        dispatch.end()
+        now += 100
+        timeline.markUiOpened()
+        now += 1_000
+        val report = timeline.finish(AuthOutcome.SUCCEEDED)!!
+
+        assertEquals(7, report.sessionId)
+        assertEquals(AuthOutcome.SUCCEEDED, report.outcome)
+        assertEquals(
+            listOf(
+                AuthPhase.READINESS_WAIT,
+                AuthPhase.TRUNCATION_CHECK,
+                AuthPhase.IMPL_SELECTION,
+                AuthPhase.MODULE_DISPATCH
+            ),
+            report.phases.map { it.phase })
+        assertEquals(listOf(21L, 5L, 0L, 40L), report.phases.map { it.durationNanos })
+        assertEquals("Module#1", report.phases.last().detail)
+        assertEquals(176L, report.promptToUiNanos)
+        assertEquals(1_176L, report.promptToResultNanos)
+    }
+
+    @Test
+    fun repeatedPhaseIsSummed() {
+        val timeline = timeline()
+        for (i in 1..3) {
+            val span = timeline.begin(AuthPhase.CRYPTO_OBJECT_CREATION, "Module#$i")
+            now += i * 10L
+            span.end()
+        }
+        val report = timeline.finish(AuthOutcome.FAILED)!!
+        assertEquals(60L, report.totalNanos(AuthPhase.CRYPTO_OBJECT_CREATION))
+        assertEquals(0L, report.totalNanos(AuthPhase.DIALOG_SHOW))
+    }
+
+    @Test
+    fun finishIsReportedOnce() {
+        val timeline = timeline()
+        val span = timeline.begin(AuthPhase.DIALOG_SHOW)
+        now += 10
+        val report = timeline.finish(AuthOutcome.CANCELED)!!
+        assertTrue(timeline.isFinished)
+        assertNull(timeline.finish(AuthOutcome.FAILED))
+        //span ended after the finish is not recorded
+        span.end()
+        assertTrue(report.phases.isEmpty())
+        assertNull(report.promptToUiNanos)
+        assertEquals(AuthOutcome.CANCELED, report.outcome)
+    }
+
+    @Test
+    fun spanIsMirroredToTheTraceSinkOnce() {
+        val timeline = timeline()
+        val span = timeline.begin(AuthPhase.MODULE_DISPATCH)
+        span.end()
+        span.end()
+        assertEquals(
+            listOf(
+                "begin BiometricPromptCompat.MODULE_DISPATCH",
+                "end BiometricPromptCompat.MODULE_DISPATCH"
+            ),
+            sink.events
+        )
+        assertEquals(1, timeline.finish(AuthOutcome.SUCCEEDED)!!.phases.size)
+    }
+
+    private class RecordingSink : AuthTraceSink {
+        val events = ArrayList<String>()
+
+        override fun beginSection(name: String, cookie: Int) {
+            events.add("begin $name")
+        }
+
+        override fun endSection(name: String, cookie: Int) {
+            events.add("end $name")
+        }
+    }
+}
@@ -26,9 +26,8 @@ import com.google.gson.Gson
 import dev.skomlach.common.contextprovider.AndroidContext
 import dev.skomlach.common.device.DeviceModel.getNames
 import dev.skomlach.common.logging.LogCat
-import dev.skomlach.common.misc.LastUpdatedTs
 import dev.skomlach.common.network.NetworkApi
-import dev.skomlach.common.storage.SharedPreferenceProvider.getPreferences
+import dev.skomlach.common.storage.VersionedPreferences
 import java.io.ByteArrayOutputStream
 import java.io.File
 import java.nio.charset.Charset
@@ -36,6 +35,7 @@ import java.util.Locale
 import java.util.regex.Pattern
 
 object DeviceInfoManager {
+    private const val PREFERENCES_NAME = "BiometricCompat_DeviceInfo"
     private val pattern = Pattern.compile("\\((.*?)\\)+")
 
     fun hasBiometricSensors(deviceInfo: DeviceInfo?): Boolean {
@@ -195,13 +195,13 @@ object DeviceInfoManager {
     private var cachedDeviceInfo: DeviceInfo? = null
         get() {
             if (field == null) {
-                val sharedPreferences = getPreferences("BiometricCompat_DeviceInfo")
-                if (sharedPreferences.getBoolean("checked-${LastUpdatedTs.timestamp}", false)) {
+                val sharedPreferences = VersionedPreferences.getPreferences(PREFERENCES_NAME)
+                if (sharedPreferences.getBoolean("checked", false)) {
                     val model =
-                        sharedPreferences.getString("model-${LastUpdatedTs.timestamp}", null)
+                        sharedPreferences.getString("model", null)
                             ?: return null
                     val sensors =
-                        sharedPreferences.getStringSet("sensors-${LastUpdatedTs.timestamp}", null)
+                        sharedPreferences.getStringSet("sensors", null)
                             ?: HashSet<String>()
                     field = DeviceInfo(model, sensors)
                 }
@@ -213,35 +213,6 @@ object DeviceInfoManager {
         cachedDeviceInfo?.let {
             return it
         }
-        try {
-            val sharedPreferences = getPreferences("BiometricCompat_DeviceInfo")
-            if (sharedPreferences.getBoolean(sharedPreferences.all.keys.firstOrNull {
-                    it.startsWith(
-                        "checked-"
-                    )
-                } ?: "", false)) {
-                val model =
-                    sharedPreferences.getString(sharedPreferences.all.keys.firstOrNull {
-                        it.startsWith(
-                            "model-"
-                        )
-                    }
-                        ?: Build.MODEL, null) ?: ""
-                val sensors =
-                    sharedPreferences.getStringSet(sharedPreferences.all.keys.firstOrNull {
-                        it.startsWith(
-                            "sensors-"
-                        )
-                    } ?: "", null)
-                        ?: HashSet<String>()
-                DeviceInfo(model, sensors).also {
-                    LogCat.log("DeviceInfoManager: (fallback) " + it.model + " -> " + it)
-                    cachedDeviceInfo = it
-                }
-            }
-        } catch (e :Throwable){
-            LogCat.logException(e, "DeviceInfoManager")
-        }
         val names = getNames()
         return if (names.isNotEmpty())
             DeviceInfo(names.toList()[0].first, HashSet<String>()).also {
@@ -258,13 +229,10 @@ object DeviceInfoManager {
     private fun setCachedDeviceInfo(deviceInfo: DeviceInfo) {
         cachedDeviceInfo = deviceInfo
         try {
-            val sharedPreferences = getPreferences("BiometricCompat_DeviceInfo")
-                .edit()
-            sharedPreferences.clear().commit()
-            sharedPreferences
-                .putStringSet("sensors-${LastUpdatedTs.timestamp}", deviceInfo.sensors)
-                .putString("model-${LastUpdatedTs.timestamp}", deviceInfo.model)
-                .putBoolean("checked-${LastUpdatedTs.timestamp}", true)
+            VersionedPreferences.editCleared(PREFERENCES_NAME)
+                .putStringSet("sensors", deviceInfo.sensors)
+                .putString("model", deviceInfo.model)
+                .putBoolean("checked", true)
                 .apply()
         } catch (e: Throwable) {
             LogCat.logException(e)
@@ -0,0 +1,113 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.common.misc
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import dev.skomlach.common.contextprovider.AndroidContext
+import dev.skomlach.common.logging.LogCat
+import java.util.concurrent.CopyOnWriteArraySet
+
+/**
+ * Process-wide fan-out of the global broadcasts.
+ *
+ * Each action is registered once for all in-process subscribers. When the last subscriber of
+ * the action leaves, the receiver stays registered for [UNREGISTER_DELAY], so subscribers that
+ * come and go with each prompt do not cause registerReceiver/unregisterReceiver pair each time.
+ */
+object BroadcastHub {
+    private const val UNREGISTER_DELAY = 30_000L
+    private val appContext = AndroidContext.appContext
+
+    fun interface Subscriber {
+        fun onReceive(intent: Intent)
+    }
+
+    private class ActionEntry {
+        val subscribers = CopyOnWriteArraySet<Subscriber>()
+        var isRegistered = false
+        val receiver = object : BroadcastReceiver() {
+            override fun onReceive(context: Context?, intent: Intent?) {
+                intent ?: return
+                for (subscriber in subscribers) {
+                    try {
+                        subscriber.onReceive(intent)
+                    } catch (e: Throwable) {
+                        LogCat.logException(e)
+                    }
+                }
+            }
+        }
+        val unregisterTask = Runnable {
+            synchronized(BroadcastHub) {
+                if (subscribers.isEmpty() && isRegistered) {
+                    try {
+                        BroadcastTools.unregisterGlobalBroadcastIntent(appContext, receiver)
+                    } catch (e: Throwable) {
+                        LogCat.logException(e)
+                    }
+                    isRegistered = false
+                }
+            }
+        }
+    }
+
+    private val entries = HashMap<String, ActionEntry>()
+
+    /**
+     * @return task that removes the subscription
+     */
+    fun subscribe(actions: Collection<String>, subscriber: Subscriber): Runnable {
+        synchronized(this) {
+            for (action in actions) {
+                val entry = entries.getOrPut(action) { ActionEntry() }
+                ExecutorHelper.removeCallbacks(entry.unregisterTask)
+                entry.subscribers.add(subscriber)
+                if (!entry.isRegistered) {
+                    try {
+                        BroadcastTools.registerGlobalBroadcastIntent(
+                            appContext,
+                            entry.receiver,
+                            IntentFilter(action)
+                        )
+                        entry.isRegistered = true
+                    } catch (e: Throwable) {
+                        LogCat.logException(e)
+                    }
+                }
+            }
+        }
+        return Runnable {
+            unsubscribe(actions, subscriber)
+        }
+    }
+
+    fun unsubscribe(actions: Collection<String>, subscriber: Subscriber) {
+        synchronized(this) {
+            for (action in actions) {
+                val entry = entries[action] ?: continue
+                if (entry.subscribers.remove(subscriber) && entry.subscribers.isEmpty())
+                    ExecutorHelper.postDelayed(entry.unregisterTask, UNREGISTER_DELAY)
+            }
+        }
+    }
+}
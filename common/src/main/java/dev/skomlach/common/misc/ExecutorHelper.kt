@@ -20,6 +20,7 @@
 package dev.skomlach.common.misc
 
 import android.os.Handler
+import android.os.HandlerThread
 import android.os.Looper
 import dev.skomlach.common.logging.LogCat
 import kotlinx.coroutines.Dispatchers
@@ -41,6 +42,11 @@ object ExecutorHelper {
     val handler: Handler = Handler(Looper.getMainLooper())
     val executor: Executor = HandlerExecutor()
 
+    //Single background looper for the sensor callbacks; keeps the events order and the UI thread free
+    val callbackHandler: Handler by lazy {
+        Handler(HandlerThread("BiometricCallbacks").apply { start() }.looper)
+    }
+
     val backgroundExecutor: ExecutorService = Executors.newCachedThreadPool()
     private val tasksInMain = Collections.synchronizedMap(WeakHashMap<Runnable, Job>())
 
@@ -19,72 +19,19 @@
 
 package dev.skomlach.common.misc
 
-import android.os.Build
-import androidx.core.content.ContextCompat
 import dev.skomlach.common.contextprovider.AndroidContext
-import java.io.File
 import java.security.SecureRandom
 
+@Deprecated("Use VersionedPreferences for the caches that depends on the app version")
 object LastUpdatedTs {
-    var timestamp: Long = 0
-        get() {
-            if (field == 0L)
-                try {
-                    val apks: MutableSet<String> = HashSet()
-                    val applicationInfo =
-                        AndroidContext.appContext.packageManager.getApplicationInfo(
-                            AndroidContext.appContext.packageName,
-                            0
-                        )
-                    applicationInfo.sourceDir?.let {
-                        apks.add(it)
-                    }
-                    applicationInfo.publicSourceDir?.let {
-                        apks.add(it)
-                    }
-
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                        applicationInfo.splitSourceDirs?.let {
-                            apks.addAll(listOf(*it))
-                        }
-                        applicationInfo.splitPublicSourceDirs?.let {
-                            apks.addAll(listOf(*it))
-                        }
-                    }
-
-                    scanRecursivly(ContextCompat.getCodeCacheDir(AndroidContext.appContext), apks)
-                    var lst: Long = 0
-                    for (s in apks) {
-                        if (File(s).exists()) {
-                            val t = File(s).lastModified()
-                            if (t > lst) {
-                                lst = t
-                            }
-                        }
-                    }
-                    field = lst
-                } catch (e: Throwable) {
-                    field = SecureRandom().nextLong()
-                }
-            return field
-        }
-
-    private fun scanRecursivly(fileOrDirectory: File?, apks: MutableSet<String>) {
+    val timestamp: Long by lazy {
         try {
-            if (fileOrDirectory?.isDirectory == true) {
-                val files = fileOrDirectory.listFiles()
-                if (files != null && files.isNotEmpty()) {
-                    for (child in files) {
-                        scanRecursivly(child, apks)
-                    }
-                }
-            } else {
-                if (fileOrDirectory?.isFile == true && (fileOrDirectory.name.endsWith("dex"))) {
-                    apks.add(fileOrDirectory.absolutePath)
-                }
-            }
+            AndroidContext.appContext.packageManager.getPackageInfo(
+                AndroidContext.appContext.packageName,
+                0
+            ).lastUpdateTime
         } catch (e: Throwable) {
-            e.printStackTrace()
+            SecureRandom().nextLong()
         }
     }
-}
\ No newline at end of file
+}
@@ -20,32 +20,107 @@
 package dev.skomlach.common.misc
 
 import android.content.Context
+import android.os.Build
 import dev.skomlach.common.logging.LogCat
+import dev.skomlach.common.storage.SharedPreferenceProvider
+import java.util.concurrent.ConcurrentHashMap
 
 
 object SystemStringsHelper {
+    private const val PREF_NAME = "BiometricCompat_SystemStrings"
+    private const val KEY_FINGERPRINT = "fingerprint"
+    private const val KEY_ID_PREFIX = "id-"
+    private const val MISSING_ID = 0
+
+    private val index = SystemStringsIndex { Class.forName("com.android.internal.R\$string") }
+
+    //alias -> id (or MISSING_ID); persisted per system build, so the R$string scan is skipped on the next launches
+    private val knownIds = ConcurrentHashMap<String, Int>()
+
+    @Volatile
+    private var isPersistedIdsLoaded = false
+
     fun getFromSystem(context: Context, alias: String): String? {
-        try {
-            val fields = Class.forName("com.android.internal.R\$string").declaredFields
-            for (field in fields) {
-                if (field.name.equals(alias)) {
-                    LogCat.log("SystemStringsHelper", field.name)
-                    val isAccessible = field.isAccessible
-                    return try {
-                        if (!isAccessible) field.isAccessible = true
-                        val s = context.getString(field[null] as Int)
-                        if (s.isEmpty())
-                            throw RuntimeException("String is empty")
-                        s
-                    } finally {
-                        if (!isAccessible) field.isAccessible = false
-                    }
+        return getFirstFromSystem(context, alias)
+    }
+
+    /**
+     * Resolves all aliases in one pass and returns the first non-empty string
+     */
+    fun getFirstFromSystem(context: Context, vararg aliases: String): String? {
+        val ids = resolveIds(aliases.asList())
+        for (alias in aliases) {
+            val id = ids[alias] ?: continue
+            try {
+                val s = context.getString(id)
+                if (s.isNotEmpty()) {
+                    LogCat.log("SystemStringsHelper", alias)
+                    return s
                 }
+            } catch (e: Throwable) {
+                LogCat.logException(e)
             }
-        } catch (e: Throwable) {
-            LogCat.logException(e)
         }
         return null
     }
 
-}
\ No newline at end of file
+    private fun resolveIds(aliases: Collection<String>): Map<String, Int> {
+        loadPersistedIds()
+        val missing = aliases.filter { !knownIds.containsKey(it) }
+        if (missing.isNotEmpty()) {
+            val resolved = try {
+                index.resolve(missing)
+            } catch (e: Throwable) {
+                LogCat.logException(e)
+                return knownIdsFor(aliases)
+            }
+            val editor = try {
+                SharedPreferenceProvider.getPreferences(PREF_NAME).edit()
+            } catch (e: Throwable) {
+                null
+            }
+            for (alias in missing) {
+                val id = resolved[alias] ?: MISSING_ID
+                knownIds[alias] = id
+                editor?.putInt(KEY_ID_PREFIX + alias, id)
+            }
+            editor?.apply()
+        }
+        return knownIdsFor(aliases)
+    }
+
+    private fun knownIdsFor(aliases: Collection<String>): Map<String, Int> {
+        val result = HashMap<String, Int>()
+        for (alias in aliases) {
+            val id = knownIds[alias] ?: continue
+            if (id != MISSING_ID)
+                result[alias] = id
+        }
+        return result
+    }
+
+    private fun loadPersistedIds() {
+        if (isPersistedIdsLoaded)
+            return
+        synchronized(this) {
+            if (isPersistedIdsLoaded)
+                return
+            try {
+                val preferences = SharedPreferenceProvider.getPreferences(PREF_NAME)
+                val fingerprint = Build.FINGERPRINT ?: ""
+                if (preferences.getString(KEY_FINGERPRINT, null) == fingerprint) {
+                    for ((key, value) in preferences.all) {
+                        if (key.startsWith(KEY_ID_PREFIX) && value is Int)
+                            knownIds.putIfAbsent(key.substring(KEY_ID_PREFIX.length), value)
+                    }
+                } else {
+                    //Resource ids may change with the system update
+                    preferences.edit().clear().putString(KEY_FINGERPRINT, fingerprint).apply()
+                }
+            } catch (e: Throwable) {
+                LogCat.logException(e)
+            }
+            isPersistedIdsLoaded = true
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.common.misc
+
+import java.lang.reflect.Modifier
+
+/**
+ * Name -> resource id index of the R$string-like class.
+ *
+ * The class is scanned only once (on the first lookup); later lookups are plain map reads.
+ */
+class SystemStringsIndex(private val classProvider: () -> Class<*>) {
+    @Volatile
+    private var index: Map<String, Int>? = null
+
+    /**
+     * @return ids of the known aliases; unknown aliases are omitted
+     */
+    fun resolve(aliases: Collection<String>): Map<String, Int> {
+        val index = getIndex()
+        val result = HashMap<String, Int>()
+        for (alias in aliases) {
+            index[alias]?.let {
+                result[alias] = it
+            }
+        }
+        return result
+    }
+
+    fun getIndex(): Map<String, Int> {
+        index?.let {
+            return it
+        }
+        synchronized(this) {
+            index?.let {
+                return it
+            }
+            return buildIndex().also {
+                index = it
+            }
+        }
+    }
+
+    private fun buildIndex(): Map<String, Int> {
+        val result = HashMap<String, Int>()
+        val fields = classProvider.invoke().declaredFields
+        for (field in fields) {
+            if (!Modifier.isStatic(field.modifiers) || field.type != Int::class.javaPrimitiveType)
+                continue
+            val isAccessible = field.isAccessible
+            try {
+                if (!isAccessible) field.isAccessible = true
+                result[field.name] = field.getInt(null)
+            } catch (ignore: Throwable) {
+            } finally {
+                if (!isAccessible) field.isAccessible = false
+            }
+        }
+        return result
+    }
+}
@@ -21,8 +21,10 @@ package dev.skomlach.common.multiwindow
 
 import android.annotation.SuppressLint
 import android.app.Activity
+import android.content.ComponentCallbacks
 import android.content.Context
 import android.content.res.Configuration
+import android.content.res.Resources
 import android.graphics.Point
 import android.graphics.Rect
 import android.os.Build
@@ -33,20 +35,24 @@ import dev.skomlach.common.R
 import dev.skomlach.common.contextprovider.AndroidContext
 import dev.skomlach.common.logging.LogCat
 import dev.skomlach.common.misc.isActivityFinished
+import java.lang.ref.WeakReference
 
 class MultiWindowSupport private constructor() {
     companion object {
-        private val realScreenSize = LruCache<Configuration, Point>(1)
+        private val isTabletCache = LruCache<Configuration, Boolean>(1)
+        @SuppressLint("StaticFieldLeak")
+        val ctx = AndroidContext.appContext
         @SuppressLint("StaticFieldLeak")
         private val instance  = MultiWindowSupport()
         fun get() : MultiWindowSupport{
             return instance
         }
-        @SuppressLint("StaticFieldLeak")
-        val ctx = AndroidContext.appContext
         fun isTablet(): Boolean {
             val resources = ctx.resources
             val configuration = AndroidContext.configuration ?: resources.configuration
+            isTabletCache[configuration]?.let {
+                return it
+            }
             val res = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
                 ctx.createConfigurationContext(configuration).resources
             } else {
@@ -54,164 +60,213 @@ class MultiWindowSupport private constructor() {
                 resources.updateConfiguration(configuration, resources.displayMetrics)
                 resources
             }
-            return res.getBoolean(R.bool.biometric_compat_is_tablet)
+            return res.getBoolean(R.bool.biometric_compat_is_tablet).also {
+                isTabletCache.put(Configuration(configuration), it)
+            }
         }
     }
 
+    /**
+     * Snapshot of the window geometry; recomputed only after the configuration change or
+     * the window layout (insets, multi-window resize) change.
+     */
+    class WindowGeometry(
+        val realScreenSize: Point,
+        val screenOrientation: Int,
+        val hasNavBar: Boolean,
+        val navigationBarHeight: Int,
+        val navigationBarWidth: Int,
+        val statusBarHeight: Int,
+        val isInMultiWindow: Boolean,
+        val isWindowOnScreenBottom: Boolean
+    ) {
+        override fun toString(): String {
+            return "WindowGeometry(realScreenSize=$realScreenSize, orientation=$screenOrientation, hasNavBar=$hasNavBar, " +
+                    "NavBarW/H=${navigationBarWidth}x$navigationBarHeight, statusBarH=$statusBarHeight, " +
+                    "isMultiWindow=$isInMultiWindow, isWindowOnScreenBottom=$isWindowOnScreenBottom)"
+        }
+    }
+
+    @Volatile
+    private var geometry: WindowGeometry? = null
+    private var trackedActivity: WeakReference<Activity>? = null
+    private val layoutListener =
+        View.OnLayoutChangeListener { _, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom ->
+            if (left != oldLeft || top != oldTop || right != oldRight || bottom != oldBottom)
+                invalidate()
+        }
+
+    init {
+        ctx.registerComponentCallbacks(object : ComponentCallbacks {
+            override fun onConfigurationChanged(newConfig: Configuration) {
+                invalidate()
+            }
+
+            override fun onLowMemory() {}
+        })
+    }
+
     private val activity: Activity
         get() {
             return AndroidContext.activity ?: throw IllegalStateException("No activity on screen")
         }
 
+    fun invalidate() {
+        geometry = null
+    }
+
+    fun getWindowGeometry(): WindowGeometry {
+        val activity = activity
+        geometry?.let {
+            if (trackedActivity?.get() === activity)
+                return it
+        }
+        track(activity)
+        return computeGeometry(activity).also {
+            geometry = it
+            LogCat.logError("${activity.javaClass.simpleName} Activity screen: $it")
+        }
+    }
+
+    private fun track(activity: Activity) {
+        val previous = trackedActivity?.get()
+        if (previous === activity)
+            return
+        try {
+            previous?.window?.decorView?.removeOnLayoutChangeListener(layoutListener)
+            activity.window?.decorView?.addOnLayoutChangeListener(layoutListener)
+        } catch (e: Throwable) {
+            LogCat.logException(e)
+        }
+        trackedActivity = WeakReference(activity)
+    }
+
+    private fun computeGeometry(activity: Activity): WindowGeometry {
+        val realScreenSize = computeRealScreenSize(activity)
+        val screenOrientation = computeScreenOrientation(activity)
+        val isSmartphone = !isTablet()
+        val hasNavBar = computeHasNavBar(activity, realScreenSize)
+        val resources = activity.resources
+        val navigationBarHeight = if (!hasNavBar) 0 else getDimension(
+            resources, if (!isSmartphone) {
+                if (screenOrientation == Configuration.ORIENTATION_PORTRAIT) "navigation_bar_height" else "navigation_bar_height_landscape"
+            } else {
+                if (screenOrientation == Configuration.ORIENTATION_PORTRAIT) "navigation_bar_height" else "navigation_bar_width"
+            }
+        )
+        val navigationBarWidth = if (!hasNavBar) 0 else getDimension(
+            resources, if (!isSmartphone) {
+                if (screenOrientation == Configuration.ORIENTATION_PORTRAIT) "navigation_bar_height_landscape" else "navigation_bar_height"
+            } else {
+                if (screenOrientation == Configuration.ORIENTATION_PORTRAIT) "navigation_bar_width" else "navigation_bar_height"
+            }
+        )
+        val statusBarHeight = getDimension(resources, "status_bar_height")
+        val isInMultiWindow = computeIsInMultiWindow(
+            activity,
+            realScreenSize,
+            screenOrientation,
+            isSmartphone,
+            navigationBarHeight,
+            navigationBarWidth,
+            statusBarHeight
+        )
+        return WindowGeometry(
+            realScreenSize,
+            screenOrientation,
+            hasNavBar,
+            navigationBarHeight,
+            navigationBarWidth,
+            statusBarHeight,
+            isInMultiWindow,
+            isInMultiWindow && computeIsWindowOnScreenBottom(activity, realScreenSize)
+        )
+    }
+
+    private fun getDimension(resources: Resources, name: String): Int {
+        val resourceId = resources.getIdentifier(name, "dimen", "android")
+        return if (resourceId > 0) {
+            resources.getDimensionPixelSize(resourceId)
+        } else 0
+    }
+
     //Unlike Android N method, this one support also non-Nougat+ multiwindow modes (like Samsung/LG/Huawei/etc solutions)
-    private fun checkIsInMultiWindow(): Boolean {
+    private fun checkIsInMultiWindow(
+        activity: Activity,
+        realScreenSize: Point,
+        screenOrientation: Int,
+        isSmartphone: Boolean,
+        navigationBarHeight: Int,
+        navigationBarWidth: Int,
+        statusBarHeight: Int
+    ): Boolean {
         val rect = Rect()
         val decorView = activity.findViewById<ViewGroup>(Window.ID_ANDROID_CONTENT)
         decorView.getGlobalVisibleRect(rect)
         if (rect.width() == 0 && rect.height() == 0) {
             return false
         }
-        val realScreenSize = realScreenSize
-        val statusBarHeight = statusBarHeight
-        val navigationBarHeight = navigationBarHeight
-        val navigationBarWidth = navigationBarWidth
         var h = realScreenSize.y - rect.height() - statusBarHeight - navigationBarHeight
         var w = realScreenSize.x - rect.width()
-        val isSmartphone = !isTablet()
         if (isSmartphone && screenOrientation == Configuration.ORIENTATION_LANDSCAPE) {
             h += navigationBarHeight
             w -= navigationBarWidth
         }
-        val isMultiWindow = h != 0 || w != 0
-        val locationOnScreen = IntArray(2)
-        decorView.getLocationOnScreen(locationOnScreen)
-
-        val sb = StringBuilder()
-        sb.append(activity.javaClass.simpleName + " Activity screen:")
-        log("isMultiWindow $isMultiWindow", sb)
-        log("final " + w + "x" + h + "", sb)
-        log("NavBarW/H " + navigationBarWidth + "x" + navigationBarHeight, sb)
-        log("statusBarH $statusBarHeight", sb)
-        log("View $rect", sb)
-        log("realScreenSize $realScreenSize", sb)
-
-        LogCat.logError(sb.toString())
-        return isMultiWindow
+        return h != 0 || w != 0
     }
 
-    private fun log(msg: Any, sb: java.lang.StringBuilder) {
-        sb.append(" [").append(msg).append("] ")
-    }
-
-    fun isWindowOnScreenBottom(): Boolean {
+    private fun computeIsWindowOnScreenBottom(activity: Activity, realScreenSize: Point): Boolean {
         val rect = Rect()
         val decorView = activity.findViewById<ViewGroup>(Window.ID_ANDROID_CONTENT)
         decorView.getGlobalVisibleRect(rect)
         if (rect.width() == 0 && rect.height() == 0) {
             return false
         }
-        val realScreenSize = realScreenSize
         val locationOnScreen = IntArray(2)
         decorView.getLocationOnScreen(locationOnScreen)
-        val isWindowOnScreenBottom =
-            isInMultiWindow && (realScreenSize.y / 2 < locationOnScreen[1] + (rect.width() / 2))
-        val sb = StringBuilder()
-        sb.append(activity.javaClass.simpleName + " Activity screen:")
-        log("isWindowOnScreenBottom $isWindowOnScreenBottom", sb)
-        LogCat.logError(sb.toString())
-        return isWindowOnScreenBottom
+        return realScreenSize.y / 2 < locationOnScreen[1] + (rect.width() / 2)
     }
 
     //Should work on API24+ and support almost all devices types, include Chromebooks and foldable devices
     //http://open-wiki.flyme.cn/index.php?title=%E5%88%86%E5%B1%8F%E9%80%82%E9%85%8D%E6%96%87%E6%A1%A3
     //general way - for OEM devices (Samsung, LG, Huawei) and/or in case API24 not fired for some reasons
-    val isInMultiWindow: Boolean
-        get() {
-            //Should work on API24+ and support almost all devices types, include Chromebooks and foldable devices
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-
-                val isMultiWindow = !isActivityFinished(activity) && activity.isInMultiWindowMode
-                val sb = StringBuilder()
-                sb.append(activity.javaClass.simpleName + " Activity screen:")
-                log("isMultiWindow $isMultiWindow", sb)
-                LogCat.logError(sb.toString())
-                return isMultiWindow
-            } else {
-                //http://open-wiki.flyme.cn/index.php?title=%E5%88%86%E5%B1%8F%E9%80%82%E9%85%8D%E6%96%87%E6%A1%A3
-                try {
-                    val clazz = Class.forName("meizu.splitmode.FlymeSplitModeManager")
-                    val b = clazz.getMethod("getInstance", Context::class.java)
-                    val instance = b.invoke(null, activity)
-                    val m = clazz.getMethod("isSplitMode")
-                    val isMultiWindow = m.invoke(instance) as Boolean
-                    val sb = StringBuilder()
-                    sb.append(activity.javaClass.simpleName + " Activity screen:")
-                    log("isMultiWindow $isMultiWindow", sb)
-                    LogCat.logError(sb.toString())
-                    return isMultiWindow
-                } catch (ignore: Throwable) {
-                }
-                return if (!isActivityFinished(activity)) {
-                    //general way - for OEM devices (Samsung, LG, Huawei) and/or in case API24 not fired for some reasons
-                    checkIsInMultiWindow()
-                } else {
-                    false
-                }
-            }
-        }
-    val navigationBarHeight: Int
-        get() {
-            if (!hasNavBar()) {
-                return 0
-            }
-            val resources = activity.resources
-            val orientation = screenOrientation
-            val isSmartphone = !isTablet()
-            val resourceId: Int = if (!isSmartphone) {
-                resources.getIdentifier(
-                    if (orientation == Configuration.ORIENTATION_PORTRAIT) "navigation_bar_height" else "navigation_bar_height_landscape",
-                    "dimen",
-                    "android"
-                )
-            } else {
-                resources.getIdentifier(
-                    if (orientation == Configuration.ORIENTATION_PORTRAIT) "navigation_bar_height" else "navigation_bar_width",
-                    "dimen",
-                    "android"
-                )
-            }
-            return if (resourceId > 0) {
-                resources.getDimensionPixelSize(resourceId)
-            } else 0
+    private fun computeIsInMultiWindow(
+        activity: Activity,
+        realScreenSize: Point,
+        screenOrientation: Int,
+        isSmartphone: Boolean,
+        navigationBarHeight: Int,
+        navigationBarWidth: Int,
+        statusBarHeight: Int
+    ): Boolean {
+        if (isActivityFinished(activity))
+            return false
+        //Should work on API24+ and support almost all devices types, include Chromebooks and foldable devices
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return activity.isInMultiWindowMode
         }
-    val navigationBarWidth: Int
-        get() {
-            if (!hasNavBar()) {
-                return 0
-            }
-            val resources = activity.resources
-            val orientation = screenOrientation
-            val isSmartphone = !isTablet()
-            val resourceId: Int = if (!isSmartphone) {
-                resources.getIdentifier(
-                    if (orientation == Configuration.ORIENTATION_PORTRAIT) "navigation_bar_height_landscape" else "navigation_bar_height",
-                    "dimen",
-                    "android"
-                )
-            } else {
-                resources.getIdentifier(
-                    if (orientation == Configuration.ORIENTATION_PORTRAIT) "navigation_bar_width" else "navigation_bar_height",
-                    "dimen",
-                    "android"
-                )
-            }
-            return if (resourceId > 0) {
-                resources.getDimensionPixelSize(resourceId)
-            } else 0
+        //http://open-wiki.flyme.cn/index.php?title=%E5%88%86%E5%B1%8F%E9%80%82%E9%85%8D%E6%96%87%E6%A1%A3
+        try {
+            val clazz = Class.forName("meizu.splitmode.FlymeSplitModeManager")
+            val b = clazz.getMethod("getInstance", Context::class.java)
+            val instance = b.invoke(null, activity)
+            val m = clazz.getMethod("isSplitMode")
+            return m.invoke(instance) as Boolean
+        } catch (ignore: Throwable) {
         }
+        //general way - for OEM devices (Samsung, LG, Huawei) and/or in case API24 not fired for some reasons
+        return checkIsInMultiWindow(
+            activity,
+            realScreenSize,
+            screenOrientation,
+            isSmartphone,
+            navigationBarHeight,
+            navigationBarWidth,
+            statusBarHeight
+        )
+    }
 
-    fun hasNavBar(): Boolean {
-        val realSize = realScreenSize
+    private fun computeHasNavBar(activity: Activity, realSize: Point): Boolean {
         val realHeight = realSize.y
         val realWidth = realSize.x
         val bounds = WindowHelper.getCurrentWindowMetrics(activity)
@@ -230,52 +285,44 @@ class MultiWindowSupport private constructor() {
         return hasOnScreenNavBar || hasNoCapacitiveKeys
     }
 
-    // status bar height
-    val statusBarHeight: Int
-        get() {
-            // status bar height
-            var statusBarHeight = 0
-            val resourceId =
-                activity.resources.getIdentifier("status_bar_height", "dimen", "android")
-            if (resourceId > 0) {
-                statusBarHeight = activity.resources.getDimensionPixelSize(resourceId)
-            }
-            return statusBarHeight
-        }//This should be close, as lower API devices should not have window navigation bars//this may not be 100% accurate, but it's all we've got//reflection for this weird in-between time
-
     //new pleasant way to get real metrics
-    val realScreenSize: Point
-        get() {
-            val configuration = activity.resources.configuration
-            val point = Companion.realScreenSize[configuration]
-            return if (point != null) {
-                point
+    private fun computeRealScreenSize(activity: Activity): Point {
+        val bounds = WindowHelper.getMaximumWindowMetrics(activity)
+        return Point(bounds.width(), bounds.height())
+    }
+
+    private fun computeScreenOrientation(activity: Activity): Int {
+        var orientation = activity.resources.configuration.orientation
+        if (orientation == Configuration.ORIENTATION_UNDEFINED) {
+            val bounds = WindowHelper.getCurrentWindowMetrics(activity)
+            orientation = if (bounds.width() == bounds.height()) {
+                Configuration.ORIENTATION_SQUARE
             } else {
-                val bounds = WindowHelper.getMaximumWindowMetrics(activity)
-                val realWidth = bounds.width()
-                val realHeight = bounds.height()
-                val size = Point(realWidth, realHeight)
-                Companion.realScreenSize.put(configuration, size)
-                size
-            }
-        }
-    val screenOrientation: Int
-        get() {
-            var orientation = activity.resources.configuration.orientation
-            if (orientation == Configuration.ORIENTATION_UNDEFINED) {
-                val bounds = WindowHelper.getCurrentWindowMetrics(activity)
-                orientation = if (bounds.width() == bounds.height()) {
-                    Configuration.ORIENTATION_SQUARE
+                if (bounds.width() < bounds.height()) {
+                    Configuration.ORIENTATION_PORTRAIT
                 } else {
-                    if (bounds.width() < bounds.height()) {
-                        Configuration.ORIENTATION_PORTRAIT
-                    } else {
-                        Configuration.ORIENTATION_LANDSCAPE
-                    }
+                    Configuration.ORIENTATION_LANDSCAPE
                 }
             }
-            return orientation
         }
+        return orientation
+    }
+
+    fun isWindowOnScreenBottom(): Boolean = getWindowGeometry().isWindowOnScreenBottom
+
+    val isInMultiWindow: Boolean
+        get() = getWindowGeometry().isInMultiWindow
+    val navigationBarHeight: Int
+        get() = getWindowGeometry().navigationBarHeight
+    val navigationBarWidth: Int
+        get() = getWindowGeometry().navigationBarWidth
 
+    fun hasNavBar(): Boolean = getWindowGeometry().hasNavBar
 
-}
\ No newline at end of file
+    val statusBarHeight: Int
+        get() = getWindowGeometry().statusBarHeight
+    val realScreenSize: Point
+        get() = Point(getWindowGeometry().realScreenSize)
+    val screenOrientation: Int
+        get() = getWindowGeometry().screenOrientation
+}
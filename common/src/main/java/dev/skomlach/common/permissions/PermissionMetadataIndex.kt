@@ -0,0 +1,127 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.common.permissions
+
+import android.content.pm.PackageManager
+import android.content.pm.PermissionInfo
+import android.os.Build
+import dev.skomlach.common.contextprovider.AndroidContext
+import dev.skomlach.common.logging.LogCat.logException
+import dev.skomlach.common.storage.SharedPreferenceProvider
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Existence, protection level and app-op mapping of the permissions.
+ *
+ * Platform permissions are loaded with a single PackageManager call and persisted per system build;
+ * permissions declared by other packages are resolved one by one on demand and cached in memory.
+ */
+internal object PermissionMetadataIndex {
+    private const val PREF_NAME = "BiometricCompat_PermissionsIndex"
+    private const val KEY_FINGERPRINT = "fingerprint"
+    private const val KEY_LEVEL_PREFIX = "level-"
+
+    //Marker for the permissions missing in the system
+    private const val NOT_EXISTS = Int.MIN_VALUE
+
+    private val appContext = AndroidContext.appContext
+
+    //permission -> protectionLevel (or NOT_EXISTS)
+    private val protectionLevels = ConcurrentHashMap<String, Int>()
+
+    //permission -> app-op ("" if none)
+    private val appOps = ConcurrentHashMap<String, String>()
+
+    @Volatile
+    private var isPlatformPermissionsLoaded = false
+
+    fun isExists(permission: String): Boolean {
+        return getProtectionLevel(permission) != NOT_EXISTS
+    }
+
+    fun isAppOp(permission: String): Boolean {
+        val level = getProtectionLevel(permission)
+        return level != NOT_EXISTS && Build.VERSION.SDK_INT >= 21 && (level and PermissionInfo.PROTECTION_FLAG_APPOP) != 0
+    }
+
+    fun isNormal(permission: String): Boolean {
+        val level = getProtectionLevel(permission)
+        return level != NOT_EXISTS && (level and PermissionInfo.PROTECTION_MASK_BASE) == PermissionInfo.PROTECTION_NORMAL
+    }
+
+    fun getAppOp(permission: String): String? {
+        val op = appOps[permission] ?: (AppOpCompatConstants.getAppOpFromPermission(permission)
+            ?: "").also {
+            appOps[permission] = it
+        }
+        return op.ifEmpty { null }
+    }
+
+    private fun getProtectionLevel(permission: String): Int {
+        loadPlatformPermissions()
+        protectionLevels[permission]?.let {
+            return it
+        }
+        val level = try {
+            appContext.packageManager.getPermissionInfo(permission, 0).protectionLevel
+        } catch (e: PackageManager.NameNotFoundException) {
+            NOT_EXISTS
+        } catch (e: Throwable) {
+            logException(e)
+            //do not cache, may be a transient failure
+            return NOT_EXISTS
+        }
+        protectionLevels[permission] = level
+        return level
+    }
+
+    private fun loadPlatformPermissions() {
+        if (isPlatformPermissionsLoaded)
+            return
+        synchronized(this) {
+            if (isPlatformPermissionsLoaded)
+                return
+            try {
+                val preferences = SharedPreferenceProvider.getPreferences(PREF_NAME)
+                val fingerprint = Build.FINGERPRINT ?: ""
+                if (preferences.getString(KEY_FINGERPRINT, null) == fingerprint) {
+                    for ((key, value) in preferences.all) {
+                        if (key.startsWith(KEY_LEVEL_PREFIX) && value is Int)
+                            protectionLevels[key.substring(KEY_LEVEL_PREFIX.length)] = value
+                    }
+                } else {
+                    val permissions = appContext.packageManager.getPackageInfo(
+                        "android",
+                        PackageManager.GET_PERMISSIONS
+                    ).permissions ?: emptyArray()
+                    val editor = preferences.edit().clear().putString(KEY_FINGERPRINT, fingerprint)
+                    for (info in permissions) {
+                        protectionLevels[info.name] = info.protectionLevel
+                        editor.putInt(KEY_LEVEL_PREFIX + info.name, info.protectionLevel)
+                    }
+                    editor.apply()
+                }
+            } catch (e: Throwable) {
+                logException(e)
+            }
+            isPlatformPermissionsLoaded = true
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.common.permissions
+
+import android.app.Activity
+import android.app.AppOpsManager
+import android.app.NotificationManager
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.Build
+import androidx.lifecycle.Observer
+import dev.skomlach.common.contextprovider.AndroidContext
+import dev.skomlach.common.logging.LogCat.logError
+import dev.skomlach.common.logging.LogCat.logException
+import dev.skomlach.common.misc.BroadcastTools
+import dev.skomlach.common.misc.ExecutorHelper
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Grant table of the permissions/app-ops checked by PermissionUtils.
+ *
+ * Entries are computed on the first read and dropped when the state may have changed:
+ * app-op mode changes, package/notification broadcasts, permission requests and
+ * when the app comes back to the foreground (user may change permissions in Settings).
+ * Revocation of the runtime permission kills the process, so the table can't outlive it.
+ */
+internal object PermissionStateWatcher {
+    private val appContext = AndroidContext.appContext
+    private val isStarted = AtomicBoolean(false)
+
+    //key (permission or the custom key) -> granted
+    private val grantTable = ConcurrentHashMap<String, Boolean>()
+
+    //app-ops that already watched
+    private val watchedOps = ConcurrentHashMap<String, Boolean>()
+
+    private val receiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context?, intent: Intent?) {
+            logError("PermissionStateWatcher.onReceive - ${intent?.action}")
+            invalidate()
+        }
+    }
+
+    private val resumeObserver = Observer<Activity?> {
+        if (it != null)
+            invalidate()
+    }
+
+    /**
+     * @param isDeniedCacheable false if the state may become granted without any notification
+     */
+    fun get(
+        key: String,
+        appOp: String?,
+        isDeniedCacheable: Boolean = true,
+        compute: () -> Boolean
+    ): Boolean {
+        start()
+        grantTable[key]?.let {
+            return it
+        }
+        if (!appOp.isNullOrEmpty())
+            watchOp(appOp)
+        return compute.invoke().also {
+            if (it || isDeniedCacheable)
+                grantTable[key] = it
+        }
+    }
+
+    fun invalidate() {
+        grantTable.clear()
+    }
+
+    private fun start() {
+        if (!isStarted.compareAndSet(false, true))
+            return
+        try {
+            val packageFilter = IntentFilter().apply {
+                addAction(Intent.ACTION_PACKAGE_ADDED)
+                addAction(Intent.ACTION_PACKAGE_CHANGED)
+                addAction(Intent.ACTION_PACKAGE_REMOVED)
+                addAction(Intent.ACTION_PACKAGE_REPLACED)
+                addDataScheme("package")
+            }
+            BroadcastTools.registerGlobalBroadcastIntent(appContext, receiver, packageFilter)
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                val notificationFilter = IntentFilter().apply {
+                    addAction(NotificationManager.ACTION_APP_BLOCK_STATE_CHANGED)
+                    addAction(NotificationManager.ACTION_NOTIFICATION_CHANNEL_BLOCK_STATE_CHANGED)
+                    addAction(NotificationManager.ACTION_NOTIFICATION_CHANNEL_GROUP_BLOCK_STATE_CHANGED)
+                }
+                BroadcastTools.registerGlobalBroadcastIntent(appContext, receiver, notificationFilter)
+            }
+        } catch (e: Throwable) {
+            logException(e)
+        }
+        ExecutorHelper.post {
+            AndroidContext.resumedActivityLiveData.observeForever(resumeObserver)
+        }
+    }
+
+    private fun watchOp(op: String) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT || watchedOps.putIfAbsent(op, true) != null)
+            return
+        try {
+            val appOpsManager =
+                appContext.getSystemService(Context.APP_OPS_SERVICE) as AppOpsManager
+            val pkgName = appContext.packageName
+            appOpsManager.startWatchingMode(op, pkgName) { changedOp, packageName ->
+                if (op == changedOp && pkgName == packageName) {
+                    logError("PermissionStateWatcher.onOpChanged - $changedOp - $packageName")
+                    invalidate()
+                    //https://stackoverflow.com/a/40649631 - new mode may be applied with a delay
+                    ExecutorHelper.postDelayed({ invalidate() }, 250)
+                }
+            }
+        } catch (e: Throwable) {
+            watchedOps.remove(op)
+            logException(e)
+        }
+    }
+}
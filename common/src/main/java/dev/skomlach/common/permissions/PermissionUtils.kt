@@ -23,9 +23,8 @@ import android.Manifest
 import android.app.AppOpsManager
 import android.app.NotificationManager
 import android.content.Context
+import android.content.pm.PackageInfo
 import android.content.pm.PackageManager
-import android.content.pm.PermissionGroupInfo
-import android.content.pm.PermissionInfo
 import android.os.Build
 import android.os.Build.VERSION
 import android.os.Process
@@ -37,15 +36,12 @@ import androidx.core.content.PermissionChecker
 import dev.skomlach.common.contextprovider.AndroidContext
 import dev.skomlach.common.logging.LogCat.logError
 import dev.skomlach.common.logging.LogCat.logException
-import dev.skomlach.common.misc.ExecutorHelper
 import dev.skomlach.common.misc.Utils
+import java.util.concurrent.ConcurrentHashMap
 
 object PermissionUtils {
     private val appContext = AndroidContext.appContext
-    private val appOpCache: MutableMap<String, Boolean> = HashMap()
-
-    private var isAllowedOverlayPermissionFlag: Boolean? = null
-    private var isAllowedUsageStatPermissionFlag: Boolean? = null
+    private val appOpCache: MutableMap<String, Boolean> = ConcurrentHashMap()
 
     /**
      * Checks all given permissions have been granted.
@@ -93,6 +89,8 @@ object PermissionUtils {
     }
 
     fun hasSelfPermissions(vararg permissions: String): Boolean {
+        //Single request for the grant state of all permissions
+        val grantStates = lazy { getRequestedPermissionsGrantStates() }
         for (permission: String in permissions) {
             if (Utils.isAtLeastT && listOf(
                     Manifest.permission.WRITE_EXTERNAL_STORAGE,
@@ -103,31 +101,49 @@ object PermissionUtils {
             if (!isPermissionExistsInTheSystem(permission)) {
                 continue
             }
-            if (!isPermissionGranted(permission)) {
+            if (!PermissionStateWatcher.get(
+                    permission,
+                    PermissionMetadataIndex.getAppOp(permission)
+                ) { isPermissionGranted(permission, grantStates) }
+            ) {
                 return false
             }
         }
         return true
     }
 
-    private fun isPermissionExistsInTheSystem(permission: String): Boolean {
+    private fun getRequestedPermissionsGrantStates(): Map<String, Boolean>? {
         try {
-            val lstGroups = appContext.packageManager.getAllPermissionGroups(0)
-            lstGroups.add(null) // ungrouped permissions
-            for (pgi: PermissionGroupInfo? in lstGroups) {
-                pgi?.name?.let {
-                    val lstPermissions = appContext.packageManager.queryPermissionsByGroup(it, 0)
-                    for (pi: PermissionInfo in lstPermissions) {
-                        if ((pi.name == permission)) {
-                            return true
-                        }
-                    }
-                }
+            val packageInfo = appContext.packageManager.getPackageInfo(
+                appContext.packageName,
+                PackageManager.GET_PERMISSIONS
+            )
+            val names = packageInfo.requestedPermissions ?: return emptyMap()
+            val flags = packageInfo.requestedPermissionsFlags ?: return null
+            val result = HashMap<String, Boolean>()
+            for (i in names.indices) {
+                result[names[i]] =
+                    (flags[i] and PackageInfo.REQUESTED_PERMISSION_GRANTED) != 0
             }
-        } catch (ex: Throwable) {
-            logException(ex)
+            return result
+        } catch (e: Throwable) {
+            logException(e)
         }
-        return false
+        return null
+    }
+
+    private fun checkSelfPermission(
+        permission: String,
+        grantStates: Lazy<Map<String, Boolean>?>
+    ): Boolean {
+        return grantStates.value?.get(permission) ?: (PermissionChecker.checkSelfPermission(
+            appContext,
+            permission
+        ) == PermissionChecker.PERMISSION_GRANTED)
+    }
+
+    private fun isPermissionExistsInTheSystem(permission: String): Boolean {
+        return PermissionMetadataIndex.isExists(permission)
     }
 
     /**
@@ -141,18 +157,18 @@ object PermissionUtils {
      * @return returns true if context has access to the given permission, false otherwise.
      * @see .hasSelfPermissions
      */
-    private fun isPermissionGranted(permission: String): Boolean {
+    private fun isPermissionGranted(
+        permission: String,
+        grantStates: Lazy<Map<String, Boolean>?>
+    ): Boolean {
         var granted: Boolean
         try {
             val permissionToOp: String =
-                AppOpCompatConstants.getAppOpFromPermission(permission) ?: ""
+                PermissionMetadataIndex.getAppOp(permission) ?: ""
             //below Android 6
             if (permissionToOp.isEmpty()) {
                 // in case of normal permissions(e.g. INTERNET)
-                granted = PermissionChecker.checkSelfPermission(
-                    appContext,
-                    permission
-                ) == PermissionChecker.PERMISSION_GRANTED
+                granted = checkSelfPermission(permission, grantStates)
                 logError("PermissionUtils.isPermissionGranted - normal permission - $permission - $granted")
                 return granted
             }
@@ -184,41 +200,20 @@ object PermissionUtils {
                 logError("PermissionUtils.isPermissionGranted - appOp permission - $permission - $permissionToOp - $granted")
                 granted
             } else {
-                granted = appOpAllowed && PermissionChecker.checkSelfPermission(
-                    appContext,
-                    permission
-                ) == PermissionChecker.PERMISSION_GRANTED
+                granted = appOpAllowed && checkSelfPermission(permission, grantStates)
                 logError("PermissionUtils.isPermissionGranted - danger permission - $permission - $permissionToOp - $granted")
                 granted
             }
         } catch (t: Throwable) {
             logException(t)
         }
-        granted = PermissionChecker.checkSelfPermission(
-            appContext,
-            permission
-        ) == PermissionChecker.PERMISSION_GRANTED
+        granted = checkSelfPermission(permission, grantStates)
         logError("PermissionUtils.isPermissionGranted - normal permission - $permission - $granted")
         return granted
     }
 
     private fun isAppOpPermission(manifestPermission: String): Boolean {
-        try {
-            val info = appContext.packageManager.getPermissionInfo(
-                manifestPermission,
-                PackageManager.GET_META_DATA
-            )
-            logError("PermissionUtils.isAppOpPermission - $manifestPermission $info")
-            //https://developer.android.com/reference/android/content/pm/PermissionInfo.html#getProtection()
-            return if (VERSION.SDK_INT >= 28) {
-                (info.protection and PermissionInfo.PROTECTION_FLAG_APPOP) != 0 || (info.protectionLevel and PermissionInfo.PROTECTION_FLAG_APPOP) != 0
-            } else {
-                VERSION.SDK_INT >= 21 && (info.protectionLevel and PermissionInfo.PROTECTION_FLAG_APPOP) != 0
-            }
-        } catch (e: Throwable) {
-            logException(e)
-        }
-        return false
+        return PermissionMetadataIndex.isAppOp(manifestPermission)
     }
 
     fun getPermissions(targetPermissionsKes: List<String?>): HashMap<String, String> {
@@ -233,18 +228,18 @@ object PermissionUtils {
             ).requestedPermissions
             for (manifestPermission: String in manifestPermissions) try {
                 if (!targetPermissionsKes.contains(manifestPermission)) continue
+                if (!PermissionMetadataIndex.isExists(manifestPermission) || PermissionMetadataIndex.isNormal(
+                        manifestPermission
+                    )
+                ) continue
+                if (hasSelfPermissions(manifestPermission)) {
+                    continue
+                }
+                //Label is requested only for the permissions that going to be displayed
                 val info = appContext.packageManager.getPermissionInfo(
                     manifestPermission,
                     PackageManager.GET_META_DATA
                 )
-                logError("PermissionUtils.getPermissions: " + manifestPermission + " " + (if (VERSION.SDK_INT >= 28) info.protection else info.protectionLevel))
-                //https://developer.android.com/reference/android/content/pm/PermissionInfo.html#getProtection()
-                if (VERSION.SDK_INT >= 28) {
-                    if (info.protection == PermissionInfo.PROTECTION_NORMAL || info.protectionLevel == PermissionInfo.PROTECTION_NORMAL) continue
-                } else if (info.protectionLevel == PermissionInfo.PROTECTION_NORMAL) continue
-                if (hasSelfPermissions(manifestPermission)) {
-                    continue
-                }
                 val permName = info.loadLabel(appContext.packageManager).toString()
                 permissionsList[manifestPermission] = permName
             } catch (ignored: Throwable) {
@@ -257,18 +252,28 @@ object PermissionUtils {
 
     //Notification permissions
     val isAllowedNotificationsPermission: Boolean
-        get() = if (Utils.isAtLeastT)
-            hasSelfPermissions("android.permission.POST_NOTIFICATIONS") && NotificationManagerCompat.from(
-                appContext
-            ).areNotificationsEnabled()
-        else
-            NotificationManagerCompat.from(appContext).areNotificationsEnabled()
+        get() = PermissionStateWatcher.get("notifications", null) {
+            if (Utils.isAtLeastT)
+                hasSelfPermissions("android.permission.POST_NOTIFICATIONS") && NotificationManagerCompat.from(
+                    appContext
+                ).areNotificationsEnabled()
+            else
+                NotificationManagerCompat.from(appContext).areNotificationsEnabled()
+        }
 
     //Notification channel permissions
     fun isAllowedNotificationsChannelPermission(channelId: String?): Boolean {
         if (VERSION.SDK_INT < 26) {
             return true
         }
+        //Channel may be created later, so only the "allowed" state is cached
+        return PermissionStateWatcher.get("notifications-channel-$channelId", null, false) {
+            isNotificationsChannelAllowed(channelId)
+        }
+    }
+
+    @RequiresApi(26)
+    private fun isNotificationsChannelAllowed(channelId: String?): Boolean {
         return try {
             val notificationManager = appContext.getSystemService(
                 NotificationManager::class.java
@@ -295,22 +300,10 @@ object PermissionUtils {
     }
 
     val isAllowedOverlayPermission: Boolean
-        get() {
-            if (VERSION.SDK_INT >= 19 && isAllowedOverlayPermissionFlag != null) {
-                return isAllowedOverlayPermissionFlag == true || isOverlayGrantedUseCheckOp
-            }
-            try {
-                return isOverlayGrantedUseCheckOp.also { isAllowedOverlayPermissionFlag = it }
-            } finally {
-                if (VERSION.SDK_INT >= 19) {
-                    startWatchingByPermission(
-                        Manifest.permission.SYSTEM_ALERT_WINDOW
-                    ) {
-                        isAllowedOverlayPermissionFlag = isOverlayGrantedUseCheckOp
-                    }
-                }
-            }
-        }
+        get() = PermissionStateWatcher.get(
+            "overlay",
+            PermissionMetadataIndex.getAppOp(Manifest.permission.SYSTEM_ALERT_WINDOW)
+        ) { isOverlayGrantedUseCheckOp }
     private val isOverlayGrantedUseCheckOp: Boolean
         get() {
             return if (VERSION.SDK_INT >= 23) {
@@ -322,45 +315,13 @@ object PermissionUtils {
             }
         }
 
-    @RequiresApi(Build.VERSION_CODES.KITKAT)
-    private fun startWatchingByPermission(permission: String, runnable: Runnable) {
-        if (isAppOpPermission(permission)) {
-            try {
-                val permissionToOp = AppOpCompatConstants.getAppOpFromPermission(permission) ?: ""
-                val appOpsManager =
-                    appContext.getSystemService(Context.APP_OPS_SERVICE) as AppOpsManager
-                val pkgName = appContext.packageName
-                appOpsManager.startWatchingMode(
-                    (permissionToOp),
-                    pkgName
-                ) { op, packageName ->
-                    if (permissionToOp == op && pkgName == packageName) {
-                        logError("PermissionUtils.onOpChanged - $op - $packageName")
-                        //https://stackoverflow.com/a/40649631
-                        ExecutorHelper.postDelayed(runnable, 250)
-                    }
-                }
-            } catch (e: Throwable) {
-                logException(e)
-            }
-        }
-    }
-
     val isAllowedPermissionForUsageStat: Boolean
-        get() {
-            if (VERSION.SDK_INT >= 23 && isAllowedUsageStatPermissionFlag != null) {
-                return isAllowedUsageStatPermissionFlag == true || isUsageStatGrantedUseCheckOp
-            }
-            try {
-                return isUsageStatGrantedUseCheckOp.also { isAllowedUsageStatPermissionFlag = it }
-            } finally {
-                if (VERSION.SDK_INT >= 23) {
-                    startWatchingByPermission(
-                        Manifest.permission.PACKAGE_USAGE_STATS
-                    ) { isAllowedUsageStatPermissionFlag = isUsageStatGrantedUseCheckOp }
-                }
-            }
-        }
+        get() = PermissionStateWatcher.get(
+            "usage-stat",
+            PermissionMetadataIndex.getAppOp(
+                if (VERSION.SDK_INT < 23) Manifest.permission.GET_TASKS else Manifest.permission.PACKAGE_USAGE_STATS
+            )
+        ) { isUsageStatGrantedUseCheckOp }
     private val isUsageStatGrantedUseCheckOp: Boolean
         get() {
             return if (VERSION.SDK_INT < 23) {
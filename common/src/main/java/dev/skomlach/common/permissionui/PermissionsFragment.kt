@@ -50,6 +50,7 @@ import dev.skomlach.common.misc.BroadcastTools.unregisterGlobalBroadcastIntent
 import dev.skomlach.common.misc.ExecutorHelper
 import dev.skomlach.common.misc.SystemStringsHelper
 import dev.skomlach.common.misc.Utils
+import dev.skomlach.common.permissions.PermissionStateWatcher
 import dev.skomlach.common.permissions.PermissionUtils
 import dev.skomlach.common.storage.SharedPreferenceProvider
 
@@ -95,12 +96,14 @@ class PermissionsFragment : Fragment() {
 
     private val startForResultForPermissions =
         registerForActivityResult(ActivityResultContracts.RequestMultiplePermissions()) {
+            PermissionStateWatcher.invalidate()
             ExecutorHelper.postDelayed({
                 closeFragment()
             }, 250)
         }
     private val startForResult: ActivityResultLauncher<Intent> =
         registerForActivityResult(ActivityResultContracts.StartActivityForResult()) {
+            PermissionStateWatcher.invalidate()
             if (it.resultCode == Activity.RESULT_OK) {
                 ExecutorHelper.postDelayed({
                     closeFragment()
@@ -291,8 +294,11 @@ class PermissionsFragment : Fragment() {
     private fun showMandatoryPermissionsNeedDialog(permissions: List<String>) {
 
         val button =
-            SystemStringsHelper.getFromSystem(appContext, "turn_on_magnification_settings_action")
-                ?: SystemStringsHelper.getFromSystem(appContext, "global_action_settings")
+            SystemStringsHelper.getFirstFromSystem(
+                appContext,
+                "turn_on_magnification_settings_action",
+                "global_action_settings"
+            )
         val isLeftToRight =
             TextUtilsCompat.getLayoutDirectionFromLocale(AndroidContext.locale) == ViewCompat.LAYOUT_DIRECTION_LTR
         val textStart =
@@ -30,6 +30,7 @@ import dev.skomlach.common.misc.BroadcastTools.registerGlobalBroadcastIntent
 import dev.skomlach.common.misc.BroadcastTools.unregisterGlobalBroadcastIntent
 import dev.skomlach.common.misc.ExecutorHelper
 import dev.skomlach.common.misc.Utils
+import dev.skomlach.common.permissions.PermissionStateWatcher
 import dev.skomlach.common.permissions.PermissionUtils
 import dev.skomlach.common.translate.LocalizationHelper
 
@@ -90,6 +91,7 @@ class NotificationPermissionsFragment : Fragment() {
 
     private val startForResultForPermissions =
         registerForActivityResult(ActivityResultContracts.RequestMultiplePermissions()) {
+            PermissionStateWatcher.invalidate()
             if (!PermissionUtils.hasSelfPermissions("android.permission.POST_NOTIFICATIONS")) {
                 ExecutorHelper.postDelayed({
                     closeFragment()
@@ -105,6 +107,7 @@ class NotificationPermissionsFragment : Fragment() {
         }
     private val startForResult: ActivityResultLauncher<Intent> =
         registerForActivityResult(ActivityResultContracts.StartActivityForResult()) {
+            PermissionStateWatcher.invalidate()
             if (it.resultCode == Activity.RESULT_OK) {
                 ExecutorHelper.postDelayed({
                     closeFragment()
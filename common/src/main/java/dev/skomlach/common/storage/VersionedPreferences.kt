@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.common.storage
+
+import android.content.SharedPreferences
+import androidx.core.content.pm.PackageInfoCompat
+import dev.skomlach.common.contextprovider.AndroidContext
+import dev.skomlach.common.logging.LogCat
+import java.security.SecureRandom
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * SharedPreferences whose content is valid only for the current app version.
+ *
+ * The version namespace is derived from PackageInfo (versionCode + lastUpdateTime), so no
+ * filesystem access is required; entries written by the previous versions are removed
+ * in one commit on the first access after the update.
+ */
+object VersionedPreferences {
+    private const val KEY_NAMESPACE = "versioned-prefs-namespace"
+    private val checkedNames = ConcurrentHashMap<String, Boolean>()
+
+    val namespace: String by lazy {
+        try {
+            val appContext = AndroidContext.appContext
+            val packageInfo =
+                appContext.packageManager.getPackageInfo(appContext.packageName, 0)
+            "${PackageInfoCompat.getLongVersionCode(packageInfo)}-${packageInfo.lastUpdateTime}"
+        } catch (e: Throwable) {
+            LogCat.logException(e, "VersionedPreferences")
+            //unknown version - do not trust anything stored before
+            "random-${SecureRandom().nextLong()}"
+        }
+    }
+
+    fun getPreferences(name: String): SharedPreferences {
+        val preferences = SharedPreferenceProvider.getPreferences(name)
+        if (checkedNames.containsKey(name))
+            return preferences
+        synchronized(this) {
+            if (!checkedNames.containsKey(name)) {
+                if (preferences.getString(KEY_NAMESPACE, null) != namespace) {
+                    preferences.edit().clear().putString(KEY_NAMESPACE, namespace).commit()
+                }
+                checkedNames[name] = true
+            }
+        }
+        return preferences
+    }
+
+    /**
+     * @return editor that replaces all entries (the namespace marker is kept)
+     */
+    fun editCleared(name: String): SharedPreferences.Editor {
+        return getPreferences(name).edit().clear().putString(KEY_NAMESPACE, namespace)
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright (c) 2023 Sergey Komlach aka Salat-Cx65; Original project https://github.com/Salat-Cx65/AdvancedBiometricPromptCompat
+ *  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package dev.skomlach.common.misc
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class SystemStringsIndexTest {
+
+    //Same shape as R$string: static int fields, plus a field that must be skipped
+    @Suppress("unused")
+    object FakeStrings {
+        const val ok = 0x1040000
+        const val cancel = 0x1040001
+
+        @JvmField
+        var fingerprint_icon_content_description = 0x1040002
+
+        @JvmField
+        val not_an_id = "text"
+    }
+
+    private var scans = 0
+    private val index = SystemStringsIndex {
+        scans++
+        FakeStrings::class.java
+    }
+
+    @Test
+    fun staticIntFieldsAreIndexed() {
+        assertEquals(
+            mapOf(
+                "ok" to 0x1040000,
+                "cancel" to 0x1040001,
+                "fingerprint_icon_content_description" to 0x1040002
+            ),
+            index.getIndex()
+        )
+    }
+
+    @Test
+    fun classIsScannedOnce() {
+        index.resolve(listOf("ok"))
+        index.resolve(listOf("cancel"))
+        index.getIndex()
+        assertEquals(1, scans)
+    }
+
+    @Test
+    fun aliasesAreResolvedInOneBatch() {
+        assertEquals(
+            mapOf("ok" to 0x1040000, "fingerprint_icon_content_description" to 0x1040002),
+            index.resolve(listOf("ok", "fingerprint_icon_content_description"))
+        )
+        assertEquals(1, scans)
+    }
+
+    @Test
+    fun missingAliasesAreOmitted() {
+        assertEquals(
+            mapOf("cancel" to 0x1040001),
+            index.resolve(listOf("face_error_hw_not_available", "cancel", "not_an_id"))
+        )
+        assertTrue(index.resolve(listOf("face_error_hw_not_available")).isEmpty())
+    }
+}